@@ -5,11 +5,21 @@ import game.Player;
 
 /** Piece representing a completed box claimed by a player. */
 public final class BoxClaimPiece extends Piece {
+    private static final String[] LABELS = new String[10];
+    static {
+        for (int i = 0; i < LABELS.length; i++) LABELS[i] = " " + i + " ";
+    }
+
     private final String label;
 
     public BoxClaimPiece(Player owner, int playerIndex) {
         super(owner);
-        this.label = " " + playerIndex + " ";
+        this.label = label(playerIndex);
+    }
+
+    /** Box label for a player index; boards render straight from this without a piece. */
+    static String label(int playerIndex) {
+        return playerIndex >= 0 && playerIndex < LABELS.length ? LABELS[playerIndex] : " " + playerIndex + " ";
     }
 
     @Override
@@ -3,43 +3,67 @@ package dots;
 import game.Game;
 import game.Player;
 
-import java.util.Arrays;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
- * Two-player Dots & Boxes with turn logic, scoring, bounds guidance, and end checks.
+ * Dots & Boxes for 2..8 players with turn logic, scoring, bounds guidance, and end checks.
  * Adds: player name customization, session stats, and end-of-round menu.
  *
  * Author: Jigar K
  * Date: 2025-10-04
  */
 public final class DotsAndBoxes extends Game {
+    private static final long HINT_NODE_BUDGET = 20_000_000L;
+    private static final int HINT_MAX_BOXES = 36;
+
+    private DotsSolver solver;
 
     @Override
     public void start() {
         println("\n=== Dots & Boxes ===");
         println("How to play:");
-        println(" - Choose board size (R x C boxes).");
+        println(" - Choose the number of players (2.." + DotsBoard.MAX_PLAYERS + ") and board size (R x C boxes).");
         println(" - On your turn, type: H r c  (horizontal edge at row r, col c)");
         println("   or:            V r c  (vertical edge at row r, col c)");
         println(" - Coordinates are zero-based. If you complete a box, you move again.");
+        println(" - Type HINT for the solver's best edge and the final score margin with perfect play.");
+        println(" - Computer players search with Monte Carlo playouts for a fixed time per move.");
         println(" - Game ends when all boxes are claimed. Highest score wins.\n");
 
         // --- Player customization ---
-        String p1Name = io.readNonEmpty("Player 1 name: ");
-        String p2Name;
-        while (true) {
-            p2Name = io.readNonEmpty("Player 2 name: ");
-            if (!p2Name.equalsIgnoreCase(p1Name)) break;
-            println("Player names must be different. Please choose another name.");
+        int playerCount = io.readIntInRange("Players (2.." + DotsBoard.MAX_PLAYERS + "): ", 2, DotsBoard.MAX_PLAYERS);
+        int computers = io.readIntInRange("Computer players (0.." + playerCount + "): ", 0, playerCount);
+        DotsMcts mcts = null;
+        if (computers > 0) {
+            int thinkMillis = io.readIntInRange("Computer think time per move in ms (100..60000): ", 100, 60000);
+            mcts = new DotsMcts(Runtime.getRuntime().availableProcessors(), thinkMillis);
         }
-
-        Player player1 = new Player(p1Name);
-        Player player2 = new Player(p2Name);
-        registerPlayers(Arrays.asList(player1, player2));
-        Player[] seats = new Player[]{null, player1, player2};
+        List<Player> players = new ArrayList<>();
+        Player[] seats = new Player[playerCount + 1]; // index 1..playerCount
+        boolean[] computer = new boolean[playerCount + 1];
+        for (int i = 1; i <= playerCount; i++) {
+            String name;
+            if (i > playerCount - computers) {
+                computer[i] = true;
+                name = "Computer " + (i - (playerCount - computers));
+            } else {
+                while (true) {
+                    name = io.readNonEmpty("Player " + i + " name: ");
+                    if (!nameTaken(players, name) && !name.toLowerCase().startsWith("computer ")) break;
+                    println("Player names must be different. Please choose another name.");
+                }
+            }
+            seats[i] = new Player(name, i - 1);
+            players.add(seats[i]);
+        }
+        registerPlayers(players);
 
         // Session stats
-        int p1Wins = 0, p2Wins = 0, ties = 0;
+        int[] wins = new int[playerCount + 1];
+        int ties = 0;
 
         // Outer loop lets you replay or change board dims
         int rows = -1, cols = -1;
@@ -47,8 +71,12 @@ public final class DotsAndBoxes extends Game {
 
         while (true) {
             if (!haveBoard) {
-                rows = io.readIntInRange("Rows (1..6): ", 1, 6);
-                cols = io.readIntInRange("Cols (1..6): ", 1, 6);
+                while (true) {
+                    rows = io.readIntInRange("Rows (1.." + DotsBoard.MAX_DIMENSION + "): ", 1, DotsBoard.MAX_DIMENSION);
+                    cols = io.readIntInRange("Cols (1.." + DotsBoard.MAX_DIMENSION + "): ", 1, DotsBoard.MAX_DIMENSION);
+                    if (computers == 0 || rows * cols <= DotsMcts.MAX_BOXES) break;
+                    println("Computer players need a board of at most " + DotsMcts.MAX_BOXES + " boxes. Please choose a smaller size.");
+                }
 
                 println("\nValid coordinate ranges for this board:");
                 println(" - Horizontal edges: H r c  with  r in [0.." + rows + "], c in [0.." + (cols - 1) + "]");
@@ -58,84 +86,57 @@ public final class DotsAndBoxes extends Game {
                 haveBoard = true;
             }
 
-            DotsBoard b = new DotsBoard(rows, cols);
+            DotsBoard b = new DotsBoard(rows, cols, playerCount);
             registerBoard(b);
-            int[] pScore = new int[]{0, 0, 0}; // index 1=P1, 2=P2
+            int[] pScore = new int[playerCount + 1]; // index i = player i
             int player = 1;
 
             // ---- One round ----
             while (true) {
-                println(b.render());
-                println("Score " + seats[1].getName() + "=" + pScore[1] + "  " + seats[2].getName() + "=" + pScore[2] + "   Turn: " + seats[player].getName());
-
-                String line = io.readNonEmpty("Move (e.g., H 0 1, V 2 3) or Q to quit round: ");
-                if (line.equalsIgnoreCase("q")) {
-                    // Print summary and return to main menu (exit this game)
-                    println("\n=== Round aborted ===");
-                    println("Current score — " + seats[1].getName() + "=" + pScore[1] + "  " + seats[2].getName() + "=" + pScore[2]);
-                    println("Session results so far: " + seats[1].getName() + " wins=" + p1Wins + ", " + seats[2].getName() + " wins=" + p2Wins + ", ties=" + ties + "\n");
-                    return;
-                }
+                show(b);
+                println(scoreLine(seats, pScore) + "   Turn: " + seats[player].getName());
+
+                DotsMove m;
+                if (computer[player]) {
+                    DotsMcts.Result pick = mcts.think(b, pScore, player);
+                    println(seats[player].getName() + " plays " + pick);
+                    m = pick.move();
+                } else {
+                    String line = io.readNonEmpty("Move (e.g., H 0 1, V 2 3), HINT, or Q to quit round: ");
+                    if (line.equalsIgnoreCase("q")) {
+                        // Print summary and return to main menu (exit this game)
+                        println("\n=== Round aborted ===");
+                        println("Current score — " + scoreList(seats, pScore));
+                        println("Session results so far: " + sessionList(seats, wins, ties) + "\n");
+                        return;
+                    }
+
+                    if (line.equalsIgnoreCase("hint")) {
+                        hint(b, seats, pScore, player);
+                        continue;
+                    }
 
-                DotsMove m = RulesDots.parse(line);
-                if (m == null) { println("Invalid format. Example: H 0 1"); continue; }
+                    m = RulesDots.parse(line);
+                    if (m == null) { println("Invalid format. Example: H 0 1"); continue; }
+                }
 
                 int closed = b.apply(m, seats[player], player);
                 if (closed < 0) { println("Illegal move (out of bounds or already drawn). Try again."); continue; }
 
                 pScore[player] += closed;
-                // Early winner detection: if the lead exceeds remaining boxes, we can declare the winner now.
-int totalBoxes = rows * cols;
-int claimedBoxes = pScore[1] + pScore[2];
-int remainingBoxes = totalBoxes - claimedBoxes;
-int diff = Math.abs(pScore[1] - pScore[2]);
-
-if (diff > remainingBoxes) {
-    println(b.render());
-    // Decide winner immediately
-    if (pScore[1] > pScore[2]) {
-        println("congratulations " + seats[1].getName());
-    } else {
-        println("congratulations " + seats[2].getName());
-    }
-    println("Final score — " + seats[1].getName() + "=" + pScore[1] + "  " + seats[2].getName() + "=" + pScore[2]);
-
-    // Update session results
-    if (pScore[1] > pScore[2]) p1Wins++;
-    else p2Wins++;
-
-    println("Session results — " + seats[1].getName() + " wins=" + p1Wins + ", " + seats[2].getName() + " wins=" + p2Wins + ", ties=" + ties);
-
-    // End-of-round prompt (same as the full-board branch)
-    println("\nWhat next?");
-    println("1) Play again (same settings)");
-    println("2) Change board size");
-    println("3) Back to game menu");
-    println("0) Quit");
-    int choice = io.readIntInRange("> ", 0, 3);
-
-    if (choice == 1) {
-        // same settings; break to start a fresh round
-    } else if (choice == 2) {
-        haveBoard = false;
-    } else if (choice == 3) {
-        return; // back to Main menu
-    } else {
-        println("\nSummary results — " + seats[1].getName() + " wins=" + p1Wins + ", " + seats[2].getName() + " wins=" + p2Wins + ", ties=" + ties);
-        println("goodbye");
-        System.exit(0);
-    }
-    break; // break the round loop so the outer loop can continue per choice
-}
 
-                if (b.isFull()) {
-                    println(b.render());
-                    if (pScore[1] > pScore[2]) { println("congratulations " + seats[1].getName()); p1Wins++; }
-                    else if (pScore[2] > pScore[1]) { println("congratulations " + seats[2].getName()); p2Wins++; }
+                // Early winner detection: if the lead over the runner-up exceeds the remaining boxes,
+                // the leader can no longer be caught. A full board ends the round as well.
+                int leader = leader(pScore);
+                int remainingBoxes = rows * cols - b.getClaimedBoxes();
+                boolean decided = pScore[leader] - runnerUpScore(pScore, leader) > remainingBoxes;
+                if (decided || b.isFull()) {
+                    show(b);
+                    if (decided) { println("congratulations " + seats[leader].getName()); wins[leader]++; }
                     else { println("tie"); ties++; }
 
-                    println("Final score — " + seats[1].getName() + "=" + pScore[1] + "  " + seats[2].getName() + "=" + pScore[2]);
-                    println("Session results — " + seats[1].getName() + " wins=" + p1Wins + ", " + seats[2].getName() + " wins=" + p2Wins + ", ties=" + ties);
+                    println("Final score — " + scoreList(seats, pScore));
+                    println("Session results — " + sessionList(seats, wins, ties));
 
                     // End-of-round prompt
                     println("\nWhat next?");
@@ -149,15 +150,71 @@ if (diff > remainingBoxes) {
                     else if (choice == 2) { haveBoard = false; }
                     else if (choice == 3) { return; } // back to Main menu
                     else { // 0
-                        println("\nSummary results — " + seats[1].getName() + " wins=" + p1Wins + ", " + seats[2].getName() + " wins=" + p2Wins + ", ties=" + ties);
+                        println("\nSummary results — " + sessionList(seats, wins, ties));
                         println("goodbye");
                         System.exit(0);
                     }
                     break; // break round loop; outer loop continues as per haveBoard
                 }
 
-                if (closed == 0) player = 3 - player; // switch turns only if no box closed
+                if (closed == 0) player = player % playerCount + 1; // switch turns only if no box closed
             }
         }
     }
+
+    /** Stream the board to the output line by line, so huge boards never build one String. */
+    private void show(DotsBoard b) {
+        try {
+            b.render(out());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        println("");
+    }
+
+    private void hint(DotsBoard b, Player[] seats, int[] pScore, int player) {
+        if (seats.length != 3) { println("Hints are available in two-player games only."); return; }
+        if (b.getRows() * b.getCols() > HINT_MAX_BOXES) { println("Hints are available on boards up to " + HINT_MAX_BOXES + " boxes."); return; }
+        if (solver == null) solver = new DotsSolver();
+        DotsSolver.Result hint = solver.solve(b, HINT_NODE_BUDGET);
+        int lead = pScore[player] - pScore[3 - player];
+        println("Hint for " + seats[player].getName() + ": " + RulesDots.format(hint.bestMove())
+                + " -> final margin " + String.format("%+d", lead + hint.margin())
+                + (hint.isExact() ? " (perfect play)" : " (estimate, search budget reached)"));
+        println("Solver stats: " + hint);
+    }
+
+    private static boolean nameTaken(List<Player> players, String name) {
+        for (Player p : players) if (p.getName().equalsIgnoreCase(name)) return true;
+        return false;
+    }
+
+    /** Seat with the highest score; on a tie the lowest seat. */
+    private static int leader(int[] pScore) {
+        int best = 1;
+        for (int i = 2; i < pScore.length; i++) if (pScore[i] > pScore[best]) best = i;
+        return best;
+    }
+
+    private static int runnerUpScore(int[] pScore, int leader) {
+        int best = Integer.MIN_VALUE;
+        for (int i = 1; i < pScore.length; i++) if (i != leader && pScore[i] > best) best = pScore[i];
+        return best;
+    }
+
+    private static String scoreLine(Player[] seats, int[] pScore) {
+        StringBuilder sb = new StringBuilder("Score");
+        for (int i = 1; i < seats.length; i++) sb.append(i == 1 ? " " : "  ").append(seats[i].getName()).append("=").append(pScore[i]);
+        return sb.toString();
+    }
+
+    private static String scoreList(Player[] seats, int[] pScore) {
+        return scoreLine(seats, pScore).substring("Score ".length());
+    }
+
+    private static String sessionList(Player[] seats, int[] wins, int ties) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1; i < seats.length; i++) sb.append(seats[i].getName()).append(" wins=").append(wins[i]).append(", ");
+        return sb.append("ties=").append(ties).toString();
+    }
 }
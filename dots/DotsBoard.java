@@ -1,122 +1,260 @@
 package dots;
 
 import game.Board;
+import game.GameState;
+import game.LatencyStats;
+import game.Metrics;
 import game.Player;
-import game.Tile;
+import game.Zobrist;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
 
 /**
- * Board for Dots & Boxes with shared Tile/Piece infrastructure.
+ * Board for Dots & Boxes stored as bitsets: one bit per drawn edge (numbered by
+ * {@link EdgeIndex}), one bit per edge for the heavy glyph of even-numbered
+ * players, and one byte per box holding the claiming player's index (0 = unclaimed).
+ * A running count of claimed boxes makes {@link #isFull()} O(1), moves allocate
+ * nothing, and memory stays proportional to the edge count at any board size.
+ *
+ * As a {@link GameState} a move is an edge id, seats are 0-based (box owners and
+ * {@link #apply} use seat + 1), closing a box keeps the turn, and a seat's score is
+ * its box lead over the best other seat. Unmaking needs no history: any box next
+ * to the removed edge that is claimed was closed by it, and its owner moved.
  */
-public final class DotsBoard extends Board {
-    private final Tile[][] horizontalEdges; // (rows+1) x cols
-    private final Tile[][] verticalEdges;   // rows x (cols+1)
-    private final Tile[][] boxes;           // rows x cols
+public final class DotsBoard extends Board implements GameState {
+    public static final int MAX_DIMENSION = 4096;
+    public static final int MAX_PLAYERS = 8;
+
+    private final EdgeIndex index;
+    private final long[] edges;
+    private final long[] strongEdges;
+    private final byte[] boxOwners;
+    private int claimedBoxes;
+    private final int players;
+    private final int[] won;  // boxes per seat
+    private int toMove;       // seat, 0-based
+    private long hash;
+
+    private static final LatencyStats APPLY = Metrics.timer("dots.apply");
+    private static final long EDGE_KEYS = 1;
+    private static final long OWNER_KEYS = 2;
+    private static final long SIDE_KEYS = 3;
 
     public DotsBoard(int rows, int cols) {
+        this(rows, cols, 2);
+    }
+
+    public DotsBoard(int rows, int cols, int players) {
         super(rows, cols);
-        horizontalEdges = new Tile[rows + 1][cols];
-        verticalEdges = new Tile[rows][cols + 1];
-        boxes = new Tile[rows][cols];
-        reset();
+        if (rows > MAX_DIMENSION || cols > MAX_DIMENSION) {
+            throw new IllegalArgumentException("rows/cols must be <= " + MAX_DIMENSION);
+        }
+        if (players < 1 || players > MAX_PLAYERS) {
+            throw new IllegalArgumentException("players must be in [1," + MAX_PLAYERS + "]");
+        }
+        index = new EdgeIndex(rows, cols);
+        edges = new long[(index.edgeCount + 63) >>> 6];
+        strongEdges = new long[edges.length];
+        boxOwners = new byte[index.boxCount];
+        this.players = players;
+        won = new int[players];
+        hash = Zobrist.key(SIDE_KEYS, 0);
     }
 
     @Override
     public void reset() {
-        for (int r = 0; r < rows + 1; r++) {
-            for (int c = 0; c < cols; c++) {
-                horizontalEdges[r][c] = new Tile();
-            }
-        }
-        for (int r = 0; r < rows; r++) {
-            for (int c = 0; c < cols + 1; c++) {
-                verticalEdges[r][c] = new Tile();
-            }
-        }
-        for (int r = 0; r < rows; r++) {
-            for (int c = 0; c < cols; c++) {
-                boxes[r][c] = new Tile();
-            }
-        }
+        Arrays.fill(edges, 0L);
+        Arrays.fill(strongEdges, 0L);
+        Arrays.fill(boxOwners, (byte) 0);
+        Arrays.fill(won, 0);
+        claimedBoxes = 0;
+        toMove = 0;
+        hash = Zobrist.key(SIDE_KEYS, 0);
     }
 
     /**
      * Apply a move; return number of boxes closed by this move (0, 1, or 2). Negative if illegal.
      */
     public int apply(DotsMove move, Player player, int playerIndex) {
-        if (move.horizontal) {
-            if (move.r < 0 || move.r > rows || move.c < 0 || move.c >= cols) return -1;
-            Tile edge = horizontalEdges[move.r][move.c];
-            if (!edge.isEmpty()) return -1;
-            edge.setPiece(new LinePiece(player, LinePiece.Orientation.HORIZONTAL, playerIndex == 2));
-            int closed = 0;
-            if (tryClaimBox(move.r - 1, move.c, player, playerIndex)) closed++;
-            if (tryClaimBox(move.r, move.c, player, playerIndex)) closed++;
-            return closed;
-        } else {
-            if (move.r < 0 || move.r >= rows || move.c < 0 || move.c > cols) return -1;
-            Tile edge = verticalEdges[move.r][move.c];
-            if (!edge.isEmpty()) return -1;
-            edge.setPiece(new LinePiece(player, LinePiece.Orientation.VERTICAL, playerIndex == 2));
-            int closed = 0;
-            if (tryClaimBox(move.r, move.c - 1, player, playerIndex)) closed++;
-            if (tryClaimBox(move.r, move.c, player, playerIndex)) closed++;
-            return closed;
-        }
+        if (!Metrics.ENABLED) return play(index.toEdge(move), playerIndex);
+        long start = System.nanoTime();
+        int closed = play(index.toEdge(move), playerIndex);
+        APPLY.record(start);
+        return closed;
     }
 
-    private boolean tryClaimBox(int boxR, int boxC, Player player, int playerIndex) {
-        if (boxR < 0 || boxR >= rows || boxC < 0 || boxC >= cols) return false;
-        Tile box = boxes[boxR][boxC];
-        if (!box.isEmpty()) return false;
-        if (hasHorizontalEdge(boxR, boxC) &&
-            hasHorizontalEdge(boxR + 1, boxC) &&
-            hasVerticalEdge(boxR, boxC) &&
-            hasVerticalEdge(boxR, boxC + 1)) {
-            box.setPiece(new BoxClaimPiece(player, playerIndex));
+    /** Draw the edge and pass the turn on unless a box was closed. */
+    private int play(int edge, int playerIndex) {
+        int closed = drawEdge(edge, playerIndex);
+        if (closed >= 0) setSide(closed == 0 ? playerIndex % players : playerIndex - 1);
+        return closed;
+    }
+
+    /**
+     * Draw edge {@code edge} for player {@code playerIndex}; same contract as
+     * {@link #apply} without the DotsMove decoding.
+     */
+    int drawEdge(int edge, int playerIndex) {
+        if (edge < 0 || isDrawn(edge)) return -1;
+        long bit = 1L << edge;
+        edges[edge >>> 6] |= bit;
+        if ((playerIndex & 1) == 0) strongEdges[edge >>> 6] |= bit;
+        hash ^= Zobrist.key(EDGE_KEYS, edge);
+        int closed = 0;
+        if (tryClaimBox(index.firstBox(edge), playerIndex)) closed++;
+        if (tryClaimBox(index.secondBox(edge), playerIndex)) closed++;
+        return closed;
+    }
+
+    private boolean tryClaimBox(int box, int playerIndex) {
+        if (box < 0 || boxOwners[box] != 0) return false;
+        if (isDrawn(index.boxEdge(box, 0)) &&
+            isDrawn(index.boxEdge(box, 1)) &&
+            isDrawn(index.boxEdge(box, 2)) &&
+            isDrawn(index.boxEdge(box, 3))) {
+            boxOwners[box] = (byte) playerIndex;
+            claimedBoxes++;
+            won[playerIndex - 1]++;
+            hash ^= ownerKey(box, playerIndex);
             return true;
         }
         return false;
     }
 
-    private boolean hasHorizontalEdge(int r, int c) {
-        return r >= 0 && r <= rows && c >= 0 && c < cols && !horizontalEdges[r][c].isEmpty();
+    private static long ownerKey(int box, int playerIndex) {
+        return Zobrist.key(OWNER_KEYS, (long) box * MAX_PLAYERS + playerIndex);
+    }
+
+    private void setSide(int seat) {
+        hash ^= Zobrist.key(SIDE_KEYS, toMove) ^ Zobrist.key(SIDE_KEYS, seat);
+        toMove = seat;
+    }
+
+    EdgeIndex index() {
+        return index;
+    }
+
+    /** Whether the edge with the given {@link EdgeIndex} id is drawn. */
+    boolean isDrawn(int edge) {
+        return (edges[edge >>> 6] & (1L << edge)) != 0;
+    }
+
+    /** Copy the drawn-edge bitset into {@code dst} (at least as many words as this board uses). */
+    void copyEdges(long[] dst) {
+        System.arraycopy(edges, 0, dst, 0, edges.length);
     }
 
-    private boolean hasVerticalEdge(int r, int c) {
-        return r >= 0 && r < rows && c >= 0 && c <= cols && !verticalEdges[r][c].isEmpty();
+    public int getClaimedBoxes() {
+        return claimedBoxes;
     }
 
     public boolean isFull() {
-        for (int r = 0; r < rows; r++) {
-            for (int c = 0; c < cols; c++) {
-                if (boxes[r][c].isEmpty()) return false;
+        return claimedBoxes == index.boxCount;
+    }
+
+    // ---- GameState: a move is an edge id ----
+
+    @Override public int playerCount() { return players; }
+    @Override public int sideToMove() { return toMove; }
+    @Override public int maxMoves() { return index.edgeCount; }
+
+    @Override
+    public int generateMoves(int[] moves) {
+        int n = 0;
+        for (int w = 0; w < edges.length; w++) {
+            long free = ~edges[w];
+            if (w == edges.length - 1 && (index.edgeCount & 63) != 0) free &= (1L << index.edgeCount) - 1;
+            while (free != 0) {
+                moves[n++] = (w << 6) + Long.numberOfTrailingZeros(free);
+                free &= free - 1;
             }
         }
-        return true;
+        return n;
+    }
+
+    @Override
+    public void makeMove(int move) {
+        int closed = drawEdge(move, toMove + 1);
+        if (closed == 0) setSide((toMove + 1) % players);
+    }
+
+    @Override
+    public void unmakeMove(int move) {
+        long bit = 1L << move;
+        edges[move >>> 6] &= ~bit;
+        strongEdges[move >>> 6] &= ~bit;
+        hash ^= Zobrist.key(EDGE_KEYS, move);
+        int mover = Math.max(unclaim(index.firstBox(move)), unclaim(index.secondBox(move)));
+        setSide(mover > 0 ? mover - 1 : (toMove + players - 1) % players);
+    }
+
+    /** Release a box closed by the edge being taken back; returns its owner, or 0. */
+    private int unclaim(int box) {
+        if (box < 0 || boxOwners[box] == 0) return 0;
+        int owner = boxOwners[box];
+        boxOwners[box] = 0;
+        claimedBoxes--;
+        won[owner - 1]--;
+        hash ^= ownerKey(box, owner);
+        return owner;
+    }
+
+    @Override public long hash() { return hash; }
+    @Override public boolean isTerminal() { return isFull(); }
+
+    @Override
+    public int score(int seat) {
+        int best = Integer.MIN_VALUE;
+        for (int p = 0; p < players; p++) if (p != seat && won[p] > best) best = won[p];
+        return players == 1 ? won[seat] : won[seat] - best;
     }
 
     @Override
     public String render() {
         StringBuilder sb = new StringBuilder();
+        try {
+            render(sb);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringBuilder never throws
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Stream the board to {@code out} one text line at a time; only a single
+     * line is ever buffered, so boards of any size render in O(cols) memory.
+     */
+    public void render(Appendable out) throws IOException {
+        StringBuilder line = new StringBuilder(cols * 4 + 2);
         for (int r = 0; r < rows * 2 + 1; r++) {
+            line.setLength(0);
             if (r % 2 == 0) {
                 int rr = r / 2;
                 for (int c = 0; c < cols; c++) {
-                    sb.append("•");
-                    sb.append(horizontalEdges[rr][c].isEmpty() ? "   " : horizontalEdges[rr][c].getPiece().symbol());
+                    line.append("•");
+                    line.append(edgeGlyph(index.horizontal(rr, c), LinePiece.Orientation.HORIZONTAL));
                 }
-                sb.append("•\n");
+                line.append("•\n");
             } else {
                 int br = r / 2;
                 for (int c = 0; c < cols + 1; c++) {
-                    sb.append(verticalEdges[br][c].isEmpty() ? " " : verticalEdges[br][c].getPiece().symbol());
+                    line.append(edgeGlyph(index.vertical(br, c), LinePiece.Orientation.VERTICAL));
                     if (c < cols) {
-                        sb.append(boxes[br][c].isEmpty() ? "   " : boxes[br][c].getPiece().symbol());
+                        int owner = boxOwners[br * cols + c];
+                        line.append(owner == 0 ? "   " : BoxClaimPiece.label(owner));
                     }
                 }
-                sb.append("\n");
+                line.append("\n");
             }
+            out.append(line);
         }
-        return sb.toString();
+    }
+
+    private String edgeGlyph(int edge, LinePiece.Orientation orientation) {
+        if (!isDrawn(edge)) return orientation == LinePiece.Orientation.HORIZONTAL ? "   " : " ";
+        boolean strong = (strongEdges[edge >>> 6] & (1L << edge)) != 0;
+        return LinePiece.glyph(orientation, strong);
     }
 }
@@ -0,0 +1,349 @@
+package dots;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Monte Carlo tree search player for Dots & Boxes, for boards too large to solve.
+ *
+ * Root parallelization: every thread grows its own UCT tree from the current
+ * position until the time budget expires, then root visit counts are summed
+ * and the most visited edge is played. Playouts run on a private copy of the
+ * edge bitset plus a dense free-edge list, so a random free edge is one array
+ * read and removing it is a swap. Closing a box grants an extra turn, exactly as
+ * in {@link DotsAndBoxes}; playouts also take any box left with three sides
+ * before drawing at random, which keeps them from throwing chains away.
+ * Wide nodes grow their children progressively (about 2*sqrt(visits)).
+ * Every thread holds its own copy of the board and a playout draws every free
+ * edge, so both memory and time per playout grow with the board; boards are
+ * limited to {@link #MAX_BOXES}.
+ */
+public final class DotsMcts {
+    private static final double EXPLORATION = 0.7;
+    private static final int FULL_EXPANSION_LIMIT = 64;
+    /** Largest board, in boxes, the search accepts. */
+    public static final int MAX_BOXES = 100 * 100;
+
+    /** Chosen move plus search statistics. */
+    public static final class Result {
+        private final DotsMove move;
+        private final long playouts;
+        private final long millis;
+        private final int threads;
+        private final double winRate;
+
+        Result(DotsMove move, long playouts, long millis, int threads, double winRate) {
+            this.move = move;
+            this.playouts = playouts;
+            this.millis = millis;
+            this.threads = threads;
+            this.winRate = winRate;
+        }
+
+        public DotsMove move() { return move; }
+        public long playouts() { return playouts; }
+        public long millis() { return millis; }
+        public int threads() { return threads; }
+        /** Mean playout result for the chosen edge, from the mover's point of view. */
+        public double winRate() { return winRate; }
+        public long playoutsPerSecond() { return millis == 0 ? playouts * 1000 : playouts * 1000 / millis; }
+
+        @Override
+        public String toString() {
+            return String.format("%s win=%.0f%% playouts=%d (%d/s, %d threads, %dms)",
+                    RulesDots.format(move), 100 * winRate, playouts, playoutsPerSecond(), threads, millis);
+        }
+    }
+
+    private final int threads;
+    private final long millisPerMove;
+
+    public DotsMcts(int threads, long millisPerMove) {
+        if (threads < 1) throw new IllegalArgumentException("threads must be >= 1");
+        if (millisPerMove < 1) throw new IllegalArgumentException("millisPerMove must be >= 1");
+        this.threads = threads;
+        this.millisPerMove = millisPerMove;
+    }
+
+    /**
+     * Pick an edge for seat {@code toMove}.
+     * @param scores boxes owned so far, indexed by seat 1..players (index 0 unused)
+     * @throws IllegalArgumentException if the board has more than MAX_BOXES boxes
+     */
+    public Result think(DotsBoard board, int[] scores, int toMove) {
+        if (board.index().boxCount > MAX_BOXES) throw new IllegalArgumentException("board must have at most " + MAX_BOXES + " boxes");
+        long started = System.currentTimeMillis();
+        final long deadline = started + millisPerMove;
+        final Playout root = new Playout(board, scores, toMove);
+        if (root.freeCount == 0) return new Result(null, 0, 0, threads, 0);
+
+        final Worker[] workers = new Worker[threads];
+        List<Thread> running = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker(root, new SplittableRandom(System.nanoTime() + 31L * i), deadline);
+            Thread t = new Thread(workers[i], "dots-mcts-" + i);
+            t.setDaemon(true);
+            running.add(t);
+            t.start();
+        }
+        boolean interrupted = false;
+        for (Thread t : running) {
+            while (t.isAlive()) {
+                try {
+                    t.join();
+                } catch (InterruptedException e) {
+                    // cut the search short, but still wait for every tree to stop growing before reading it
+                    interrupted = true;
+                    for (Worker w : workers) w.stop = true;
+                }
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+
+        EdgeIndex index = board.index();
+        long[] visits = new long[index.edgeCount];
+        double[] rewards = new double[index.edgeCount];
+        long playouts = 0;
+        for (Worker w : workers) {
+            playouts += w.playouts;
+            for (int i = 0; i < w.root.childCount; i++) {
+                Node child = w.root.children[i];
+                visits[child.edge] += child.visits;
+                rewards[child.edge] += child.reward;
+            }
+        }
+        int best = root.free[0];
+        for (int e = 0; e < visits.length; e++) if (visits[e] > visits[best]) best = e;
+        double winRate = visits[best] == 0 ? 0 : rewards[best] / visits[best];
+        return new Result(index.toMove(best), playouts, System.currentTimeMillis() - started, threads, winRate);
+    }
+
+    private static final class Node {
+        final int edge;
+        final int mover;
+        long visits;
+        double reward;
+        Node[] children = new Node[2];
+        int childCount;
+
+        Node(int edge, int mover) {
+            this.edge = edge;
+            this.mover = mover;
+        }
+
+        boolean hasChild(int e) {
+            for (int i = 0; i < childCount; i++) if (children[i].edge == e) return true;
+            return false;
+        }
+
+        Node add(int e, int seat) {
+            if (childCount == children.length) {
+                Node[] grown = new Node[childCount * 2];
+                System.arraycopy(children, 0, grown, 0, childCount);
+                children = grown;
+            }
+            Node child = new Node(e, seat);
+            children[childCount++] = child;
+            return child;
+        }
+    }
+
+    private static final class Worker implements Runnable {
+        private final Playout start;
+        private final Playout state;
+        private final SplittableRandom rnd;
+        private final long deadline;
+        private final Node root = new Node(-1, 0);
+        private final Node[] path;
+        private long playouts;
+        private volatile boolean stop;
+
+        Worker(Playout start, SplittableRandom rnd, long deadline) {
+            this.start = start;
+            this.state = new Playout(start);
+            this.rnd = rnd;
+            this.deadline = deadline;
+            this.path = new Node[start.freeCount + 1];
+        }
+
+        @Override
+        public void run() {
+            do {
+                iterate();
+            } while (!stop && System.currentTimeMillis() < deadline);
+        }
+
+        private void iterate() {
+            state.copyFrom(start);
+            Node node = root;
+            int depth = 0;
+            path[depth++] = node;
+            while (state.freeCount > 0) {
+                int limit = state.freeCount <= FULL_EXPANSION_LIMIT
+                        ? state.freeCount
+                        : Math.min(state.freeCount, 1 + (int) (2 * Math.sqrt(node.visits)));
+                if (node.childCount < limit) {
+                    int edge = untried(node);
+                    int mover = state.toMove;
+                    state.play(edge);
+                    node = node.add(edge, mover);
+                    path[depth++] = node;
+                    break;
+                }
+                node = select(node);
+                state.play(node.edge);
+                path[depth++] = node;
+            }
+            state.rollout(rnd);
+            playouts++;
+            for (int i = 0; i < depth; i++) {
+                Node n = path[i];
+                n.visits++;
+                n.reward += state.result(n.mover);
+            }
+        }
+
+        private int untried(Node node) {
+            if (node.childCount * 2 < state.freeCount) {
+                while (true) {
+                    int e = state.free[rnd.nextInt(state.freeCount)];
+                    if (!node.hasChild(e)) return e;
+                }
+            }
+            int offset = rnd.nextInt(state.freeCount);
+            for (int i = 0; i < state.freeCount; i++) {
+                int e = state.free[(offset + i) % state.freeCount];
+                if (!node.hasChild(e)) return e;
+            }
+            throw new IllegalStateException("node fully expanded");
+        }
+
+        private Node select(Node node) {
+            double logN = Math.log(node.visits + 1);
+            Node best = null;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < node.childCount; i++) {
+                Node c = node.children[i];
+                double score = c.visits == 0
+                        ? Double.POSITIVE_INFINITY
+                        : c.reward / c.visits + EXPLORATION * Math.sqrt(logN / c.visits);
+                if (score > bestScore) { bestScore = score; best = c; }
+            }
+            return best;
+        }
+    }
+
+    /** Mutable game state for tree descent and playouts. */
+    private static final class Playout {
+        final EdgeIndex index;
+        final int players;
+        final long[] drawn;
+        final byte[] sides;
+        final int[] free;
+        final int[] slot;
+        final int[] score;
+        final int[] threeSided;
+        int freeCount;
+        int threeSidedCount;
+        int toMove;
+
+        Playout(DotsBoard board, int[] scores, int toMove) {
+            index = board.index();
+            players = scores.length - 1;
+            drawn = new long[(index.edgeCount + 63) >>> 6];
+            board.copyEdges(drawn);
+            sides = new byte[index.boxCount];
+            free = new int[index.edgeCount];
+            slot = new int[index.edgeCount];
+            score = scores.clone();
+            threeSided = new int[index.boxCount];
+            this.toMove = toMove;
+            for (int e = 0; e < index.edgeCount; e++) {
+                if ((drawn[e >>> 6] & (1L << e)) != 0) {
+                    int a = index.firstBox(e), b = index.secondBox(e);
+                    if (a >= 0) sides[a]++;
+                    if (b >= 0) sides[b]++;
+                } else {
+                    slot[e] = freeCount;
+                    free[freeCount++] = e;
+                }
+            }
+            for (int box = 0; box < sides.length; box++) if (sides[box] == 3) threeSided[threeSidedCount++] = box;
+        }
+
+        Playout(Playout other) {
+            index = other.index;
+            players = other.players;
+            drawn = other.drawn.clone();
+            sides = other.sides.clone();
+            free = other.free.clone();
+            slot = other.slot.clone();
+            score = other.score.clone();
+            threeSided = other.threeSided.clone();
+            freeCount = other.freeCount;
+            threeSidedCount = other.threeSidedCount;
+            toMove = other.toMove;
+        }
+
+        void copyFrom(Playout other) {
+            System.arraycopy(other.drawn, 0, drawn, 0, drawn.length);
+            System.arraycopy(other.sides, 0, sides, 0, sides.length);
+            System.arraycopy(other.free, 0, free, 0, other.freeCount);
+            System.arraycopy(other.slot, 0, slot, 0, slot.length);
+            System.arraycopy(other.score, 0, score, 0, score.length);
+            System.arraycopy(other.threeSided, 0, threeSided, 0, other.threeSidedCount);
+            freeCount = other.freeCount;
+            threeSidedCount = other.threeSidedCount;
+            toMove = other.toMove;
+        }
+
+        void play(int edge) {
+            int last = free[--freeCount];
+            free[slot[edge]] = last;
+            slot[last] = slot[edge];
+            drawn[edge >>> 6] |= 1L << edge;
+            int closed = bump(index.firstBox(edge)) + bump(index.secondBox(edge));
+            if (closed == 0) toMove = toMove % players + 1;
+            else score[toMove] += closed;
+        }
+
+        private int bump(int box) {
+            if (box < 0) return 0;
+            int s = ++sides[box];
+            if (s == 3) threeSided[threeSidedCount++] = box;
+            return s == 4 ? 1 : 0;
+        }
+
+        void rollout(SplittableRandom rnd) {
+            while (freeCount > 0) {
+                int edge = -1;
+                while (threeSidedCount > 0 && edge < 0) {
+                    int box = threeSided[--threeSidedCount];
+                    if (sides[box] == 3) edge = openSide(box);
+                }
+                if (edge < 0) edge = free[rnd.nextInt(freeCount)];
+                play(edge);
+            }
+        }
+
+        private int openSide(int box) {
+            for (int side = 0; side < 4; side++) {
+                int e = index.boxEdge(box, side);
+                if ((drawn[e >>> 6] & (1L << e)) == 0) return e;
+            }
+            return -1;
+        }
+
+        /** 1 for a sole winner, split evenly on a tie for first, else 0. */
+        double result(int seat) {
+            if (seat == 0) return 0;
+            int best = 0, tied = 0;
+            for (int p = 1; p <= players; p++) {
+                if (score[p] > best) { best = score[p]; tied = 1; }
+                else if (score[p] == best) tied++;
+            }
+            return score[seat] == best ? 1.0 / tied : 0;
+        }
+    }
+}
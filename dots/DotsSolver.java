@@ -0,0 +1,435 @@
+package dots;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Exact Dots & Boxes solver: finds the best edge for the side to move and the
+ * net number of the remaining boxes that side wins with perfect play.
+ *
+ * The search is alpha-beta (negamax on the remaining-box margin, with the
+ * extra turn on box closure) over a private edge bitset, with a transposition
+ * table keyed on a Zobrist hash of the drawn-edge set. Two rules keep it small:
+ *  - a capture that cannot be part of a double-dealing decision is forced;
+ *  - once every open box has exactly two sides drawn, the position is a set of
+ *    independent chains and loops and is valued directly with the long chain
+ *    (nimstring) recurrence instead of being searched.
+ * A node budget bounds each call; when it runs out the result is marked inexact.
+ */
+public final class DotsSolver {
+    private static final int EXACT = 0;
+    private static final int LOWER = 1;
+    private static final int UPPER = 2;
+    private static final int NO_MOVE = -1;
+    private static final long EMPTY_HASH = 0x9E3779B97F4A7C15L; // keeps real keys away from empty slots
+    private static final int LOONY_BITS = 16;
+
+    /** Outcome of one {@link #solve} call plus move-ordering statistics. */
+    public static final class Result {
+        private final DotsMove bestMove;
+        private final int margin;
+        private final boolean exact;
+        private final long nodes;
+        private final long ttHits;
+        private final long cutoffs;
+        private final long firstMoveCutoffs;
+        private final long loonyEvaluations;
+        private final long millis;
+
+        Result(DotsMove bestMove, int margin, boolean exact, long nodes, long ttHits,
+               long cutoffs, long firstMoveCutoffs, long loonyEvaluations, long millis) {
+            this.bestMove = bestMove;
+            this.margin = margin;
+            this.exact = exact;
+            this.nodes = nodes;
+            this.ttHits = ttHits;
+            this.cutoffs = cutoffs;
+            this.firstMoveCutoffs = firstMoveCutoffs;
+            this.loonyEvaluations = loonyEvaluations;
+            this.millis = millis;
+        }
+
+        /** Best edge for the side to move, or null when the board is full. */
+        public DotsMove bestMove() { return bestMove; }
+        /** Remaining boxes won minus remaining boxes lost by the side to move. */
+        public int margin() { return margin; }
+        /** False when the node budget ran out; margin and move are then a best guess. */
+        public boolean isExact() { return exact; }
+        public long nodes() { return nodes; }
+        public long ttHits() { return ttHits; }
+        public long cutoffs() { return cutoffs; }
+        /** Share of beta cutoffs produced by the first move tried. */
+        public double firstMoveCutoffRate() { return cutoffs == 0 ? 0 : (double) firstMoveCutoffs / cutoffs; }
+        public long loonyEvaluations() { return loonyEvaluations; }
+        public long millis() { return millis; }
+
+        @Override
+        public String toString() {
+            String move = RulesDots.format(bestMove);
+            long nps = millis == 0 ? nodes * 1000 : nodes * 1000 / millis;
+            return String.format("best=%s margin=%+d %s | nodes=%d (%d/s) tt hits=%d cutoffs=%d first-move=%.1f%% chain evals=%d %dms",
+                    move, margin, exact ? "exact" : "budget hit", nodes, nps, ttHits, cutoffs,
+                    100.0 * firstMoveCutoffRate(), loonyEvaluations, millis);
+        }
+    }
+
+    private final int ttMask;
+    private final long[] ttKeys;
+    private final long[] ttData;
+    private final long[] loonyKeys = new long[1 << LOONY_BITS];
+    private final int[] loonyValues = new int[1 << LOONY_BITS];
+
+    private EdgeIndex index;
+    private long[] zobrist;
+    private long[] drawn;
+    private byte[] sides;
+    private int[] stamp;
+    private int stampValue;
+    private int[] stack;
+    private int[] loonyComps; // chain/loop components of the current loony position
+    private int[][] moveBuffers;
+    private int remaining;
+    private long hash;
+
+    private long budget;
+    private boolean aborted;
+    private long nodes, ttHits, cutoffs, firstMoveCutoffs, loonyEvaluations;
+
+    /** Solver with a 2^20-entry transposition table. */
+    public DotsSolver() {
+        this(20);
+    }
+
+    public DotsSolver(int ttBits) {
+        if (ttBits < 4 || ttBits > 28) throw new IllegalArgumentException("ttBits must be in [4,28]");
+        ttMask = (1 << ttBits) - 1;
+        ttKeys = new long[1 << ttBits];
+        ttData = new long[1 << ttBits];
+    }
+
+    /**
+     * Solve the position on {@code board} for the player about to move.
+     * @param nodeBudget maximum number of search nodes before giving up on exactness
+     */
+    public Result solve(DotsBoard board, long nodeBudget) {
+        long started = System.currentTimeMillis();
+        load(board);
+        budget = nodeBudget;
+        aborted = false;
+        nodes = ttHits = cutoffs = firstMoveCutoffs = loonyEvaluations = 0;
+
+        int best = NO_MOVE;
+        int value = 0;
+        if (remaining > 0) {
+            int[] moves = buffer(0);
+            int count = orderMoves(moves, NO_MOVE);
+            int alpha = -remaining - 1;
+            int beta = remaining + 1;
+            int forced = forcedCapture();
+            int loony = forced < 0 && isSimpleLoony() ? loonyOpening() : NO_MOVE;
+            if (forced >= 0) { moves[0] = forced; count = 1; }
+            else if (loony != NO_MOVE) { moves[0] = loony; count = 1; }
+            for (int i = 0; i < count; i++) {
+                int v = child(moves[i], alpha, beta, 1);
+                if (aborted) break;
+                if (v > alpha) { alpha = v; best = moves[i]; }
+            }
+            // On a budget hit keep the best fully searched root move, else the first ordered one.
+            value = best == NO_MOVE ? 0 : alpha;
+            if (best == NO_MOVE) best = moves[0];
+        }
+        return new Result(best == NO_MOVE ? null : index.toMove(best), value, !aborted,
+                nodes, ttHits, cutoffs, firstMoveCutoffs, loonyEvaluations,
+                System.currentTimeMillis() - started);
+    }
+
+    private void load(DotsBoard board) {
+        EdgeIndex geometry = board.index();
+        if (index == null || index.rows != geometry.rows || index.cols != geometry.cols) {
+            index = geometry;
+            Random rnd = new Random(0x5EEDL * geometry.rows + geometry.cols);
+            zobrist = new long[geometry.edgeCount];
+            for (int i = 0; i < zobrist.length; i++) zobrist[i] = rnd.nextLong();
+            drawn = new long[(geometry.edgeCount + 63) >>> 6];
+            sides = new byte[geometry.boxCount];
+            stamp = new int[geometry.boxCount];
+            stack = new int[geometry.boxCount];
+            loonyComps = new int[geometry.boxCount];
+            moveBuffers = new int[geometry.edgeCount + 1][];
+            Arrays.fill(ttKeys, 0L);
+        }
+        board.copyEdges(drawn);
+        Arrays.fill(sides, (byte) 0);
+        hash = EMPTY_HASH;
+        for (int e = 0; e < index.edgeCount; e++) {
+            if (isSet(e)) {
+                hash ^= zobrist[e];
+                int a = index.firstBox(e), b = index.secondBox(e);
+                if (a >= 0) sides[a]++;
+                if (b >= 0) sides[b]++;
+            }
+        }
+        remaining = 0;
+        for (byte s : sides) if (s < 4) remaining++;
+    }
+
+    private int[] buffer(int ply) {
+        int[] buf = moveBuffers[ply];
+        if (buf == null) buf = moveBuffers[ply] = new int[index.edgeCount];
+        return buf;
+    }
+
+    private int child(int edge, int alpha, int beta, int ply) {
+        int closed = draw(edge);
+        int v = closed > 0
+                ? closed + negamax(alpha - closed, beta - closed, ply)
+                : -negamax(-beta, -alpha, ply);
+        undraw(edge);
+        return v;
+    }
+
+    private int negamax(int alpha, int beta, int ply) {
+        if (++nodes > budget) { aborted = true; return 0; }
+        if (remaining == 0) return 0;
+        if (alpha < -remaining) alpha = -remaining;
+        if (beta > remaining) beta = remaining;
+        if (alpha >= beta) return alpha;
+
+        int slot = (int) hash & ttMask;
+        int ttMove = NO_MOVE;
+        if (ttKeys[slot] == hash) {
+            long data = ttData[slot];
+            int value = (int) data;
+            int flag = (int) (data >>> 32) & 3;
+            ttMove = (int) (data >>> 34) - 1;
+            ttHits++;
+            if (flag == EXACT) return value;
+            if (flag == LOWER && value >= beta) return value;
+            if (flag == UPPER && value <= alpha) return value;
+        }
+
+        int forced = forcedCapture();
+        if (forced >= 0) return child(forced, alpha, beta, ply + 1);
+        if (isSimpleLoony()) {
+            loonyEvaluations++;
+            int value = loonyValue();
+            store(slot, value, EXACT, NO_MOVE);
+            return value;
+        }
+
+        int alphaOrig = alpha;
+        int[] moves = buffer(ply);
+        int count = orderMoves(moves, ttMove);
+        int best = -remaining - 1;
+        int bestMove = NO_MOVE;
+        for (int i = 0; i < count; i++) {
+            int v = child(moves[i], alpha, beta, ply + 1);
+            if (aborted) return 0;
+            if (v > best) { best = v; bestMove = moves[i]; }
+            if (v > alpha) alpha = v;
+            if (alpha >= beta) {
+                cutoffs++;
+                if (i == 0) firstMoveCutoffs++;
+                break;
+            }
+        }
+        int flag = best <= alphaOrig ? UPPER : best >= beta ? LOWER : EXACT;
+        store(slot, best, flag, bestMove);
+        return best;
+    }
+
+    private void store(int slot, int value, int flag, int move) {
+        ttKeys[slot] = hash;
+        ttData[slot] = (value & 0xFFFFFFFFL) | ((long) flag << 32) | ((long) (move + 1) << 34);
+    }
+
+    /** Captures first, then safe edges (no third side), then sacrifices; TT move ahead of all. */
+    private int orderMoves(int[] moves, int ttMove) {
+        int count = 0;
+        if (ttMove != NO_MOVE && !isSet(ttMove)) moves[count++] = ttMove;
+        for (int pass = 0; pass < 3; pass++) {
+            for (int e = 0; e < index.edgeCount; e++) {
+                if (isSet(e) || e == ttMove) continue;
+                if (edgeClass(e) == pass) moves[count++] = e;
+            }
+        }
+        return count;
+    }
+
+    private int edgeClass(int edge) {
+        int a = index.firstBox(edge), b = index.secondBox(edge);
+        int sa = a < 0 ? 0 : sides[a], sb = b < 0 ? 0 : sides[b];
+        if (sa == 3 || sb == 3) return 0;
+        if (sa != 2 && sb != 2) return 1;
+        return 2;
+    }
+
+    /**
+     * A capturable box whose closing edge does not hand a third side to a
+     * neighbour: taking it is never worse than declining, so it is played at once.
+     */
+    private int forcedCapture() {
+        for (int box = 0; box < sides.length; box++) {
+            if (sides[box] != 3) continue;
+            int edge = freeEdge(box);
+            int other = index.across(edge, box);
+            if (other < 0 || sides[other] != 2) return edge;
+        }
+        return NO_MOVE;
+    }
+
+    private int freeEdge(int box) {
+        for (int side = 0; side < 4; side++) {
+            int e = index.boxEdge(box, side);
+            if (!isSet(e)) return e;
+        }
+        return NO_MOVE;
+    }
+
+    /** Every open box has exactly two sides: only chains and loops remain. */
+    private boolean isSimpleLoony() {
+        for (byte s : sides) if (s != 2 && s != 4) return false;
+        return true;
+    }
+
+    /**
+     * Value of a chains-and-loops position for the player who must open one.
+     * The opponent either takes everything and moves next, or keeps control by
+     * declining the last two boxes of a long chain (four of a loop).
+     */
+    private int loonyValue() {
+        int count = components(loonyComps, null);
+        Arrays.sort(loonyComps, 0, count);
+        return controlledValue(loonyComps, count, multisetKey(loonyComps, 0, count));
+    }
+
+    /**
+     * Value of the sorted components {@code comps[0..count)}, whose multiset
+     * key is {@code key}. Each component is taken out in place for the
+     * recursion and put back after, and values are cached in a direct-mapped
+     * table on the 64-bit key, trusted like the transposition table's.
+     */
+    private int controlledValue(int[] comps, int count, long key) {
+        if (count == 0) return 0;
+        int slot = (int) (key ^ key >>> 32) & (loonyKeys.length - 1);
+        if (loonyKeys[slot] == key) return loonyValues[slot];
+        int best = Integer.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            int c = comps[i];
+            if (i > 0 && c == comps[i - 1]) continue;
+            System.arraycopy(comps, i + 1, comps, i, count - i - 1);
+            int v = -opponentGain(c, controlledValue(comps, count - 1, key - componentKey(c)));
+            System.arraycopy(comps, i, comps, i + 1, count - i - 1);
+            comps[i] = c;
+            if (v > best) best = v;
+        }
+        loonyKeys[slot] = key;
+        loonyValues[slot] = best;
+        return best;
+    }
+
+    /** Order-free key of a component multiset: a sum of per-component hashes, so removing one is a subtraction. */
+    private static long multisetKey(int[] comps, int from, int to) {
+        long key = EMPTY_HASH;
+        for (int i = from; i < to; i++) key += componentKey(comps[i]);
+        return key;
+    }
+
+    private static long componentKey(int component) {
+        long z = component * 0x9E3779B97F4A7C15L;
+        z = (z ^ z >>> 30) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ z >>> 27) * 0x94D049BB133111EBL;
+        return z ^ z >>> 31;
+    }
+
+    private static int opponentGain(int component, int restValue) {
+        int length = component >> 1;
+        boolean loop = (component & 1) != 0;
+        if (loop) return Math.max(length + restValue, length - 8 - restValue);
+        if (length <= 2) return length + restValue;
+        return Math.max(length + restValue, length - 4 - restValue);
+    }
+
+    /** Root move in a chains-and-loops position: open the component the recurrence prefers. */
+    private int loonyOpening() {
+        int[] openings = new int[sides.length];
+        int[] comps = loonyComps;
+        int count = components(comps, openings);
+        int[] sorted = Arrays.copyOf(comps, count);
+        Arrays.sort(sorted);
+        long key = multisetKey(sorted, 0, count);
+        int bestIdx = 0;
+        int best = Integer.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            int at = Arrays.binarySearch(sorted, comps[i]);
+            System.arraycopy(sorted, at + 1, sorted, at, count - at - 1);
+            int v = -opponentGain(comps[i], controlledValue(sorted, count - 1, key - componentKey(comps[i])));
+            System.arraycopy(sorted, at, sorted, at + 1, count - at - 1);
+            sorted[at] = comps[i];
+            if (v > best) { best = v; bestIdx = i; }
+        }
+        return openings[bestIdx];
+    }
+
+    /**
+     * Decompose the open boxes into chains and loops, encoded as length * 2 + (loop ? 1 : 0).
+     * When {@code openings} is given it receives the edge to open each component with:
+     * the middle edge of a two-chain (a hard-hearted handout), otherwise an end.
+     * @return the number of components written to {@code out}
+     */
+    private int components(int[] out, int[] openings) {
+        int count = 0;
+        stampValue++;
+        for (int start = 0; start < sides.length; start++) {
+            if (sides[start] == 4 || stamp[start] == stampValue) continue;
+            int length = 0, ground = 0, groundEdge = NO_MOVE, innerEdge = NO_MOVE;
+            int top = 0;
+            stack[top++] = start;
+            stamp[start] = stampValue;
+            while (top > 0) {
+                int box = stack[--top];
+                length++;
+                for (int side = 0; side < 4; side++) {
+                    int e = index.boxEdge(box, side);
+                    if (isSet(e)) continue;
+                    int other = index.across(e, box);
+                    if (other < 0) { ground++; groundEdge = e; continue; }
+                    innerEdge = e;
+                    if (stamp[other] != stampValue) {
+                        stamp[other] = stampValue;
+                        stack[top++] = other;
+                    }
+                }
+            }
+            boolean loop = ground == 0;
+            if (openings != null) {
+                openings[count] = loop ? innerEdge : (length == 2 ? innerEdge : groundEdge);
+            }
+            out[count++] = length * 2 + (loop ? 1 : 0);
+        }
+        return count;
+    }
+
+    private boolean isSet(int edge) {
+        return (drawn[edge >>> 6] & (1L << edge)) != 0;
+    }
+
+    private int draw(int edge) {
+        drawn[edge >>> 6] |= 1L << edge;
+        hash ^= zobrist[edge];
+        int closed = 0;
+        int a = index.firstBox(edge), b = index.secondBox(edge);
+        if (a >= 0 && ++sides[a] == 4) closed++;
+        if (b >= 0 && ++sides[b] == 4) closed++;
+        remaining -= closed;
+        return closed;
+    }
+
+    private void undraw(int edge) {
+        drawn[edge >>> 6] &= ~(1L << edge);
+        hash ^= zobrist[edge];
+        int a = index.firstBox(edge), b = index.secondBox(edge);
+        if (a >= 0 && sides[a]-- == 4) remaining++;
+        if (b >= 0 && sides[b]-- == 4) remaining++;
+    }
+}
@@ -0,0 +1,92 @@
+package dots;
+
+/**
+ * Dense numbering of the edges of a rows x cols Dots & Boxes grid.
+ * Horizontal edges come first, row-major over (rows+1) x cols, followed by
+ * vertical edges, row-major over rows x (cols+1). Boxes are numbered
+ * row-major over rows x cols. All lookups are arithmetic, so the index
+ * itself costs no memory regardless of board size.
+ */
+final class EdgeIndex {
+    final int rows;
+    final int cols;
+    final int horizontalCount;
+    final int edgeCount;
+    final int boxCount;
+
+    EdgeIndex(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        this.horizontalCount = (rows + 1) * cols;
+        this.edgeCount = horizontalCount + rows * (cols + 1);
+        this.boxCount = rows * cols;
+    }
+
+    int horizontal(int r, int c) { return r * cols + c; }
+    int vertical(int r, int c) { return horizontalCount + r * (cols + 1) + c; }
+
+    boolean isHorizontal(int edge) { return edge < horizontalCount; }
+
+    /** Row of the edge in its own (horizontal or vertical) grid. */
+    int row(int edge) {
+        return edge < horizontalCount ? edge / cols : (edge - horizontalCount) / (cols + 1);
+    }
+
+    /** Column of the edge in its own (horizontal or vertical) grid. */
+    int col(int edge) {
+        return edge < horizontalCount ? edge % cols : (edge - horizontalCount) % (cols + 1);
+    }
+
+    /** Box above a horizontal edge or left of a vertical edge; -1 on the border. */
+    int firstBox(int edge) {
+        if (edge < horizontalCount) {
+            int r = edge / cols;
+            return r > 0 ? edge - cols : -1;
+        }
+        int v = edge - horizontalCount;
+        int r = v / (cols + 1), c = v % (cols + 1);
+        return c > 0 ? r * cols + c - 1 : -1;
+    }
+
+    /** Box below a horizontal edge or right of a vertical edge; -1 on the border. */
+    int secondBox(int edge) {
+        if (edge < horizontalCount) {
+            int r = edge / cols;
+            return r < rows ? edge : -1;
+        }
+        int v = edge - horizontalCount;
+        int r = v / (cols + 1), c = v % (cols + 1);
+        return c < cols ? r * cols + c : -1;
+    }
+
+    /** The box on the other side of {@code edge} from {@code box}; -1 for the border. */
+    int across(int edge, int box) {
+        int a = firstBox(edge);
+        return a == box ? secondBox(edge) : a;
+    }
+
+    /** Edge {@code side} (0=top, 1=bottom, 2=left, 3=right) of a box. */
+    int boxEdge(int box, int side) {
+        int r = box / cols, c = box % cols;
+        switch (side) {
+            case 0: return horizontal(r, c);
+            case 1: return horizontal(r + 1, c);
+            case 2: return vertical(r, c);
+            default: return vertical(r, c + 1);
+        }
+    }
+
+    DotsMove toMove(int edge) {
+        return new DotsMove(isHorizontal(edge), row(edge), col(edge));
+    }
+
+    /** Edge id for a move, or -1 when the move is out of bounds. */
+    int toEdge(DotsMove move) {
+        if (move.horizontal) {
+            if (move.r < 0 || move.r > rows || move.c < 0 || move.c >= cols) return -1;
+            return horizontal(move.r, move.c);
+        }
+        if (move.r < 0 || move.r >= rows || move.c < 0 || move.c > cols) return -1;
+        return vertical(move.r, move.c);
+    }
+}
@@ -22,6 +22,11 @@ public final class LinePiece extends Piece {
 
     @Override
     public String symbol() {
+        return glyph(orientation, strongGlyph);
+    }
+
+    /** Shared glyph for a drawn edge; boards render straight from this without a piece. */
+    static String glyph(Orientation orientation, boolean strongGlyph) {
         switch (orientation) {
             case HORIZONTAL: return strongGlyph ? "═══" : "───";
             case VERTICAL: return strongGlyph ? "║" : "│";
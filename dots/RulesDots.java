@@ -26,4 +26,10 @@ public final class RulesDots {
             return null;
         }
     }
+
+    /** Inverse of {@link #parse}: "H r c" / "V r c". */
+    public static String format(DotsMove move) {
+        if (move == null) return "-";
+        return (move.horizontal ? "H " : "V ") + move.r + " " + move.c;
+    }
 }
@@ -0,0 +1,38 @@
+package game;
+
+/**
+ * Cooperative stop signal for a search: cancelled explicitly from any thread,
+ * or implicitly once an optional deadline passes. Searches poll
+ * {@link #isCancelled()} every few nodes. Create the token before handing the
+ * search to another thread, so a cancel can never arrive before the search
+ * sees it.
+ */
+public final class CancellationToken {
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private final long deadline; // System.nanoTime() value, or NO_DEADLINE
+    private volatile boolean cancelled;
+
+    private CancellationToken(long deadline) {
+        this.deadline = deadline;
+    }
+
+    /** A token that only {@link #cancel()} trips. */
+    public static CancellationToken manual() {
+        return new CancellationToken(NO_DEADLINE);
+    }
+
+    /** A token that trips {@code millis} from now, or earlier on {@link #cancel()}; Long.MAX_VALUE for none. */
+    public static CancellationToken afterMillis(long millis) {
+        if (millis >= Long.MAX_VALUE / 2_000_000) return manual();
+        return new CancellationToken(System.nanoTime() + Math.max(0, millis) * 1_000_000);
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled || deadline != NO_DEADLINE && System.nanoTime() - deadline >= 0;
+    }
+}
@@ -0,0 +1,118 @@
+package game;
+
+import java.util.function.IntFunction;
+
+/**
+ * Primitive board storage: one small int code per cell in the narrowest array
+ * that fits (byte, short or int), with code 0 meaning empty. Pieces are
+ * flyweights, one per code, made on first use by the board's factory, so a
+ * board pays a byte or two per cell instead of a Tile object per cell and a
+ * Piece object per occupant.
+ *
+ * Code written against {@link Tile}/{@link Piece} can still ask for
+ * {@link #tile(int, int)}: a read-only Tile view that looks the cell up on
+ * every call, so it never goes stale.
+ */
+public final class CellGrid {
+    private final int rows;
+    private final int cols;
+    private final int maxCode;
+    private final byte[] bytes;
+    private final short[] shorts;
+    private final int[] ints;
+    private final Piece[] flyweights; // by code, filled lazily
+    private final IntFunction<? extends Piece> pieceFor;
+
+    /**
+     * @param maxCode  largest code ever stored; picks the storage width
+     * @param pieceFor makes the flyweight Piece for a code in 1..maxCode
+     */
+    public CellGrid(int rows, int cols, int maxCode, IntFunction<? extends Piece> pieceFor) {
+        if (rows <= 0 || cols <= 0) throw new IllegalArgumentException("rows and cols must be positive");
+        if (maxCode < 0) throw new IllegalArgumentException("maxCode must be >= 0");
+        this.rows = rows;
+        this.cols = cols;
+        this.maxCode = maxCode;
+        this.pieceFor = pieceFor;
+        int cells = rows * cols;
+        bytes = maxCode <= Byte.MAX_VALUE ? new byte[cells] : null;
+        shorts = bytes == null && maxCode <= Short.MAX_VALUE ? new short[cells] : null;
+        ints = bytes == null && shorts == null ? new int[cells] : null;
+        flyweights = new Piece[maxCode + 1];
+    }
+
+    public int rows() { return rows; }
+    public int cols() { return cols; }
+    public int cells() { return rows * cols; }
+
+    /** Code at row-major index {@code cell}; 0 when empty. */
+    public int get(int cell) {
+        return bytes != null ? bytes[cell] : shorts != null ? shorts[cell] : ints[cell];
+    }
+
+    public int get(int row, int col) {
+        return get(row * cols + col);
+    }
+
+    public void set(int cell, int code) {
+        if (bytes != null) bytes[cell] = (byte) code;
+        else if (shorts != null) shorts[cell] = (short) code;
+        else ints[cell] = code;
+    }
+
+    public void set(int row, int col, int code) {
+        set(row * cols + col, code);
+    }
+
+    public void clear() {
+        for (int cell = 0; cell < cells(); cell++) set(cell, 0);
+    }
+
+    /** Flyweight piece for {@code code}, or null for 0 (empty). */
+    public Piece piece(int code) {
+        if (code == 0) return null;
+        Piece p = flyweights[code];
+        if (p == null) {
+            if (code > maxCode) throw new IllegalArgumentException("code " + code + " is above " + maxCode);
+            p = flyweights[code] = pieceFor.apply(code);
+        }
+        return p;
+    }
+
+    /** What {@link Tile#render()} would print for the cell. */
+    public String render(int row, int col) {
+        int code = get(row, col);
+        return code == 0 ? " " : piece(code).symbol();
+    }
+
+    /** Read-only Tile view of one cell. */
+    public Tile tile(int row, int col) {
+        if (row < 0 || row >= rows || col < 0 || col >= cols) throw new IndexOutOfBoundsException(row + "," + col);
+        return new View(row * cols + col);
+    }
+
+    /** Bytes held by the cell array (headers and the flyweights aside). */
+    public long storageBytes() {
+        return bytes != null ? bytes.length : shorts != null ? 2L * shorts.length : 4L * ints.length;
+    }
+
+    private final class View extends Tile {
+        private final int cell;
+
+        View(int cell) {
+            this.cell = cell;
+        }
+
+        @Override public Piece getPiece() { return piece(get(cell)); }
+        @Override public boolean isEmpty() { return get(cell) == 0; }
+        @Override public String render() { return CellGrid.this.render(cell / cols, cell % cols); }
+
+        @Override public void setPiece(Piece piece) {
+            throw new UnsupportedOperationException("grid tiles are read-only; change the board through its moves");
+        }
+
+        @Override public void clear() {
+            throw new UnsupportedOperationException("grid tiles are read-only; change the board through its moves");
+        }
+    }
+}
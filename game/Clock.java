@@ -0,0 +1,85 @@
+package game;
+
+import java.util.Arrays;
+
+/**
+ * Fischer chess clock for any number of seats: every seat starts with the
+ * same time and gains a fixed increment after each move made in time. Only the
+ * running seat's time counts down. Console input cannot be interrupted, so a
+ * game loop detects a fallen flag whenever the player next types something or
+ * finishes the move ({@link #flagged}, {@link #stop}).
+ */
+public final class Clock {
+    /** Time kept back from every allocation for move overhead (printing, rendering, thread hand-off). */
+    public static final long SAFETY_MILLIS = 50;
+
+    private final long[] remaining; // millis, as of the last stop
+    private final long increment;
+    private int running = -1;
+    private long startedAt;
+
+    public Clock(int seats, long baseMillis, long incrementMillis) {
+        if (seats < 1 || baseMillis < 1 || incrementMillis < 0) throw new IllegalArgumentException("bad time control");
+        this.remaining = new long[seats];
+        Arrays.fill(remaining, baseMillis);
+        this.increment = incrementMillis;
+    }
+
+    /** Start {@code seat}'s time running. */
+    public void start(int seat) {
+        running = seat;
+        startedAt = System.nanoTime();
+    }
+
+    /**
+     * Stop the running seat's time after its move and add the increment.
+     * @return false if its flag fell during the move (no increment then)
+     */
+    public boolean stop() {
+        int seat = running;
+        if (seat < 0) return true;
+        remaining[seat] = remaining(seat);
+        running = -1;
+        if (remaining[seat] <= 0) return false;
+        remaining[seat] += increment;
+        return true;
+    }
+
+    /** Time left for {@code seat} right now, in milliseconds (0 or less once its flag fell). */
+    public long remaining(int seat) {
+        if (seat != running) return remaining[seat];
+        return remaining[seat] - (System.nanoTime() - startedAt) / 1_000_000;
+    }
+
+    public long increment() {
+        return increment;
+    }
+
+    public boolean flagged(int seat) {
+        return remaining(seat) <= 0;
+    }
+
+    /**
+     * Think time for {@code seat}'s next move: an even share of what is left
+     * over {@code movesToGo} moves plus most of the increment, never more than
+     * a third of the remaining time (less {@link #SAFETY_MILLIS}), so a search
+     * that stops on its budget cannot lose on time.
+     */
+    public long allocate(int seat, int movesToGo) {
+        return allocate(remaining(seat), increment, movesToGo);
+    }
+
+    /** {@link #allocate(int, int)} for a clock kept elsewhere (an engine protocol's time reports). */
+    public static long allocate(long remainingMillis, long incrementMillis, int movesToGo) {
+        long usable = remainingMillis - SAFETY_MILLIS;
+        if (usable <= 1) return 1;
+        long share = usable / Math.max(1, movesToGo) + incrementMillis * 3 / 4;
+        return Math.max(1, Math.min(share, usable / 3));
+    }
+
+    /** m:ss.t for status lines. */
+    public static String format(long millis) {
+        long m = Math.max(0, millis);
+        return String.format("%d:%02d.%d", m / 60_000, m / 1000 % 60, m / 100 % 10);
+    }
+}
@@ -0,0 +1,33 @@
+package game;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/** Monotonic event counter (BFS calls, cells visited, ...), optionally reported per call of a timer. */
+public final class Counter implements CounterMBean {
+    private final String name;
+    private final LatencyStats per; // null: no per-call ratio
+    private final LongAdder value = new LongAdder();
+
+    Counter(String name, LatencyStats per) {
+        this.name = name;
+        this.per = per;
+    }
+
+    public void increment() { value.increment(); }
+    public void add(long delta) { value.add(delta); }
+
+    @Override public String getName() { return name; }
+    @Override public long getValue() { return value.sum(); }
+    @Override public void reset() { value.reset(); }
+
+    @Override public double getPerCall() {
+        long calls = per == null ? 0 : per.getCount();
+        return calls == 0 ? 0 : (double) getValue() / calls;
+    }
+
+    @Override
+    public String toString() {
+        if (per == null) return String.format("%-28s %d", name, getValue());
+        return String.format("%-28s %d (%.2f per %s)", name, getValue(), getPerCall(), per.getName());
+    }
+}
@@ -0,0 +1,10 @@
+package game;
+
+/** JMX view of {@link Counter}. */
+public interface CounterMBean {
+    String getName();
+    long getValue();
+    /** Value over the call count of the timer it is reported against; 0 without one or before any call. */
+    double getPerCall();
+    void reset();
+}
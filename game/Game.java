@@ -42,6 +42,7 @@ public abstract class Game {
     /** Convenience output helpers wired to the Renderer. */
     protected void print(String text) { renderer.show(text); }
     protected void println(String text) { renderer.show(text + "\n"); }
+    protected Appendable out() { return renderer.sink(); }
 
     /** Start the game loop. */
     public abstract void start();
@@ -0,0 +1,66 @@
+package game;
+
+/**
+ * Mutable game position that search engines drive through make/unmake.
+ *
+ * Moves are plain ints whose meaning belongs to the game (an edge id, a cell,
+ * a tile number...). Engines only generate them into caller-owned buffers, play
+ * them and take them back, so a search allocates nothing per node and never
+ * boxes a move. Seats are numbered 0..playerCount()-1.
+ *
+ * Implemented by {@code QuoridorBoard}, {@code QuoridorBoard4}, {@code DotsBoard}
+ * and {@code SlidingPuzzleBoard}; see {@link Negamax}, {@link Mcts} and
+ * {@link IdaStar} for engines that run on any of them.
+ */
+public interface GameState {
+    /** Score of a decided game for the winner (and minus this for losers). */
+    int WIN = 1_000_000;
+
+    int playerCount();
+
+    /** Seat whose move it is. */
+    int sideToMove();
+
+    /** Upper bound on {@link #generateMoves} results; buffers of this size never overflow. */
+    int maxMoves();
+
+    /**
+     * Write every legal move into {@code moves} starting at index 0.
+     * @return how many were written (0 when the position is terminal)
+     */
+    int generateMoves(int[] moves);
+
+    /** Play a legal move for {@link #sideToMove()}. */
+    void makeMove(int move);
+
+    /** Take back {@code move}, which must be the last move made and not yet unmade. */
+    void unmakeMove(int move);
+
+    /** 64-bit position hash, equal for equal positions (side to move included). */
+    long hash();
+
+    /**
+     * Hash shared by a position and its symmetric copies, for tables that should
+     * store each of them once. Moves stored under it go through
+     * {@link #canonicalMove}. By default there is no symmetry and this is {@link #hash()}.
+     */
+    default long canonicalHash() {
+        return hash();
+    }
+
+    /**
+     * Map a move between this position's orientation and the canonical one; the
+     * mapping is its own inverse, so the same call converts both ways. Identity by default.
+     */
+    default int canonicalMove(int move) {
+        return move;
+    }
+
+    boolean isTerminal();
+
+    /**
+     * Evaluation for {@code seat}: higher is better, within -WIN..WIN. On a terminal
+     * position this is the outcome; otherwise it is the game's static estimate.
+     */
+    int score(int seat);
+}
@@ -0,0 +1,11 @@
+package game;
+
+/**
+ * Single-agent state for {@link IdaStar}: terminal positions are goals, every
+ * move costs one, and {@link #lowerBound()} never overestimates the distance
+ * to the nearest goal.
+ */
+public interface HeuristicState extends GameState {
+    /** Admissible estimate of the moves still needed; 0 on a goal. */
+    int lowerBound();
+}
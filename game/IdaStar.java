@@ -0,0 +1,108 @@
+package game;
+
+import java.util.Arrays;
+
+/**
+ * Iterative-deepening A* for any {@link HeuristicState}: finds a shortest move
+ * sequence to a goal when the lower bound is admissible.
+ *
+ * Each iteration is a depth-first search cut off where moves so far plus
+ * {@link HeuristicState#lowerBound()} exceed the threshold; the next threshold
+ * is the smallest value that was cut off. Moves that return to the
+ * grandparent position (equal hash) are skipped, which removes the immediate
+ * undo without the engine knowing the game's move encoding.
+ */
+public final class IdaStar {
+    private static final int FOUND = -1;
+
+    /** Solution (when found) and search statistics. */
+    public static final class Result {
+        private final int[] moves;
+        private final boolean solved;
+        private final long nodes;
+        private final long millis;
+
+        Result(int[] moves, boolean solved, long nodes, long millis) {
+            this.moves = moves;
+            this.solved = solved;
+            this.nodes = nodes;
+            this.millis = millis;
+        }
+
+        /** Moves from the start to a goal; empty when not solved. */
+        public int[] moves() { return moves.clone(); }
+        /** False when the node budget ran out or no goal is reachable. */
+        public boolean isSolved() { return solved; }
+        public int length() { return solved ? moves.length : -1; }
+        public long nodes() { return nodes; }
+        public long millis() { return millis; }
+        public long nodesPerSecond() { return millis == 0 ? nodes * 1000 : nodes * 1000 / millis; }
+    }
+
+    private HeuristicState state;
+    private int[][] moves = new int[0][];
+    private int[] path = new int[0];
+    private long[] hashes = new long[0];
+    private int solutionLength;
+    private long nodes;
+    private long nodeBudget;
+
+    /** Search from {@code state} (restored on return) within {@code nodeBudget} expanded nodes. */
+    public Result search(HeuristicState state, long nodeBudget) {
+        long started = System.nanoTime();
+        this.state = state;
+        this.nodes = 0;
+        this.nodeBudget = nodeBudget;
+        int threshold = state.lowerBound();
+        while (true) {
+            grow(threshold + 1);
+            hashes[0] = state.hash();
+            int next = dfs(0, threshold);
+            long millis = (System.nanoTime() - started) / 1_000_000;
+            if (next == FOUND) return new Result(Arrays.copyOf(path, solutionLength), true, nodes, millis);
+            if (next == Integer.MAX_VALUE || nodes >= nodeBudget) return new Result(new int[0], false, nodes, millis);
+            threshold = next;
+        }
+    }
+
+    /** FOUND with {@code path} filled, or the smallest f-value over the threshold. */
+    private int dfs(int g, int threshold) {
+        int f = g + state.lowerBound();
+        if (f > threshold) return f;
+        if (state.isTerminal()) {
+            solutionLength = g;
+            return FOUND;
+        }
+        if (++nodes >= nodeBudget) return Integer.MAX_VALUE;
+        int[] list = moves[g];
+        int count = state.generateMoves(list);
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            int move = list[i];
+            state.makeMove(move);
+            long hash = state.hash();
+            if (g > 0 && hash == hashes[g - 1]) {
+                state.unmakeMove(move);
+                continue;
+            }
+            path[g] = move;
+            hashes[g + 1] = hash;
+            int t = dfs(g + 1, threshold);
+            state.unmakeMove(move);
+            if (t == FOUND) return FOUND;
+            if (t < min) min = t;
+            if (nodes >= nodeBudget) return Integer.MAX_VALUE;
+        }
+        return min;
+    }
+
+    private void grow(int depth) {
+        if (moves.length > depth) return;
+        int size = Math.max(depth + 1, moves.length * 2);
+        int old = moves.length;
+        moves = Arrays.copyOf(moves, size);
+        for (int i = old; i < size; i++) moves[i] = new int[state.maxMoves()];
+        path = Arrays.copyOf(path, size);
+        hashes = Arrays.copyOf(hashes, size + 1);
+    }
+}
@@ -0,0 +1,78 @@
+package game;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Call count plus a power-of-two latency histogram for one operation.
+ * Bucket i holds calls that took [2^i, 2^(i+1)) nanoseconds.
+ */
+public final class LatencyStats implements LatencyStatsMBean {
+    private static final int BUCKETS = 40;
+
+    private final String name;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    LatencyStats(String name) {
+        this.name = name;
+    }
+
+    /** Record one call that began at {@code startNanos} (from System.nanoTime()). */
+    public void record(long startNanos) {
+        recordNanos(System.nanoTime() - startNanos);
+    }
+
+    public void recordNanos(long nanos) {
+        if (nanos < 0) nanos = 0;
+        count.increment();
+        totalNanos.add(nanos);
+        int bucket = Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(nanos | 1));
+        buckets.incrementAndGet(bucket);
+        long max = maxNanos.get();
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos)) max = maxNanos.get();
+    }
+
+    @Override public String getName() { return name; }
+    @Override public long getCount() { return count.sum(); }
+    @Override public long getTotalNanos() { return totalNanos.sum(); }
+    @Override public long getMaxNanos() { return maxNanos.get(); }
+
+    @Override public long getMeanNanos() {
+        long n = count.sum();
+        return n == 0 ? 0 : totalNanos.sum() / n;
+    }
+
+    @Override public long getP50Nanos() { return percentile(0.50); }
+    @Override public long getP99Nanos() { return percentile(0.99); }
+
+    /** Upper bound of the bucket containing the given quantile. */
+    public long percentile(double q) {
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) n += buckets.get(i);
+        if (n == 0) return 0;
+        long rank = (long) Math.ceil(q * n);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) return 1L << (i + 1);
+        }
+        return getMaxNanos();
+    }
+
+    @Override public void reset() {
+        count.reset();
+        totalNanos.reset();
+        maxNanos.set(0);
+        for (int i = 0; i < BUCKETS; i++) buckets.set(i, 0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-28s count=%d mean=%dns p50<=%dns p99<=%dns max=%dns",
+                name, getCount(), getMeanNanos(), getP50Nanos(), getP99Nanos(), getMaxNanos());
+    }
+}
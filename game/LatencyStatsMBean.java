@@ -0,0 +1,13 @@
+package game;
+
+/** JMX view of {@link LatencyStats}. */
+public interface LatencyStatsMBean {
+    String getName();
+    long getCount();
+    long getTotalNanos();
+    long getMeanNanos();
+    long getMaxNanos();
+    long getP50Nanos();
+    long getP99Nanos();
+    void reset();
+}
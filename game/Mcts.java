@@ -0,0 +1,211 @@
+package game;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Monte Carlo tree search (UCT) for any {@link GameState}.
+ *
+ * The tree is a preallocated node pool in parallel primitive arrays, and the
+ * children of a node are one contiguous block, so growing the tree allocates
+ * nothing. Descent and playouts use make/unmake on the caller's state, which is
+ * restored after every iteration. A playout runs random moves until the game
+ * ends or {@code playoutLimit} plies have passed; the seats with the highest
+ * {@link GameState#score} then share the win. Each node's reward is counted for
+ * the seat that moved into it, so any number of players and extra turns work.
+ */
+public final class Mcts {
+    private static final double EXPLORATION = 0.7;
+
+    /** Chosen move plus search statistics. */
+    public static final class Result {
+        private final int bestMove;
+        private final long playouts;
+        private final int nodes;
+        private final long millis;
+        private final double winRate;
+
+        Result(int bestMove, long playouts, int nodes, long millis, double winRate) {
+            this.bestMove = bestMove;
+            this.playouts = playouts;
+            this.nodes = nodes;
+            this.millis = millis;
+            this.winRate = winRate;
+        }
+
+        /** Most visited root move, or -1 when the root has no moves. */
+        public int bestMove() { return bestMove; }
+        public long playouts() { return playouts; }
+        /** Tree nodes in use when the search ended. */
+        public int nodes() { return nodes; }
+        public long millis() { return millis; }
+        /** Mean playout result for the chosen move, from the mover's point of view. */
+        public double winRate() { return winRate; }
+        public long playoutsPerSecond() { return millis == 0 ? playouts * 1000 : playouts * 1000 / millis; }
+
+        @Override
+        public String toString() {
+            return String.format("best=%d win=%.0f%% playouts=%d (%d/s) nodes=%d %dms",
+                    bestMove, 100 * winRate, playouts, playoutsPerSecond(), nodes, millis);
+        }
+    }
+
+    private final int capacity;
+    private final int playoutLimit;
+    private final SplittableRandom rnd;
+    private final int[] move;
+    private final int[] mover;
+    private final int[] firstChild; // -1 until expanded
+    private final int[] childCount;
+    private final int[] visits;
+    private final double[] reward;
+    private volatile boolean stopped;
+
+    private GameState state;
+    private int used;
+    private int[] scratch = new int[0];
+    private int[] path = new int[64];
+    private int[] played = new int[64];
+    private double[] outcome = new double[0];
+    private int[] scores = new int[0];
+
+    /**
+     * @param capacity     tree node limit; past it the tree stops growing and searches continue
+     * @param playoutLimit plies per playout before the position is scored as it stands
+     */
+    public Mcts(int capacity, int playoutLimit, long seed) {
+        if (capacity < 2) throw new IllegalArgumentException("capacity must be >= 2");
+        if (playoutLimit < 0) throw new IllegalArgumentException("playoutLimit must be >= 0");
+        this.capacity = capacity;
+        this.playoutLimit = playoutLimit;
+        this.rnd = new SplittableRandom(seed);
+        move = new int[capacity];
+        mover = new int[capacity];
+        firstChild = new int[capacity];
+        childCount = new int[capacity];
+        visits = new int[capacity];
+        reward = new double[capacity];
+    }
+
+    /** Ask a running search to return as soon as possible; cleared by the next search. */
+    public void stop() {
+        stopped = true;
+    }
+
+    /** Grow a fresh tree from {@code state} (restored on return) until the time or playout budget runs out. */
+    public Result search(GameState state, long millis, long maxPlayouts) {
+        long started = System.nanoTime();
+        long deadline = started + millis * 1_000_000;
+        this.state = state;
+        this.stopped = false;
+        if (scratch.length < state.maxMoves()) scratch = new int[state.maxMoves()];
+        if (outcome.length < state.playerCount()) {
+            outcome = new double[state.playerCount()];
+            scores = new int[state.playerCount()];
+        }
+        used = 1;
+        move[0] = -1;
+        mover[0] = -1;
+        visits[0] = 0;
+        reward[0] = 0;
+        if (state.isTerminal() || !expand(0)) return new Result(-1, 0, 1, 0, 0);
+
+        long playouts = 0;
+        do {
+            iterate();
+            playouts++;
+        } while (playouts < maxPlayouts && !stopped && ((playouts & 15) != 0 || System.nanoTime() < deadline));
+
+        int best = firstChild[0];
+        for (int c = firstChild[0] + 1; c < firstChild[0] + childCount[0]; c++) if (visits[c] > visits[best]) best = c;
+        double winRate = visits[best] == 0 ? 0 : reward[best] / visits[best];
+        return new Result(move[best], playouts, used, (System.nanoTime() - started) / 1_000_000, winRate);
+    }
+
+    private void iterate() {
+        int node = 0, depth = 0;
+        path[depth++] = 0;
+        while (firstChild[node] >= 0 && childCount[node] > 0) {
+            node = select(node);
+            state.makeMove(move[node]);
+            path = push(path, depth++, node);
+            if (visits[node] == 0) break;
+            if (firstChild[node] < 0 && !state.isTerminal() && expand(node)) {
+                node = firstChild[node] + rnd.nextInt(childCount[node]);
+                state.makeMove(move[node]);
+                path = push(path, depth++, node);
+                break;
+            }
+        }
+
+        int plies = 0;
+        while (plies < playoutLimit && !state.isTerminal()) {
+            int count = state.generateMoves(scratch);
+            if (count == 0) break;
+            int m = scratch[rnd.nextInt(count)];
+            state.makeMove(m);
+            played = push(played, plies++, m);
+        }
+        score();
+        for (int i = plies - 1; i >= 0; i--) state.unmakeMove(played[i]);
+
+        for (int i = depth - 1; i >= 0; i--) {
+            int n = path[i];
+            visits[n]++;
+            if (mover[n] >= 0) reward[n] += outcome[mover[n]];
+            if (i > 0) state.unmakeMove(move[n]);
+        }
+    }
+
+    /** Add every child of {@code node}; false when it has no moves or the pool is full. */
+    private boolean expand(int node) {
+        int count = state.generateMoves(scratch);
+        if (count == 0 || used + count > capacity) return false;
+        int side = state.sideToMove();
+        firstChild[node] = used;
+        childCount[node] = count;
+        for (int i = 0; i < count; i++) {
+            int c = used++;
+            move[c] = scratch[i];
+            mover[c] = side;
+            firstChild[c] = -1;
+            childCount[c] = 0;
+            visits[c] = 0;
+            reward[c] = 0;
+        }
+        return true;
+    }
+
+    private int select(int node) {
+        int first = firstChild[node], count = childCount[node];
+        int offset = rnd.nextInt(count); // random order among unvisited children
+        double logN = Math.log(visits[node] + 1);
+        int best = first;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            int c = first + (offset + i) % count;
+            if (visits[c] == 0) return c;
+            double score = reward[c] / visits[c] + EXPLORATION * Math.sqrt(logN / visits[c]);
+            if (score > bestScore) { bestScore = score; best = c; }
+        }
+        return best;
+    }
+
+    /** Fill {@code outcome}: 1 for a sole top scorer, split evenly on a tie, else 0. */
+    private void score() {
+        int players = state.playerCount();
+        int best = Integer.MIN_VALUE, tied = 0;
+        for (int p = 0; p < players; p++) {
+            scores[p] = state.score(p);
+            if (scores[p] > best) { best = scores[p]; tied = 1; }
+            else if (scores[p] == best) tied++;
+        }
+        for (int p = 0; p < players; p++) outcome[p] = scores[p] == best ? 1.0 / tied : 0;
+    }
+
+    private static int[] push(int[] stack, int index, int value) {
+        if (index == stack.length) stack = Arrays.copyOf(stack, index * 2);
+        stack[index] = value;
+        return stack;
+    }
+}
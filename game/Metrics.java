@@ -0,0 +1,135 @@
+package game;
+
+import com.sun.management.ThreadMXBean;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Process-wide registry for low-overhead counters and latency histograms.
+ *
+ * Instrumentation is off unless the JVM is started with -Dgame.metrics=true.
+ * Call sites guard on the constant {@link #ENABLED}, so the JIT folds the
+ * disabled path away. When enabled, every metric is registered as a JMX MBean
+ * under the "game" domain, and -Dgame.metrics.dump=SECONDS additionally prints
+ * a text report to stderr at that period. {@link #allocatedBytes()} reads the
+ * current thread's allocation total, so wrappers can count the bytes a call
+ * allocated by taking the difference around it.
+ */
+public final class Metrics {
+    public static final boolean ENABLED = Boolean.getBoolean("game.metrics");
+
+    private static final String DOMAIN = "game";
+    private static final Map<String, LatencyStats> TIMERS = new ConcurrentHashMap<>();
+    private static final Map<String, Counter> COUNTERS = new ConcurrentHashMap<>();
+    private static final ThreadMXBean THREADS = allocationBean();
+    private static ScheduledExecutorService dumper;
+
+    static {
+        long period = Long.getLong("game.metrics.dump", 0L);
+        if (ENABLED && period > 0) startDump(period, TimeUnit.SECONDS, System.err);
+    }
+
+    private Metrics() { }
+
+    /** Latency histogram for one operation; created and registered on first use. */
+    public static LatencyStats timer(String name) {
+        LatencyStats stats = TIMERS.get(name);
+        if (stats != null) return stats;
+        LatencyStats created = new LatencyStats(name);
+        stats = TIMERS.putIfAbsent(name, created);
+        if (stats != null) return stats;
+        register("LatencyStats", name, created);
+        return created;
+    }
+
+    /** Monotonic event counter; created and registered on first use. */
+    public static Counter counter(String name) {
+        return counter(name, null);
+    }
+
+    /**
+     * Monotonic event counter that is also reported per call of {@code per}
+     * (its value over the timer's call count); created and registered on first use.
+     */
+    public static Counter counter(String name, LatencyStats per) {
+        Counter counter = COUNTERS.get(name);
+        if (counter != null) return counter;
+        Counter created = new Counter(name, per);
+        counter = COUNTERS.putIfAbsent(name, created);
+        if (counter != null) return counter;
+        register("Counter", name, created);
+        return created;
+    }
+
+    /**
+     * Bytes the current thread has allocated since it started, or 0 when
+     * metrics are off or the JVM cannot measure it.
+     */
+    public static long allocatedBytes() {
+        return THREADS == null ? 0 : THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static ThreadMXBean allocationBean() {
+        if (!ENABLED || !(ManagementFactory.getThreadMXBean() instanceof ThreadMXBean)) return null;
+        ThreadMXBean bean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!bean.isThreadAllocatedMemorySupported()) return null;
+        if (!bean.isThreadAllocatedMemoryEnabled()) bean.setThreadAllocatedMemoryEnabled(true);
+        return bean;
+    }
+
+    private static void register(String type, String name, Object mbean) {
+        if (!ENABLED) return;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName id = new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+            if (!server.isRegistered(id)) server.registerMBean(mbean, id);
+        } catch (Exception e) {
+            System.err.println("metrics: could not register " + name + ": " + e);
+        }
+    }
+
+    /** Text snapshot of every metric, sorted by name. */
+    public static String report() {
+        StringBuilder sb = new StringBuilder("=== metrics ===\n");
+        for (LatencyStats stats : new TreeMap<>(TIMERS).values()) sb.append(stats).append('\n');
+        for (Counter counter : new TreeMap<>(COUNTERS).values()) sb.append(counter).append('\n');
+        return sb.toString();
+    }
+
+    /** Clear every registered metric. */
+    public static void resetAll() {
+        for (LatencyStats stats : TIMERS.values()) stats.reset();
+        for (Counter counter : COUNTERS.values()) counter.reset();
+    }
+
+    /** Print {@link #report()} periodically on a daemon thread. */
+    public static synchronized void startDump(long period, TimeUnit unit, final PrintStream out) {
+        if (dumper != null) return;
+        dumper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "metrics-dump");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        dumper.scheduleAtFixedRate(new Runnable() {
+            @Override public void run() { out.print(report()); }
+        }, period, period, unit);
+    }
+
+    public static synchronized void stopDump() {
+        if (dumper == null) return;
+        dumper.shutdownNow();
+        dumper = null;
+    }
+}
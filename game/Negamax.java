@@ -0,0 +1,257 @@
+package game;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Iterative-deepening alpha-beta search for any {@link GameState}.
+ *
+ * Games with more than two players are searched paranoid: the root seat plays
+ * against a coalition of everyone else, so the value is always the root seat's
+ * score and negation happens only where the turn passes between the root and
+ * the coalition. That also covers games where a seat moves twice in a row (a
+ * Dots & Boxes capture). Results go through a shared {@link TranspositionTable}
+ * whose best moves are tried first and give the principal variation. Entries
+ * are keyed by {@link GameState#canonicalHash()} with moves stored in canonical
+ * orientation, so symmetric positions share one entry.
+ *
+ * The search stops at the depth limit, the node limit or when its
+ * {@link CancellationToken} trips (a deadline, {@link #stop()}, or the
+ * caller's own token), and then returns the last finished iteration. The
+ * token is polled every 4 nodes, a fraction of a millisecond even with
+ * Quoridor's path-finding evaluation. Move lists live in per-ply buffers reused across searches. A
+ * {@link #setListener listener} sees each finished iteration as it completes.
+ */
+public final class Negamax {
+    public static final int MAX_PLY = 64;
+    private static final int INFINITY = GameState.WIN + 1;
+    private static final int DECIDED = GameState.WIN - MAX_PLY;
+    private static final long ROOT_STREAM = 0x4E45474DL;
+    private static final int CHECK_MASK = 3; // poll the token every 4 nodes
+
+    /** Best move, its value and search statistics. */
+    public static final class Result {
+        private final int bestMove;
+        private final int score;
+        private final int depth;
+        private final long nodes;
+        private final long millis;
+        private final int[] pv;
+
+        Result(int bestMove, int score, int depth, long nodes, long millis, int[] pv) {
+            this.bestMove = bestMove;
+            this.score = score;
+            this.depth = depth;
+            this.nodes = nodes;
+            this.millis = millis;
+            this.pv = pv;
+        }
+
+        /** Best move found, or -1 when the root has no moves. */
+        public int bestMove() { return bestMove; }
+        /** Value for the searched seat (normally the side to move); near +-WIN when the game is decided. */
+        public int score() { return score; }
+        /** Deepest finished iteration (0 when none finished). */
+        public int depth() { return depth; }
+        public long nodes() { return nodes; }
+        public long millis() { return millis; }
+        public int[] pv() { return pv.clone(); }
+        public long nodesPerSecond() { return millis == 0 ? nodes * 1000 : nodes * 1000 / millis; }
+
+        @Override
+        public String toString() {
+            return String.format("best=%d score=%d depth=%d pv=%s | nodes=%d (%d/s) %dms",
+                    bestMove, score, depth, Arrays.toString(pv), nodes, nodesPerSecond(), millis);
+        }
+    }
+
+    private final TranspositionTable table;
+    private final int[][] moves = new int[MAX_PLY][];
+    private volatile CancellationToken token = CancellationToken.manual();
+    private Consumer<Result> listener;
+
+    private GameState state;
+    private int root;
+    private long rootKey;
+    private long nodes;
+    private long nodeLimit;
+    private boolean aborted;
+    private int rootBest;
+
+    public Negamax(TranspositionTable table) {
+        this.table = table;
+    }
+
+    public TranspositionTable table() {
+        return table;
+    }
+
+    /** Called on the searching thread with the result of every finished iteration; null for none. */
+    public void setListener(Consumer<Result> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Ask the running search to return as soon as possible. A stop sent before
+     * the search has started is lost; callers on another thread should pass
+     * their own token to {@link #search(GameState, int, int, CancellationToken, long)}.
+     */
+    public void stop() {
+        token.cancel();
+    }
+
+    /**
+     * Search {@code state} (restored on return) for its side to move.
+     * @param maxDepth  deepest iteration, at most MAX_PLY - 1
+     * @param millis    time budget; Long.MAX_VALUE for none
+     * @param nodeLimit node budget; Long.MAX_VALUE for none
+     */
+    public Result search(GameState state, int maxDepth, long millis, long nodeLimit) {
+        return search(state, state.sideToMove(), maxDepth, millis, nodeLimit);
+    }
+
+    /**
+     * Like {@link #search(GameState, int, long, long)}, but values the position
+     * for {@code seat}, which need not be on move: the score is {@code seat}'s,
+     * while the best move and PV are still the side to move's. Post-game
+     * analysis uses this to value the position a player's move left behind.
+     */
+    public Result search(GameState state, int seat, int maxDepth, long millis, long nodeLimit) {
+        return search(state, seat, maxDepth, CancellationToken.afterMillis(millis), nodeLimit);
+    }
+
+    /**
+     * Search {@code state} for {@code seat} until {@code token} trips (or a
+     * depth or node limit is reached); {@link #stop()} cancels the token too.
+     */
+    public Result search(GameState state, int seat, int maxDepth, CancellationToken token, long nodeLimit) {
+        long started = System.nanoTime();
+        this.state = state;
+        this.root = seat;
+        this.rootKey = state.playerCount() > 2 ? Zobrist.key(ROOT_STREAM, root) : 0;
+        this.nodes = 0;
+        this.nodeLimit = nodeLimit;
+        this.token = token;
+        this.aborted = false;
+
+        int[] rootMoves = buffer(0);
+        int count = state.isTerminal() ? 0 : state.generateMoves(rootMoves);
+        int sign = state.sideToMove() == root ? 1 : -1;
+        if (count == 0) return new Result(-1, sign * evaluate(0), 0, 0, 0, new int[0]);
+        int best = rootMoves[0], bestScore = 0, finished = 0;
+        int[] pv = new int[0];
+        int limit = Math.min(maxDepth, MAX_PLY - 1);
+        for (int depth = 1; depth <= limit; depth++) {
+            rootBest = -1;
+            int score = search(depth, 0, -INFINITY, INFINITY);
+            if (aborted) break;
+            best = rootBest;
+            bestScore = score;
+            finished = depth;
+            pv = principalVariation(depth);
+            if (listener != null) {
+                listener.accept(new Result(best, sign * bestScore, finished, nodes, (System.nanoTime() - started) / 1_000_000, pv));
+            }
+            if (Math.abs(score) >= DECIDED) break; // forced result, deeper search changes nothing
+        }
+        return new Result(best, sign * bestScore, finished, nodes, (System.nanoTime() - started) / 1_000_000, pv);
+    }
+
+    private int search(int depth, int ply, int alpha, int beta) {
+        if ((++nodes & CHECK_MASK) == 0 && (nodes >= nodeLimit || token.isCancelled())) aborted = true;
+        if (aborted) return 0;
+        if (depth == 0 || ply == MAX_PLY - 1 || state.isTerminal()) return evaluate(ply);
+
+        long key = state.canonicalHash() ^ rootKey;
+        long entry = table.probe(key);
+        int hashMove = TranspositionTable.NO_MOVE;
+        if (entry != 0) {
+            hashMove = TranspositionTable.move(entry);
+            if (hashMove != TranspositionTable.NO_MOVE) hashMove = state.canonicalMove(hashMove);
+            if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+                int stored = fromTable(TranspositionTable.score(entry), ply);
+                switch (TranspositionTable.bound(entry)) {
+                    case TranspositionTable.EXACT: return stored;
+                    case TranspositionTable.LOWER: if (stored >= beta) return stored; break;
+                    default: if (stored <= alpha) return stored; break;
+                }
+            }
+        }
+
+        int[] list = buffer(ply);
+        int count = state.generateMoves(list);
+        if (count == 0) return evaluate(ply);
+        for (int i = 1; i < count; i++) {
+            if (list[i] == hashMove) { list[i] = list[0]; list[0] = hashMove; break; }
+        }
+
+        boolean ours = state.sideToMove() == root;
+        int originalAlpha = alpha, best = -INFINITY, bestMove = list[0];
+        for (int i = 0; i < count; i++) {
+            int move = list[i];
+            state.makeMove(move);
+            int value = (state.sideToMove() == root) == ours
+                    ? search(depth - 1, ply + 1, alpha, beta)
+                    : -search(depth - 1, ply + 1, -beta, -alpha);
+            state.unmakeMove(move);
+            if (aborted) return 0;
+            if (value > best) {
+                best = value;
+                bestMove = move;
+                if (ply == 0) rootBest = move;
+            }
+            if (value > alpha) alpha = value;
+            if (alpha >= beta) break;
+        }
+        int bound = best <= originalAlpha ? TranspositionTable.UPPER
+                : best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+        table.store(key, state.canonicalMove(bestMove), toTable(best, ply), depth, bound);
+        return best;
+    }
+
+    /** Static value for the side to move; decided games score higher the sooner they are won. */
+    private int evaluate(int ply) {
+        int score = state.score(root);
+        if (score >= GameState.WIN) score -= ply;
+        else if (score <= -GameState.WIN) score += ply;
+        return state.sideToMove() == root ? score : -score;
+    }
+
+    // decided scores are stored relative to the node, not the root
+    private static int toTable(int score, int ply) {
+        return score >= DECIDED ? score + ply : score <= -DECIDED ? score - ply : score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        return score >= DECIDED ? score - ply : score <= -DECIDED ? score + ply : score;
+    }
+
+    /** Follow table moves from the root, keeping only ones that are still legal. */
+    private int[] principalVariation(int depth) {
+        int[] line = new int[depth];
+        int length = 0;
+        while (length < depth && !state.isTerminal()) {
+            long entry = table.probe(state.canonicalHash() ^ rootKey);
+            int move = TranspositionTable.move(entry);
+            if (entry == 0 || move == TranspositionTable.NO_MOVE) break;
+            move = state.canonicalMove(move);
+            if (!isLegal(move, buffer(length))) break;
+            state.makeMove(move);
+            line[length++] = move;
+        }
+        for (int i = length - 1; i >= 0; i--) state.unmakeMove(line[i]);
+        return Arrays.copyOf(line, length);
+    }
+
+    private boolean isLegal(int move, int[] scratch) {
+        int count = state.generateMoves(scratch);
+        for (int i = 0; i < count; i++) if (scratch[i] == move) return true;
+        return false;
+    }
+
+    private int[] buffer(int ply) {
+        int size = state.maxMoves();
+        if (moves[ply] == null || moves[ply].length < size) moves[ply] = new int[size];
+        return moves[ply];
+    }
+}
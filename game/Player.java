@@ -1,13 +1,28 @@
 package game;
 
 /**
- * Simple immutable player model with a display name.
- 
+ * Simple immutable player model with a display name and a seat: the player's
+ * 0-based place in the turn order, which boards use to index per-player arrays
+ * instead of hashing Player objects. Players made without a seat get NO_SEAT
+ * and are looked up by identity.
+
  * Author: Xiaoxi J
  * Date: 2025-10-01
  */
 public final class Player {
+    public static final int NO_SEAT = -1;
+
     private final String name;
-    public Player(String name) { this.name = name == null ? "Player" : name; }
+    private final int seat;
+
+    public Player(String name) { this(name, NO_SEAT); }
+
+    public Player(String name, int seat) {
+        if (seat < NO_SEAT) throw new IllegalArgumentException("seat must be >= 0, or NO_SEAT");
+        this.name = name == null ? "Player" : name;
+        this.seat = seat;
+    }
+
     public String getName() { return name; }
+    public int getSeat() { return seat; }
 }
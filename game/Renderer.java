@@ -6,4 +6,15 @@ package game;
 */
 public interface Renderer {
     void show(String text);
+
+    /** Sink for output written piecewise (e.g. very large boards) instead of as one String. */
+    default Appendable sink() {
+        return new Appendable() {
+            @Override public Appendable append(CharSequence csq) { show(String.valueOf(csq)); return this; }
+            @Override public Appendable append(CharSequence csq, int start, int end) {
+                return append(csq == null ? "null" : csq.subSequence(start, end));
+            }
+            @Override public Appendable append(char c) { return append(String.valueOf(c)); }
+        };
+    }
 }
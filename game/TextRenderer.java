@@ -9,4 +9,5 @@ package game;
 
 public final class TextRenderer implements Renderer {
     @Override public void show(String text) { System.out.print(text); }
+    @Override public Appendable sink() { return System.out; }
 }
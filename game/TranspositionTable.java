@@ -0,0 +1,63 @@
+package game;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size transposition table that any number of search threads can share
+ * without locks.
+ *
+ * Each slot is two longs: the packed entry and the position key XORed with it.
+ * A reader accepts a slot only when key ^ entry reproduces its own key, so an
+ * entry torn by a concurrent writer reads as a miss instead of as wrong data.
+ * Entries pack score (24 bits), depth (8), bound (2) and move (30) into one long.
+ */
+public final class TranspositionTable {
+    public static final int EXACT = 1;
+    public static final int LOWER = 2;
+    public static final int UPPER = 3;
+    /** Move value stored when a node has no best move. */
+    public static final int NO_MOVE = (1 << 30) - 1;
+
+    private final long[] keys;
+    private final long[] entries;
+    private final int mask;
+
+    /** A table of 2^{@code log2Entries} slots (16 bytes each). */
+    public TranspositionTable(int log2Entries) {
+        if (log2Entries < 4 || log2Entries > 28) throw new IllegalArgumentException("log2Entries must be in [4,28]");
+        keys = new long[1 << log2Entries];
+        entries = new long[1 << log2Entries];
+        mask = (1 << log2Entries) - 1;
+    }
+
+    /** The packed entry for {@code key}, or 0 when absent. */
+    public long probe(long key) {
+        int slot = (int) (key ^ key >>> 32) & mask;
+        long entry = entries[slot];
+        return (keys[slot] ^ entry) == key ? entry : 0;
+    }
+
+    /**
+     * Record a search result; deeper results for the same position are kept.
+     * @param move  best move, {@link #NO_MOVE} or any value in 0..2^30-2
+     * @param score within +-2^23
+     */
+    public void store(long key, int move, int score, int depth, int bound) {
+        int slot = (int) (key ^ key >>> 32) & mask;
+        long old = entries[slot];
+        if ((keys[slot] ^ old) == key && depth(old) > depth && bound != EXACT) return;
+        long entry = (long) score << 40 | (long) Math.min(depth, 255) << 32 | (long) bound << 30 | (move & NO_MOVE);
+        entries[slot] = entry;
+        keys[slot] = key ^ entry;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(entries, 0L);
+    }
+
+    public static int move(long entry) { return (int) entry & NO_MOVE; }
+    public static int bound(long entry) { return (int) (entry >>> 30) & 3; }
+    public static int depth(long entry) { return (int) (entry >>> 32) & 0xFF; }
+    public static int score(long entry) { return (int) (entry >> 40); }
+}
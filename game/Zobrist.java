@@ -0,0 +1,25 @@
+package game;
+
+/**
+ * Zobrist keys for position hashing. Keys come from a SplitMix64 mix of
+ * (stream, index), so games can either build tables or compute keys on the fly
+ * when a table would be too big (huge puzzle or Dots boards).
+ */
+public final class Zobrist {
+    private Zobrist() { }
+
+    /** Pseudo-random key for {@code index} in key family {@code stream}. */
+    public static long key(long stream, long index) {
+        long z = stream * 0xD1B54A32D192ED03L + index * 0x9E3779B97F4A7C15L + 0x632BE59BD9B4E019L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /** {@code size} keys of family {@code stream}. */
+    public static long[] table(long stream, int size) {
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) keys[i] = key(stream, i);
+        return keys;
+    }
+}
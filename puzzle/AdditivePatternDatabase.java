@@ -0,0 +1,81 @@
+package puzzle;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * A partition of the tiles into disjoint pattern databases whose values add up
+ * to an admissible heuristic (6-6-3 on 4x4, 6-6-6-6 on 5x5 by default).
+ * Tables are built once with {@link PatternDatabaseBuilder} and mapped from disk.
+ */
+public final class AdditivePatternDatabase {
+    /** Directory the builder writes to and {@link #load(Path, int, int)} reads from by default. */
+    public static final String DEFAULT_DIR = "pdb";
+
+    private final int rows, cols;
+    private final PatternDatabase[] tables;
+    private final int[] patternOf; // tile -> table index, -1 for the empty space
+
+    private AdditivePatternDatabase(int rows, int cols, PatternDatabase[] tables) {
+        this.rows = rows;
+        this.cols = cols;
+        this.tables = tables;
+        this.patternOf = new int[rows * cols];
+        Arrays.fill(patternOf, -1);
+        for (int p = 0; p < tables.length; p++) {
+            for (int i = 0; i < tables[p].size(); i++) {
+                int tile = tables[p].tile(i);
+                if (patternOf[tile] != -1) throw new IllegalArgumentException("tile " + tile + " is in two patterns");
+                patternOf[tile] = p;
+            }
+        }
+        for (int tile = 1; tile < patternOf.length; tile++) {
+            if (patternOf[tile] == -1) throw new IllegalArgumentException("tile " + tile + " is in no pattern");
+        }
+    }
+
+    /** The partition the builder uses for the given size. */
+    public static int[][] defaultPartition(int rows, int cols) {
+        if (rows == 4 && cols == 4) {
+            return new int[][] { {1, 5, 6, 9, 10, 13}, {7, 8, 11, 12, 14, 15}, {2, 3, 4} };
+        }
+        if (rows == 5 && cols == 5) {
+            return new int[][] {
+                {1, 2, 3, 6, 7, 8}, {4, 5, 9, 10, 14, 15}, {11, 12, 16, 17, 21, 22}, {13, 18, 19, 20, 23, 24}
+            };
+        }
+        throw new IllegalArgumentException("no default pattern partition for " + rows + "x" + cols);
+    }
+
+    /** File name for one table, e.g. {@code pdb-4x4-2-3-4.bin}. */
+    public static Path file(Path dir, int rows, int cols, int[] tiles) {
+        StringBuilder name = new StringBuilder("pdb-").append(rows).append('x').append(cols);
+        for (int t : tiles) name.append('-').append(t);
+        return dir.resolve(name.append(".bin").toString());
+    }
+
+    /** Map the default partition's tables from {@code dir}. */
+    public static AdditivePatternDatabase load(Path dir, int rows, int cols) throws IOException {
+        int[][] partition = defaultPartition(rows, cols);
+        PatternDatabase[] tables = new PatternDatabase[partition.length];
+        for (int p = 0; p < partition.length; p++) {
+            tables[p] = PatternDatabase.load(file(dir, rows, cols, partition[p]));
+            if (tables[p].getRows() != rows || tables[p].getCols() != cols) {
+                throw new IOException("pattern database size mismatch in " + file(dir, rows, cols, partition[p]));
+            }
+        }
+        return new AdditivePatternDatabase(rows, cols, tables);
+    }
+
+    public int getRows() { return rows; }
+    public int getCols() { return cols; }
+
+    int patternCount() { return tables.length; }
+
+    /** Table holding {@code tile}, or -1 for the empty space. */
+    int patternOf(int tile) { return patternOf[tile]; }
+
+    /** Halved extra moves of table {@code p} beyond its tiles' Manhattan distance. */
+    int extra(int p, int[] where) { return tables[p].extra(where); }
+}
@@ -0,0 +1,187 @@
+package puzzle;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Batch mode: solves a file of sliding puzzle instances on a work-stealing pool.
+ *
+ * Instances are read one line at a time, so the input can be arbitrarily long:
+ * at most {@code 4 * threads} are parsed and in flight at once. Small boards are
+ * solved one per task; boards of {@link #PARALLEL_CELLS} cells and up also split
+ * each IDA* iteration across the pool ({@link SlidingPuzzleSolver#solveParallel}).
+ * Each result is written as soon as it is ready, in completion order:
+ * {@code id <TAB> RxC <TAB> length <TAB> nodes <TAB> millis <TAB> moves}.
+ * An instance that cannot be parsed or solved gets {@code ERROR} and the reason
+ * in place of the result and counts as failed.
+ *
+ * Input is the text format of {@link PuzzleInstances}: one layout per line,
+ * optionally preceded by an {@code RxC} size token.
+ *
+ * Usage: {@code java puzzle.BatchSolver INPUT OUTPUT [--threads N] [--pdb DIR] [--budget NODES]}
+ */
+public final class BatchSolver {
+    /** Boards at least this large run each IDA* iteration in parallel. */
+    public static final int PARALLEL_CELLS = 25;
+
+    private final ForkJoinPool pool;
+    private final Path pdbDir;
+    private final long nodeBudget;
+    private final Semaphore inFlight;
+    private final Map<Long, Optional<AdditivePatternDatabase>> patterns = new ConcurrentHashMap<>();
+    private final ThreadLocal<Map<Long, SlidingPuzzleSolver>> solvers = ThreadLocal.withInitial(HashMap::new);
+
+    private final AtomicLong solved = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong nodes = new AtomicLong();
+
+    public BatchSolver(int threads, Path pdbDir, long nodeBudget) {
+        this.pool = new ForkJoinPool(threads);
+        this.pdbDir = pdbDir;
+        this.nodeBudget = nodeBudget;
+        this.inFlight = new Semaphore(4 * threads);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.err.println("usage: java puzzle.BatchSolver INPUT OUTPUT [--threads N] [--pdb DIR] [--budget NODES]");
+            System.exit(2);
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path pdb = Paths.get(AdditivePatternDatabase.DEFAULT_DIR);
+        long budget = Long.MAX_VALUE;
+        for (int i = 2; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--threads": threads = Integer.parseInt(args[i + 1]); break;
+                case "--pdb": pdb = Paths.get(args[i + 1]); break;
+                case "--budget": budget = Long.parseLong(args[i + 1]); break;
+                default: System.err.println("unknown option " + args[i]); System.exit(2);
+            }
+        }
+        new BatchSolver(threads, pdb, budget).run(Paths.get(args[0]), Paths.get(args[1]));
+    }
+
+    /** Solve every instance in {@code input}, streaming results to {@code output}; prints a summary. */
+    public void run(Path input, Path output) throws IOException, InterruptedException {
+        long started = System.currentTimeMillis();
+        long submitted = 0;
+        try (BufferedReader in = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+             BufferedWriter out = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNo = 0;
+            while ((line = in.readLine()) != null) {
+                lineNo++;
+                line = line.trim();
+                if (PuzzleInstances.isSkipped(line)) continue;
+                inFlight.acquire();
+                pool.execute(new Instance(lineNo, line, out));
+                submitted++;
+            }
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        }
+        long millis = Math.max(1, System.currentTimeMillis() - started);
+        System.out.printf("%d instances (%d solved, %d failed or over budget) in %dms: %.1f instances/s, %d nodes (%d nodes/s)%n",
+                submitted, solved.get(), failed.get(), millis, submitted * 1000.0 / millis,
+                nodes.get(), nodes.get() * 1000 / millis);
+    }
+
+    /** One input line, parsed and solved on a pool thread. */
+    private final class Instance extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int id;
+        private final String line;
+        private final BufferedWriter out;
+
+        Instance(int id, String line, BufferedWriter out) {
+            this.id = id;
+            this.line = line;
+            this.out = out;
+        }
+
+        @Override
+        protected void compute() {
+            StringBuilder sb = new StringBuilder().append(id).append('\t');
+            try {
+                int[] dims = new int[2];
+                int[] parsed = PuzzleInstances.parseLine(line, dims, new int[32]);
+                int rows = dims[0], cols = dims[1];
+                int[] layout = Arrays.copyOf(parsed, rows * cols);
+
+                sb.append(rows).append('x').append(cols).append('\t');
+                SlidingPuzzleSolver solver = solverFor(rows, cols);
+                SlidingPuzzleSolver.Result r = rows * cols >= PARALLEL_CELLS
+                        ? solver.solveParallel(layout, nodeBudget, pool)
+                        : solver.solve(layout, nodeBudget);
+                nodes.addAndGet(r.nodes());
+                (r.isSolved() ? solved : failed).incrementAndGet();
+                sb.append(r.length()).append('\t').append(r.nodes()).append('\t').append(r.millis()).append('\t');
+                if (r.isSolved()) {
+                    int[] moves = r.moves();
+                    for (int i = 0; i < moves.length; i++) sb.append(i == 0 ? "" : " ").append(moves[i]);
+                } else {
+                    sb.append("budget");
+                }
+            } catch (IllegalArgumentException e) {
+                failed.incrementAndGet();
+                sb.append("ERROR\t").append(e.getMessage());
+            } catch (RuntimeException e) {
+                failed.incrementAndGet();
+                sb.append("ERROR\t").append(e);
+            } finally {
+                inFlight.release();
+            }
+            synchronized (out) {
+                try {
+                    out.write(sb.append('\n').toString());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+
+    /** This thread's solver for the size, using the pattern databases when they are on disk. */
+    private SlidingPuzzleSolver solverFor(int rows, int cols) {
+        long key = (long) rows << 32 | cols;
+        return solvers.get().computeIfAbsent(key, k -> {
+            Optional<AdditivePatternDatabase> db = patterns.computeIfAbsent(key, kk -> loadPatterns(rows, cols));
+            return db.isPresent() ? new SlidingPuzzleSolver(db.get()) : new SlidingPuzzleSolver(rows, cols);
+        });
+    }
+
+    private Optional<AdditivePatternDatabase> loadPatterns(int rows, int cols) {
+        try {
+            AdditivePatternDatabase.defaultPartition(rows, cols);
+        } catch (IllegalArgumentException noPartition) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(AdditivePatternDatabase.load(pdbDir, rows, cols));
+        } catch (NoSuchFileException e) {
+            System.err.println("no pattern databases for " + rows + "x" + cols + " in " + pdbDir
+                    + " (build them with puzzle.PatternDatabaseBuilder); using Manhattan + linear conflict");
+            return Optional.empty();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package puzzle;
+
+import java.util.Arrays;
+
+/**
+ * Solvability test for sliding puzzle layouts whose goal has the empty space in
+ * the bottom-right corner.
+ *
+ * A layout is solvable when its tile inversion count is even, plus, on boards
+ * with an even number of columns, the number of rows between the empty space
+ * and the bottom row. Inversions are counted with a Fenwick tree in O(n log n),
+ * and callers can pass the tree in so repeated checks allocate nothing.
+ */
+final class Parity {
+    private Parity() { }
+
+    /** A Fenwick tree big enough for {@code cells} cells. */
+    static int[] scratch(int cells) {
+        return new int[cells + 1];
+    }
+
+    /**
+     * @param layout row-major tile numbers, 0 = empty; must be a permutation of 0..rows*cols-1
+     * @param tree   scratch from {@link #scratch} (at least rows*cols+1 long), overwritten
+     */
+    static boolean isSolvable(int rows, int cols, int[] layout, int[] tree) {
+        int cells = rows * cols;
+        if (rows == 1 || cols == 1) {
+            // tiles can never pass each other on a single line
+            for (int i = 0, expect = 1; i < cells; i++) if (layout[i] != 0 && layout[i] != expect++) return false;
+            return true;
+        }
+        long inversions = inversions(layout, cells, tree);
+        int empty = 0;
+        while (layout[empty] != 0) empty++;
+        int rowsBelow = (cols & 1) == 0 ? rows - 1 - empty / cols : 0;
+        return ((inversions + rowsBelow) & 1) == 0;
+    }
+
+    /** Pairs of tiles (ignoring the empty space) that appear in the wrong order. */
+    static long inversions(int[] layout, int cells, int[] tree) {
+        Arrays.fill(tree, 0, cells + 1, 0);
+        long inversions = 0;
+        int seen = 0;
+        for (int i = 0; i < cells; i++) {
+            int v = layout[i];
+            if (v == 0) continue;
+            int notGreater = 0;
+            for (int k = v; k > 0; k -= k & -k) notGreater += tree[k];
+            inversions += seen - notGreater;
+            for (int k = v; k <= cells; k += k & -k) tree[k]++;
+            seen++;
+        }
+        return inversions;
+    }
+}
@@ -0,0 +1,121 @@
+package puzzle;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * One disjoint pattern database table, memory-mapped read-only from disk.
+ *
+ * Entries are indexed by the ranked cells of the pattern tiles (see {@link #rank})
+ * and hold, in one nibble each, half of what the pattern's move count exceeds the
+ * pattern tiles' Manhattan distance by (the difference is always even), clamped
+ * at 15. A lookup therefore adds {@code 2 * extra} on top of the Manhattan sum
+ * the solver already maintains. Because the file is mapped rather than read,
+ * every JVM using the same table shares one copy in the OS page cache and
+ * loading costs nothing up front.
+ *
+ * File layout: magic, rows, cols, k, the k tile numbers, entry count (long),
+ * then (entries + 1) / 2 bytes of nibbles, low nibble first.
+ */
+public final class PatternDatabase {
+    static final int MAGIC = 0x53504442; // "SPDB"
+    static final int MAX_EXTRA = 15;
+
+    private final int rows, cols, cells;
+    private final int[] tiles;
+    private final ByteBuffer data;
+
+    private PatternDatabase(int rows, int cols, int[] tiles, ByteBuffer data) {
+        this.rows = rows;
+        this.cols = cols;
+        this.cells = rows * cols;
+        this.tiles = tiles;
+        this.data = data;
+    }
+
+    /** Map a table written by {@link PatternDatabaseBuilder}. */
+    public static PatternDatabase load(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (map.getInt() != MAGIC) throw new IOException(file + " is not a pattern database");
+            int rows = map.getInt(), cols = map.getInt(), k = map.getInt();
+            int[] tiles = new int[k];
+            for (int i = 0; i < k; i++) tiles[i] = map.getInt();
+            long entries = map.getLong();
+            if (entries != entryCount(rows * cols, k) || map.remaining() != (entries + 1) / 2) {
+                throw new IOException(file + " is truncated or has a bad header");
+            }
+            return new PatternDatabase(rows, cols, tiles, map.slice());
+        }
+    }
+
+    public int getRows() { return rows; }
+    public int getCols() { return cols; }
+
+    /** Tile numbers in this pattern, in rank order. */
+    public int[] tiles() { return tiles.clone(); }
+
+    int tile(int i) { return tiles[i]; }
+
+    int size() { return tiles.length; }
+
+    /**
+     * Extra moves (halved) the pattern needs beyond its Manhattan distance, given
+     * {@code where[tile]} = current cell of each tile.
+     */
+    int extra(int[] where) {
+        int rank = 0;
+        long used = 0;
+        for (int i = 0; i < tiles.length; i++) {
+            int p = where[tiles[i]];
+            rank = rank * (cells - i) + p - Long.bitCount(used & ((1L << p) - 1));
+            used |= 1L << p;
+        }
+        return (data.get(rank >>> 1) >>> ((rank & 1) << 2)) & 0xF;
+    }
+
+    /** Number of placements of k distinct tiles on n cells: n! / (n-k)!. */
+    static long entryCount(int n, int k) {
+        long count = 1;
+        for (int i = 0; i < k; i++) count *= n - i;
+        return count;
+    }
+
+    /**
+     * Rank k distinct cells (each below 64) in mixed radix n, n-1, ..., n-k+1:
+     * each cell is first renumbered among the cells not taken by earlier tiles.
+     */
+    static int rank(int[] cellsOf, int k, int n) {
+        int rank = 0;
+        long used = 0;
+        for (int i = 0; i < k; i++) {
+            int p = cellsOf[i];
+            rank = rank * (n - i) + p - Long.bitCount(used & ((1L << p) - 1));
+            used |= 1L << p;
+        }
+        return rank;
+    }
+
+    /** Inverse of {@link #rank}; fills {@code cellsOf[0..k)} and returns their bitmask. */
+    static long unrank(int rank, int k, int n, int[] cellsOf) {
+        for (int i = k - 1; i >= 0; i--) {
+            cellsOf[i] = rank % (n - i);
+            rank /= n - i;
+        }
+        long used = 0;
+        for (int i = 0; i < k; i++) {
+            int skip = cellsOf[i], p = 0;
+            while (true) {
+                if ((used & (1L << p)) == 0 && skip-- == 0) break;
+                p++;
+            }
+            cellsOf[i] = p;
+            used |= 1L << p;
+        }
+        return used;
+    }
+}
@@ -0,0 +1,208 @@
+package puzzle;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+/**
+ * Builds disjoint pattern databases with a parallel retrograde breadth-first search
+ * from the goal over (pattern arrangement, empty cell).
+ *
+ * Only moves of pattern tiles cost 1; the empty space wandering through cells the
+ * pattern does not occupy is free, which is what makes the tables of a partition
+ * additive. So each arrangement keeps one int bitmask of the empty cells already
+ * reached: a level first floods each pending mask through the free cells, then
+ * slides every adjacent pattern tile into the next level. Levels are processed
+ * in parallel over even-aligned chunks of arrangements, so each nibble of the
+ * output has a single writer; cross-chunk discoveries go through an atomic OR.
+ *
+ * Memory is about 12 bytes per arrangement while building: a few hundred MB for a
+ * 6-tile 4x4 table but ~1.5 GB for a 6-tile 5x5 table (run with -Xmx2g or more).
+ *
+ * Usage: {@code java puzzle.PatternDatabaseBuilder ROWS COLS [DIR]} builds any
+ * missing table of the default partition (6-6-3 for 4x4, 6-6-6-6 for 5x5).
+ */
+public final class PatternDatabaseBuilder {
+    private static final int MAX_CELLS = 32; // empty-cell sets are int bitmasks
+    private static final int CHUNK = 1 << 16;
+
+    private PatternDatabaseBuilder() { }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: java puzzle.PatternDatabaseBuilder ROWS COLS [DIR]");
+            System.exit(2);
+        }
+        int rows = Integer.parseInt(args[0]), cols = Integer.parseInt(args[1]);
+        Path dir = Paths.get(args.length > 2 ? args[2] : AdditivePatternDatabase.DEFAULT_DIR);
+        Files.createDirectories(dir);
+        for (int[] pattern : AdditivePatternDatabase.defaultPartition(rows, cols)) {
+            Path file = AdditivePatternDatabase.file(dir, rows, cols, pattern);
+            if (Files.exists(file)) { System.out.println("exists: " + file); continue; }
+            long started = System.currentTimeMillis();
+            int levels = build(rows, cols, pattern, file);
+            System.out.println("built " + file + " (" + PatternDatabase.entryCount(rows * cols, pattern.length)
+                    + " entries, " + levels + " levels, " + (System.currentTimeMillis() - started) + "ms)");
+        }
+    }
+
+    /**
+     * Build the table for the given pattern tiles and write it to {@code file}.
+     * @return number of BFS levels (one more than the largest pattern cost)
+     */
+    public static int build(int rows, int cols, int[] tiles, Path file) throws IOException {
+        byte[] nibbles = search(rows, cols, tiles);
+        int levels = nibbles[nibbles.length - 1];
+        write(rows, cols, tiles, nibbles, nibbles.length - 1, file);
+        return levels;
+    }
+
+    /** Returns the nibble table with the level count appended as one extra byte. */
+    private static byte[] search(int rows, int cols, int[] tiles) {
+        final int cells = rows * cols;
+        if (cells > MAX_CELLS) throw new IllegalArgumentException("pattern databases support up to " + MAX_CELLS + " cells");
+        final int k = tiles.length;
+        for (int t : tiles) if (t < 1 || t >= cells) throw new IllegalArgumentException("bad pattern tile " + t);
+        long count = PatternDatabase.entryCount(cells, k);
+        if (count > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("pattern too large");
+        final int entries = (int) count;
+
+        final Space space = new Space(rows, cols, tiles);
+        final int[] visited = new int[entries];
+        final byte[] out = new byte[(entries + 1) / 2 + 1];
+        AtomicIntegerArray current = new AtomicIntegerArray(entries);
+        AtomicIntegerArray next = new AtomicIntegerArray(entries);
+
+        int[] goal = new int[k];
+        for (int i = 0; i < k; i++) goal[i] = tiles[i] - 1;
+        current.set(PatternDatabase.rank(goal, k, cells), 1 << (cells - 1));
+
+        int chunks = (entries + CHUNK - 1) / CHUNK;
+        int level = 0;
+        while (true) {
+            final int depth = level;
+            final AtomicIntegerArray from = current, to = next;
+            long expanded = IntStream.range(0, chunks).parallel()
+                    .mapToLong(chunk -> space.expand(chunk * CHUNK, Math.min(entries, (chunk + 1) * CHUNK),
+                            depth, from, to, visited, out))
+                    .sum();
+            if (expanded == 0) break;
+            current = to;
+            next = from;
+            level++;
+        }
+        out[out.length - 1] = (byte) level;
+        return out;
+    }
+
+    private static void write(int rows, int cols, int[] tiles, byte[] nibbles, int length, Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(4 * (4 + tiles.length) + 8);
+            header.putInt(PatternDatabase.MAGIC).putInt(rows).putInt(cols).putInt(tiles.length);
+            for (int t : tiles) header.putInt(t);
+            header.putLong(PatternDatabase.entryCount(rows * cols, tiles.length));
+            header.flip();
+            while (header.hasRemaining()) ch.write(header);
+            ByteBuffer body = ByteBuffer.wrap(nibbles, 0, length);
+            while (body.hasRemaining()) ch.write(body);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /** Board geometry and the per-arrangement expansion step. */
+    private static final class Space {
+        final int cols, cells, k;
+        final int[] tiles;
+        final int[] neighbours; // [cell * 4 + j], -1 terminated
+        final int full, notFirstCol, notLastCol;
+
+        Space(int rows, int cols, int[] tiles) {
+            this.cols = cols;
+            this.cells = rows * cols;
+            this.k = tiles.length;
+            this.tiles = tiles.clone();
+            neighbours = new int[cells * 4];
+            int first = 0, last = 0;
+            for (int cell = 0; cell < cells; cell++) {
+                int r = cell / cols, c = cell % cols, j = cell * 4;
+                if (r > 0) neighbours[j++] = cell - cols;
+                if (r < rows - 1) neighbours[j++] = cell + cols;
+                if (c > 0) neighbours[j++] = cell - 1;
+                if (c < cols - 1) neighbours[j++] = cell + 1;
+                while (j < cell * 4 + 4) neighbours[j++] = -1;
+                if (c == 0) first |= 1 << cell;
+                if (c == cols - 1) last |= 1 << cell;
+            }
+            full = cells == 32 ? -1 : (1 << cells) - 1;
+            notFirstCol = ~first;
+            notLastCol = ~last;
+        }
+
+        /** Process arrangements [lo, hi) of one level; returns how many had pending empty cells. */
+        long expand(int lo, int hi, int depth, AtomicIntegerArray from, AtomicIntegerArray to,
+                    int[] visited, byte[] out) {
+            int[] at = new int[k];
+            long expanded = 0;
+            for (int arr = lo; arr < hi; arr++) {
+                int pending = from.get(arr);
+                if (pending == 0) continue;
+                from.set(arr, 0);
+                long occupied = PatternDatabase.unrank(arr, k, cells, at);
+                int free = full & ~(int) occupied;
+                int reached = flood(pending & ~visited[arr], free);
+                if (reached == 0) continue;
+                expanded++;
+                if (visited[arr] == 0) record(arr, depth, at, out);
+                visited[arr] |= reached;
+
+                for (int empty = reached; empty != 0; empty &= empty - 1) {
+                    int blank = Integer.numberOfTrailingZeros(empty);
+                    for (int j = blank * 4, end = j + 4; j < end && neighbours[j] >= 0; j++) {
+                        int cell = neighbours[j];
+                        if ((occupied & (1L << cell)) == 0) continue;
+                        int i = 0;
+                        while (at[i] != cell) i++;
+                        at[i] = blank;
+                        int moved = PatternDatabase.rank(at, k, cells);
+                        at[i] = cell;
+                        int bit = 1 << cell; // the tile's old cell is the new empty cell
+                        if ((visited[moved] & bit) != 0) continue;
+                        int seen = to.get(moved);
+                        while ((seen & bit) == 0 && !to.compareAndSet(moved, seen, seen | bit)) seen = to.get(moved);
+                    }
+                }
+            }
+            return expanded;
+        }
+
+        private int flood(int mask, int free) {
+            if (mask == 0) return 0;
+            while (true) {
+                int grown = (mask | ((mask << 1) & notFirstCol) | ((mask >>> 1) & notLastCol)
+                        | (mask << cols) | (mask >>> cols)) & free;
+                if (grown == mask) return mask;
+                mask = grown;
+            }
+        }
+
+        private void record(int arr, int depth, int[] at, byte[] out) {
+            int manhattan = 0;
+            for (int i = 0; i < k; i++) {
+                int goal = tiles[i] - 1;
+                manhattan += Math.abs(goal / cols - at[i] / cols) + Math.abs(goal % cols - at[i] % cols);
+            }
+            int extra = Math.min(PatternDatabase.MAX_EXTRA, (depth - manhattan) / 2);
+            // chunks are even-aligned, so both nibbles of a byte belong to this thread
+            out[arr >>> 1] |= (byte) (extra << ((arr & 1) << 2));
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package puzzle;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reading and writing sliding puzzle instances.
+ *
+ * Text format: one instance per line, an optional {@code RxC} (or {@code RxC:})
+ * size token followed by the row-major tile numbers with 0 for the empty space;
+ * without a size token the board is square. Blank lines and '#' comments are
+ * skipped. Example: {@code 3x3 1 2 3 4 5 6 7 0 8}.
+ *
+ * Binary format: the int magic "SPZ1", rows, cols and instance count, then each
+ * instance as rows*cols unsigned 16-bit tile numbers (all big-endian).
+ *
+ * Bulk readers hand every instance to an {@link InstanceConsumer} in one reused
+ * int[], so a set of any size loads without allocating per tile; parsing only
+ * checks the shape. Permutation and solvability are checked by
+ * {@link SlidingPuzzleBoard#load} and the solvers.
+ */
+public final class PuzzleInstances {
+    static final int MAGIC = 0x53505A31; // "SPZ1"
+
+    /** Receives instances from the bulk readers; {@code layout} is reused for the next call. */
+    public interface InstanceConsumer {
+        void accept(int index, int rows, int cols, int[] layout);
+    }
+
+    private PuzzleInstances() { }
+
+    /** Parse one instance string into a new board; throws IllegalArgumentException with the reason if invalid. */
+    public static SlidingPuzzleBoard parse(String instance) {
+        int[] dims = new int[2];
+        int[] layout = parseLine(instance, dims, new int[16]);
+        SlidingPuzzleBoard board = new SlidingPuzzleBoard(dims[0], dims[1]);
+        board.load(Arrays.copyOf(layout, dims[0] * dims[1]));
+        return board;
+    }
+
+    /** Load the first instance of a text or binary file into a new board. */
+    public static SlidingPuzzleBoard read(Path file) throws IOException {
+        SlidingPuzzleBoard[] first = new SlidingPuzzleBoard[1];
+        InstanceConsumer take = (index, rows, cols, layout) -> {
+            if (first[0] == null) {
+                first[0] = new SlidingPuzzleBoard(rows, cols);
+                first[0].load(layout);
+            }
+        };
+        if (isBinary(file)) readBinary(file, take, 1); else readText(file, take, 1);
+        if (first[0] == null) throw new IllegalArgumentException(file + " holds no instances");
+        return first[0];
+    }
+
+    /** Whether {@code file} starts with the binary magic. */
+    public static boolean isBinary(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] head = new byte[4];
+            int n = 0;
+            while (n < 4) {
+                int k = in.read(head, n, 4 - n);
+                if (k < 0) return false;
+                n += k;
+            }
+            return ByteBuffer.wrap(head).getInt() == MAGIC;
+        }
+    }
+
+    /** Stream up to {@code limit} instances from a text file; returns how many were read. */
+    public static int readText(Path file, InstanceConsumer consumer, int limit) throws IOException {
+        int[] dims = new int[2];
+        int[] layout = new int[16];
+        int[] exact = new int[0]; // handed out; reallocated only when the size changes
+        int count = 0, lineNo = 0;
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while (count < limit && (line = in.readLine()) != null) {
+                lineNo++;
+                if (isSkipped(line)) continue;
+                try {
+                    layout = parseLine(line, dims, layout);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException(file + " line " + lineNo + ": " + e.getMessage());
+                }
+                int cells = dims[0] * dims[1];
+                if (exact.length != cells) exact = new int[cells];
+                System.arraycopy(layout, 0, exact, 0, cells);
+                consumer.accept(count++, dims[0], dims[1], exact);
+            }
+        }
+        return count;
+    }
+
+    /** Stream up to {@code limit} instances from a binary file (memory-mapped); returns how many were read. */
+    public static int readBinary(Path file, InstanceConsumer consumer, int limit) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer in = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (in.remaining() < 16 || in.getInt() != MAGIC) throw new IOException(file + " is not a puzzle instance file");
+            int rows = in.getInt(), cols = in.getInt(), total = in.getInt();
+            checkSize(rows, cols);
+            int cells = rows * cols;
+            if (total < 0 || in.remaining() != 2L * cells * total) throw new IOException(file + " is truncated or has a bad header");
+            int[] layout = new int[cells];
+            int count = Math.min(limit, total);
+            for (int i = 0; i < count; i++) {
+                for (int cell = 0; cell < cells; cell++) layout[cell] = in.getShort() & 0xFFFF;
+                consumer.accept(i, rows, cols, layout);
+            }
+            return count;
+        }
+    }
+
+    /** Write same-sized layouts to a binary instance file. */
+    public static void writeBinary(Path file, int rows, int cols, Iterable<int[]> layouts) throws IOException {
+        checkSize(rows, cols);
+        int cells = rows * cols, count = 0;
+        for (int[] layout : layouts) {
+            if (layout.length != cells) throw new IllegalArgumentException("every layout must have " + cells + " cells");
+            count++;
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(rows);
+            out.writeInt(cols);
+            out.writeInt(count);
+            for (int[] layout : layouts) for (int v : layout) out.writeShort(v);
+        }
+    }
+
+    static boolean isSkipped(String line) {
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (ch == '#') return true;
+            if (!Character.isWhitespace(ch)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Parse one text instance without allocating per tile: the size goes to
+     * {@code dims} and the tiles to {@code layout}, which is returned, or a larger
+     * replacement when it was too small.
+     */
+    static int[] parseLine(CharSequence line, int[] dims, int[] layout) {
+        int rows = -1, cols = -1, count = 0;
+        int i = 0, n = line.length();
+        while (i < n) {
+            char ch = line.charAt(i);
+            if (Character.isWhitespace(ch) || ch == ',') { i++; continue; }
+            if (ch < '0' || ch > '9') throw new IllegalArgumentException("unexpected '" + ch + "' at column " + (i + 1));
+            int value = 0;
+            while (i < n && (ch = line.charAt(i)) >= '0' && ch <= '9') {
+                value = value * 10 + (ch - '0');
+                if (value > SlidingPuzzleBoard.MAX_CELLS) throw new IllegalArgumentException("number too large at column " + (i + 1));
+                i++;
+            }
+            if (count == 0 && rows < 0 && i < n && (line.charAt(i) == 'x' || line.charAt(i) == 'X')) {
+                rows = value;
+                i++;
+                int start = i;
+                cols = 0;
+                while (i < n && (ch = line.charAt(i)) >= '0' && ch <= '9' && cols <= SlidingPuzzleBoard.MAX_CELLS) {
+                    cols = cols * 10 + (ch - '0');
+                    i++;
+                }
+                if (i == start) throw new IllegalArgumentException("size must look like RxC");
+                if (i < n && line.charAt(i) == ':') i++;
+                checkSize(rows, cols);
+                continue;
+            }
+            if (count == layout.length) layout = Arrays.copyOf(layout, Math.min(2 * count, SlidingPuzzleBoard.MAX_CELLS + 1));
+            if (count == layout.length) throw new IllegalArgumentException("more than " + SlidingPuzzleBoard.MAX_CELLS + " tiles");
+            layout[count++] = value;
+        }
+        if (count == 0) throw new IllegalArgumentException("no tiles given");
+        if (rows < 0) {
+            rows = cols = (int) Math.round(Math.sqrt(count));
+            if (rows * cols != count) throw new IllegalArgumentException(count + " tiles do not make a square board; add an RxC size");
+        }
+        if (rows * cols != count) throw new IllegalArgumentException("a " + rows + "x" + cols + " board needs " + rows * cols + " tiles, got " + count);
+        dims[0] = rows;
+        dims[1] = cols;
+        return layout;
+    }
+
+    private static void checkSize(int rows, int cols) {
+        if (rows < 1 || cols < 1 || (long) rows * cols > SlidingPuzzleBoard.MAX_CELLS) {
+            throw new IllegalArgumentException("board size " + rows + "x" + cols + " must have 1.." + SlidingPuzzleBoard.MAX_CELLS + " cells");
+        }
+    }
+}
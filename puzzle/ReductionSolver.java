@@ -0,0 +1,324 @@
+package puzzle;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Fast, near-optimal solver for sliding puzzles of any size up to
+ * {@link SlidingPuzzleBoard#MAX_CELLS}.
+ *
+ * The unsolved region shrinks one line at a time, always along its longer side:
+ * the top row while the region is at least as tall as it is wide, else the left
+ * column. All but the last two tiles of a line are routed to their cells one step
+ * at a time, each step a breadth-first search that walks the empty space around
+ * the tile without touching solved cells. For the last two, the final tile is
+ * parked on the second-to-last cell, the other one is brought into the three
+ * lines next to it, and a BFS over (tile a, tile b, empty) inside that small
+ * window finds the shortest way to seat both. Once the region is 3x3 or smaller
+ * it is finished with {@link SlidingPuzzleSolver}.
+ *
+ * Moves are streamed to an {@link IntConsumer} as tile numbers (for
+ * {@link SlidingPuzzleBoard#moveNumber}) while the plan is made, and all working
+ * memory is a handful of arrays sized to the board.
+ */
+public final class ReductionSolver {
+    private static final int WINDOW = -2;
+
+    /** Thrown through the search to stop once the move limit is reached. */
+    private static final class Stop extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Stop() { super(null, null, false, false); }
+    }
+    private static final Stop STOP = new Stop();
+
+    private final int rows, cols, cells;
+    private final int[] grid;      // cell -> tile, 0 = empty
+    private final int[] cellOf;    // tile -> cell
+    private final boolean[] locked;
+    private final int[] seen;      // BFS generation stamps
+    private final int[] parent;
+    private final int[] queue;
+    private final int[] windowIndex; // cell -> index in the current window, -1 outside
+    private final int[] fenwick;
+    private int generation;
+    private int empty;
+    private int top, left;         // unsolved region is [top, rows) x [left, cols)
+
+    private IntConsumer sink;
+    private long emitted;
+    private long limit;
+
+    public ReductionSolver(int rows, int cols) {
+        if (rows < 1 || cols < 1 || (long) rows * cols > SlidingPuzzleBoard.MAX_CELLS) {
+            throw new IllegalArgumentException("board must be 1.." + SlidingPuzzleBoard.MAX_CELLS + " cells");
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.cells = rows * cols;
+        grid = new int[cells];
+        cellOf = new int[cells];
+        locked = new boolean[cells];
+        seen = new int[cells];
+        parent = new int[cells];
+        queue = new int[cells];
+        windowIndex = new int[cells];
+        fenwick = Parity.scratch(cells);
+    }
+
+    /** Solve the board's current layout, passing each move to {@code moves}; returns the move count. */
+    public long solve(SlidingPuzzleBoard board, IntConsumer moves) {
+        int[] layout = new int[cells];
+        board.copyLayout(layout);
+        return solve(layout, moves);
+    }
+
+    /**
+     * Solve a row-major layout (0 = empty), passing each move to {@code moves}.
+     * @return the number of moves made
+     * @throws IllegalArgumentException if the layout is not a solvable permutation
+     */
+    public long solve(int[] layout, IntConsumer moves) {
+        return run(layout, moves, Long.MAX_VALUE);
+    }
+
+    /** First move of the plan for {@code layout}, or 0 when it is already solved. */
+    public int firstMove(int[] layout) {
+        int[] first = new int[1];
+        run(layout, tile -> first[0] = tile, 1);
+        return first[0];
+    }
+
+    private long run(int[] layout, IntConsumer moves, long maxMoves) {
+        load(layout);
+        sink = moves;
+        emitted = 0;
+        limit = maxMoves;
+        try {
+            if (rows == 1 || cols == 1) {
+                while (empty != cells - 1) slideInto(empty + (rows == 1 ? 1 : cols));
+                return emitted;
+            }
+            while (rows - top > 3 || cols - left > 3) {
+                boolean column = rows - top < cols - left;
+                placeLine(column);
+                if (column) left++; else top++;
+            }
+            finish();
+        } catch (Stop stopped) {
+            // move limit reached
+        } finally {
+            sink = null;
+        }
+        return emitted;
+    }
+
+    private void load(int[] layout) {
+        if (layout.length != cells) throw new IllegalArgumentException("layout must have " + cells + " cells");
+        Arrays.fill(cellOf, -1);
+        for (int cell = 0; cell < cells; cell++) {
+            int v = layout[cell];
+            if (v < 0 || v >= cells || cellOf[v] >= 0) {
+                throw new IllegalArgumentException("layout is not a permutation of 0.." + (cells - 1));
+            }
+            cellOf[v] = cell;
+            grid[cell] = v;
+        }
+        if (!Parity.isSolvable(rows, cols, layout, fenwick)) throw new IllegalArgumentException("layout is not solvable");
+        empty = cellOf[0];
+        Arrays.fill(locked, false);
+        Arrays.fill(windowIndex, -1);
+        top = 0;
+        left = 0;
+    }
+
+    /** Cell on line {@code line} at position {@code along}: a row when !column, a column when column. */
+    private int at(boolean column, int line, int along) {
+        return column ? along * cols + line : line * cols + along;
+    }
+
+    private void placeLine(boolean column) {
+        int line = column ? left : top;
+        int from = column ? top : left, to = column ? rows : cols;
+        for (int j = from; j < to - 2; j++) {
+            int cell = at(column, line, j);
+            if (!moveTile(cell + 1, cell)) throw new IllegalStateException("could not route tile " + (cell + 1));
+            locked[cell] = true;
+        }
+        placeLastTwo(column, line, Math.max(from, to - 3), to);
+    }
+
+    /**
+     * Seat the last two tiles of a line. The window is the three lines from {@code line}
+     * across positions [windowFrom, to), minus solved cells.
+     */
+    private void placeLastTwo(boolean column, int line, int windowFrom, int to) {
+        int aCell = at(column, line, to - 2), bCell = at(column, line, to - 1);
+        int a = aCell + 1, b = bCell + 1;
+        if (cellOf[a] != aCell || cellOf[b] != bCell) {
+            int windowSize = 0;
+            for (int k = 0; k < 3; k++) {
+                for (int j = windowFrom; j < to; j++) {
+                    int cell = at(column, line + k, j);
+                    if (!locked[cell]) windowIndex[cell] = windowSize++;
+                }
+            }
+            // park b on a's cell, then bring a next to it without disturbing b
+            if (!moveTile(b, aCell)) throw new IllegalStateException("could not route tile " + b);
+            locked[aCell] = true;
+            boolean staged = windowIndex[cellOf[a]] >= 0
+                    || moveTile(a, at(column, line + 2, to - 2))
+                    || moveTile(a, at(column, line + 2, to - 1));
+            locked[aCell] = false;
+            if (!staged) throw new IllegalStateException("could not route tile " + a);
+            if (windowIndex[empty] < 0 && !routeEmpty(WINDOW, cellOf[a], cellOf[b])) {
+                throw new IllegalStateException("could not bring the empty space to tiles " + a + " and " + b);
+            }
+            solveWindow(column, line, windowFrom, to, windowSize, a, b, aCell, bCell);
+            for (int k = 0; k < 3; k++) {
+                for (int j = windowFrom; j < to; j++) windowIndex[at(column, line + k, j)] = -1;
+            }
+        }
+        locked[aCell] = true;
+        locked[bCell] = true;
+    }
+
+    /** Shortest slide sequence inside the window putting a on aCell and b on bCell. */
+    private void solveWindow(boolean column, int line, int windowFrom, int to, int size,
+                             int a, int b, int aCell, int bCell) {
+        int[] cellAt = new int[size];
+        for (int k = 0; k < 3; k++) {
+            for (int j = windowFrom; j < to; j++) {
+                int cell = at(column, line + k, j);
+                if (windowIndex[cell] >= 0) cellAt[windowIndex[cell]] = cell;
+            }
+        }
+        int states = size * size * size;
+        int[] from = new int[states];
+        Arrays.fill(from, -1);
+        int[] bfs = new int[states];
+        int start = (windowIndex[cellOf[a]] * size + windowIndex[cellOf[b]]) * size + windowIndex[empty];
+        int goalA = windowIndex[aCell], goalB = windowIndex[bCell];
+        from[start] = start;
+        bfs[0] = start;
+        int head = 0, tail = 1, goal = -1;
+        while (head < tail) {
+            int s = bfs[head++];
+            int pa = s / (size * size), pb = s / size % size, pe = s % size;
+            if (pa == goalA && pb == goalB) { goal = s; break; }
+            int cell = cellAt[pe];
+            for (int n : neighbours(cell)) {
+                if (n < 0 || windowIndex[n] < 0) continue;
+                int pn = windowIndex[n];
+                int na = pn == pa ? pe : pa, nb = pn == pb ? pe : pb;
+                int next = (na * size + nb) * size + pn;
+                if (from[next] >= 0) continue;
+                from[next] = s;
+                bfs[tail++] = next;
+            }
+        }
+        if (goal < 0) throw new IllegalStateException("tiles " + a + " and " + b + " cannot be seated");
+        // replay: each state's empty cell is the cell slid from
+        int length = 0;
+        for (int s = goal; s != start; s = from[s]) bfs[length++] = cellAt[s % size];
+        for (int i = length - 1; i >= 0; i--) slideInto(bfs[i]);
+    }
+
+    private final int[] neighbourScratch = new int[4];
+
+    private int[] neighbours(int cell) {
+        int r = cell / cols, c = cell % cols;
+        neighbourScratch[0] = r > 0 ? cell - cols : -1;
+        neighbourScratch[1] = r < rows - 1 ? cell + cols : -1;
+        neighbourScratch[2] = c > 0 ? cell - 1 : -1;
+        neighbourScratch[3] = c < cols - 1 ? cell + 1 : -1;
+        return neighbourScratch;
+    }
+
+    /**
+     * Walk {@code tile} to {@code target} one cell at a time, each step moving the
+     * empty space in front of it without crossing locked cells.
+     * @return false if some step had no route (the board is still consistent)
+     */
+    private boolean moveTile(int tile, int target) {
+        int tr = target / cols, tc = target % cols;
+        while (cellOf[tile] != target) {
+            int cur = cellOf[tile];
+            int r = cur / cols, c = cur % cols;
+            int vertical = r == tr ? -1 : cur + (r < tr ? cols : -cols);
+            int horizontal = c == tc ? -1 : cur + (c < tc ? 1 : -1);
+            // close the larger gap first
+            int first = Math.abs(r - tr) >= Math.abs(c - tc) ? vertical : horizontal;
+            int second = first == vertical ? horizontal : vertical;
+            if (!step(cur, first) && !step(cur, second)) return false;
+        }
+        return true;
+    }
+
+    private boolean step(int cur, int next) {
+        if (next < 0 || locked[next]) return false;
+        if (!routeEmpty(next, cur, -1)) return false;
+        slideInto(cur);
+        return true;
+    }
+
+    /**
+     * Move the empty space to {@code target} (or into the window for {@link #WINDOW})
+     * along a shortest path avoiding locked cells and the two given cells.
+     */
+    private boolean routeEmpty(int target, int avoidA, int avoidB) {
+        if (empty == target || (target == WINDOW && windowIndex[empty] >= 0)) return true;
+        int stamp = ++generation;
+        seen[empty] = stamp;
+        queue[0] = empty;
+        int head = 0, tail = 1, found = -1;
+        search:
+        while (head < tail) {
+            int cell = queue[head++];
+            for (int n : neighbours(cell)) {
+                if (n < 0 || seen[n] == stamp || locked[n] || n == avoidA || n == avoidB) continue;
+                seen[n] = stamp;
+                parent[n] = cell;
+                if (n == target || (target == WINDOW && windowIndex[n] >= 0)) { found = n; break search; }
+                queue[tail++] = n;
+            }
+        }
+        if (found < 0) return false;
+        int length = 0;
+        for (int cell = found; cell != empty; cell = parent[cell]) queue[length++] = cell;
+        for (int i = length - 1; i >= 0; i--) slideInto(queue[i]);
+        return true;
+    }
+
+    /** Slide the tile on {@code cell} (next to the empty space) into it. */
+    private void slideInto(int cell) {
+        int tile = grid[cell];
+        grid[empty] = tile;
+        cellOf[tile] = empty;
+        grid[cell] = 0;
+        cellOf[0] = cell;
+        empty = cell;
+        sink.accept(tile);
+        if (++emitted >= limit) throw STOP;
+    }
+
+    /** Solve the remaining (at most 3x3) region optimally. */
+    private void finish() {
+        int h = rows - top, w = cols - left;
+        int[] local = new int[h * w];
+        for (int r = 0; r < h; r++) {
+            for (int c = 0; c < w; c++) {
+                int tile = grid[(top + r) * cols + left + c];
+                if (tile != 0) {
+                    int goal = tile - 1;
+                    local[r * w + c] = (goal / cols - top) * w + goal % cols - left + 1;
+                }
+            }
+        }
+        SlidingPuzzleSolver.Result result = new SlidingPuzzleSolver(h, w).solve(local, Long.MAX_VALUE);
+        for (int move : result.moves()) {
+            int goal = (top + (move - 1) / w) * cols + left + (move - 1) % w;
+            slideInto(cellOf[goal + 1]);
+        }
+    }
+}
@@ -4,6 +4,11 @@ import game.Game;
 import game.InputValidator;
 import game.Player;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Collections;
 
 /**
@@ -13,6 +18,9 @@ import java.util.Collections;
  * Date: 2025-09-29
  */
 public final class SlidingPuzzle extends Game {
+    private static final int MAX_SIDE = 100;
+    private static final long HINT_NODE_BUDGET = 2_000_000L;
+    private static final long PROGRESS_EVERY = 100_000L;
 
     @Override
     public void start() {
@@ -21,14 +29,16 @@ public final class SlidingPuzzle extends Game {
         println(" - Choose board size (rows x cols).");
         println(" - Each turn, type the TILE NUMBER you want to slide into the empty.");
         println("   (Only tiles directly adjacent to the empty can move.)");
+        println(" - Type 'H' for a hint, 'S' to let the computer finish the puzzle.");
+        println(" - Type 'L' to load a layout from a file or an instance string like 3x3 1 2 3 4 5 6 7 0 8.");
         println(" - Type 'R' to reshuffle, 'Q' to quit.\n");
 
         InputValidator v = this.io;
-        int rows = v.readIntInRange("Rows (2..10): ", 2, 10);
-        int cols = v.readIntInRange("Cols (2..10): ", 2, 10);
+        int rows = v.readIntInRange("Rows (2.." + MAX_SIDE + "): ", 2, MAX_SIDE);
+        int cols = v.readIntInRange("Cols (2.." + MAX_SIDE + "): ", 2, MAX_SIDE);
         SlidingPuzzleBoard board = new SlidingPuzzleBoard(rows, cols);
         registerBoard(board);
-        registerPlayers(Collections.singletonList(new Player("Solo Player")));
+        registerPlayers(Collections.singletonList(new Player("Solo Player", 0)));
 
         int moves = 0;
         while (true) {
@@ -39,10 +49,17 @@ public final class SlidingPuzzle extends Game {
                 return;
             }
 
-            String cmd = v.readNonEmpty("Enter tile number, or R to reshuffle, Q to quit: ");
+            String cmd = v.readNonEmpty("Enter tile number, H for a hint, S to auto-solve, L to load, R to reshuffle, Q to quit: ");
             String t = cmd.trim().toLowerCase();
             if (t.equals("q")) return;
             if (t.equals("r")) { board.reset(); moves = 0; continue; }
+            if (t.equals("h")) { hint(board); continue; }
+            if (t.equals("s")) { moves += autoSolve(board); continue; }
+            if (t.equals("l")) {
+                SlidingPuzzleBoard loaded = load(v.readNonEmpty("File path or instance: ").trim());
+                if (loaded != null) { board = loaded; registerBoard(board); moves = 0; }
+                continue;
+            }
 
             Integer val = null;
             try { val = Integer.parseInt(cmd.trim()); } catch (NumberFormatException ignored) {}
@@ -53,4 +70,51 @@ public final class SlidingPuzzle extends Game {
             else { moves++; }
         }
     }
+
+    /** Board from a text/binary instance file or an instance string; null (after explaining why) if rejected. */
+    private SlidingPuzzleBoard load(String source) {
+        Path file = null;
+        try {
+            file = Paths.get(source);
+        } catch (InvalidPathException notAPath) {
+            // treat it as an instance string
+        }
+        try {
+            return file != null && Files.isRegularFile(file) ? PuzzleInstances.read(file) : PuzzleInstances.parse(source);
+        } catch (IllegalArgumentException | IOException e) {
+            println("Could not load layout: " + e.getMessage() + "\n");
+            return null;
+        }
+    }
+
+    /**
+     * Suggest the next tile: optimal on small boards of at least 2x2 when the
+     * search is quick, else from the line-by-line plan (one-line boards always).
+     */
+    private void hint(SlidingPuzzleBoard board) {
+        int[] layout = new int[board.getRows() * board.getCols()];
+        board.copyLayout(layout);
+        if (layout.length <= 16 && board.getRows() >= 2 && board.getCols() >= 2) {
+            SlidingPuzzleSolver.Result r = new SlidingPuzzleSolver(board.getRows(), board.getCols())
+                    .solve(layout, HINT_NODE_BUDGET);
+            if (r.isSolved()) {
+                println("Hint: slide " + r.moves()[0] + " (" + r.length() + " moves left with perfect play)\n");
+                return;
+            }
+        }
+        int tile = new ReductionSolver(board.getRows(), board.getCols()).firstMove(layout);
+        println("Hint: slide " + tile + "\n");
+    }
+
+    /** Stream the solver's moves through moveNumber with a running counter; returns the moves made. */
+    private long autoSolve(SlidingPuzzleBoard board) {
+        long started = System.currentTimeMillis();
+        long[] made = {0};
+        new ReductionSolver(board.getRows(), board.getCols()).solve(board, tile -> {
+            if (!board.moveNumber(tile)) throw new IllegalStateException("solver produced illegal move " + tile);
+            if (++made[0] % PROGRESS_EVERY == 0) print("\rAuto-solving... " + made[0] + " moves");
+        });
+        println("\rAuto-solved in " + made[0] + " moves (" + (System.currentTimeMillis() - started) + "ms)");
+        return made[0];
+    }
 }
@@ -1,68 +1,164 @@
 package puzzle;
 
 import game.Board;
+import game.CellGrid;
+import game.Counter;
+import game.HeuristicState;
+import game.LatencyStats;
+import game.Metrics;
 import game.Tile;
-import java.util.*;
+import game.Zobrist;
+import java.util.Arrays;
+import java.util.Random;
 
 /**
- * Concrete board for N-by-M sliding puzzle. Guarantees solvable shuffles.
+ * Concrete board for N-by-M sliding puzzle. Guarantees solvable shuffles: each
+ * reset draws a uniformly random solvable layout (Fisher–Yates, then one tile
+ * swap when the parity is wrong) into a {@link CellGrid} of tile numbers (two
+ * bytes per cell; NumberPieces are flyweights made only when a Tile view or the
+ * renderer needs them), so resetting allocates nothing.
  * Supports moving by tile number: the chosen tile must be adjacent to the empty.
+ * A value-to-cell index and a running count of misplaced cells, both kept up to
+ * date by {@link #swap}, make moving by number and the solved check O(1).
+ * As a {@link HeuristicState} a move is the number of the tile to slide, the
+ * lower bound is the Manhattan distance and the hash is Zobrist over
+ * (tile, cell); all three are updated incrementally by {@link #swap}.
  * 
  * Author: Jigar K
  * Date: 2025-09-29
  */
-public final class SlidingPuzzleBoard extends Board {
+public final class SlidingPuzzleBoard extends Board implements HeuristicState {
     public static final int MAX_CELLS = 10_000;
-    private Tile[][] spaces;
+
+    private static final LatencyStats MOVE_NUMBER = Metrics.timer("puzzle.moveNumber");
+    private static final LatencyStats RESET = Metrics.timer("puzzle.reset");
+    private static final Counter ALLOCATED_BYTES = Metrics.counter("puzzle.allocatedBytes");
+
+    private final CellGrid spaces; // tile numbers, 0 = empty
     private int emptyR, emptyC;
+    private final int[] cellOf;   // tile value -> r * cols + c
+    private int misplaced;        // cells not holding their goal value
+    private int manhattan;        // summed tile distances to their goal cells
+    private long hash;
+    private final int[] order;    // shuffle scratch
+    private final int[] fenwick;  // parity check scratch
+    private final Random rnd = new Random();
 
     public SlidingPuzzleBoard(int rows, int cols) {
         super(rows, cols);
         if ((long)rows * (long)cols > MAX_CELLS) {
             throw new IllegalArgumentException("rows*cols must be <= " + MAX_CELLS);
         }
+        int cells = rows * cols;
+        spaces = new CellGrid(rows, cols, cells - 1, NumberPiece::new);
+        cellOf = new int[cells];
+        order = new int[cells];
+        fenwick = Parity.scratch(cells);
         reset();
     }
 
-    /** Fill in goal state, then perform solvable shuffle. */
+    /** Draw a new uniformly random solvable layout. */
     @Override public void reset() {
-        spaces = new Tile[rows][cols];
-        int k = 1;
-        for (int r = 0; r < rows; r++) {
-            for (int c = 0; c < cols; c++) {
-                int val = (r == rows - 1 && c == cols - 1) ? 0 : k++;
-                spaces[r][c] = new Tile(new NumberPiece(val));
+        if (!Metrics.ENABLED) { shuffleSolvable(); return; }
+        long start = System.nanoTime(), allocated = Metrics.allocatedBytes();
+        shuffleSolvable();
+        RESET.record(start);
+        ALLOCATED_BYTES.add(Metrics.allocatedBytes() - allocated);
+    }
+
+    private void shuffleSolvable() {
+        int cells = rows * cols;
+        if (rows == 1 || cols == 1) {
+            // tiles cannot pass each other on a line; only the empty space's spot varies
+            int empty = rnd.nextInt(cells);
+            for (int i = 0, v = 1; i < cells; i++) order[i] = i == empty ? 0 : v++;
+            place(order);
+            return;
+        }
+        do {
+            for (int i = 0; i < cells; i++) order[i] = i;
+            for (int i = cells - 1; i > 0; i--) {
+                int j = rnd.nextInt(i + 1);
+                int t = order[i]; order[i] = order[j]; order[j] = t;
             }
+            if (!Parity.isSolvable(rows, cols, order, fenwick)) {
+                // swapping two tiles (not the empty space) flips the inversion parity
+                int a = order[0] == 0 ? 1 : 0;
+                int b = order[a + 1] == 0 ? a + 2 : a + 1;
+                int t = order[a]; order[a] = order[b]; order[b] = t;
+            }
+            place(order);
+        } while (misplaced == 0); // never hand out a solved board
+    }
+
+    /**
+     * Replace the board with a given row-major layout (tile numbers, 0 = empty).
+     * Checks that it is a permutation and that the goal is reachable (inversion
+     * parity, O(n log n)); nothing is allocated, so sets of instances can be
+     * loaded into one board back to back.
+     * @throws IllegalArgumentException explaining why the layout was rejected
+     */
+    public void load(int[] layout) {
+        int cells = rows * cols;
+        if (layout.length != cells) {
+            throw new IllegalArgumentException("a " + rows + "x" + cols + " board needs " + cells + " tiles, got " + layout.length);
         }
-        emptyR = rows - 1; emptyC = cols - 1;
-        shuffleSolvable(rows * cols * 10); // random walk to keep solvable
-    }
-
-    private void shuffleSolvable(int steps) {
-        Random rnd = new Random();
-        // Perform a random walk moving the empty tile; this preserves solvability.
-        for (int i = 0; i < steps; i++) {
-            List<int[]> moves = legalMovesFrom(emptyR, emptyC);
-            int[] pick = moves.get(rnd.nextInt(moves.size()));
-            swap(emptyR, emptyC, pick[0], pick[1]);
-            emptyR = pick[0]; emptyC = pick[1];
+        Arrays.fill(order, 0);
+        for (int cell = 0; cell < cells; cell++) {
+            int v = layout[cell];
+            if (v < 0 || v >= cells) throw new IllegalArgumentException("tile " + v + " is out of range 0.." + (cells - 1));
+            if (order[v]++ != 0) throw new IllegalArgumentException("tile " + v + " appears more than once");
         }
+        if (!Parity.isSolvable(rows, cols, layout, fenwick)) {
+            throw new IllegalArgumentException("layout is unsolvable: no sequence of slides reaches the goal "
+                    + "(its tile parity is wrong; swapping any two tiles would fix it)");
+        }
+        place(layout);
     }
 
-    private List<int[]> legalMovesFrom(int r, int c) {
-        List<int[]> list = new ArrayList<>();
-        if (r > 0) list.add(new int[]{r-1, c});
-        if (r < rows-1) list.add(new int[]{r+1, c});
-        if (c > 0) list.add(new int[]{r, c-1});
-        if (c < cols-1) list.add(new int[]{r, c+1});
-        return list;
+    /** Put a row-major layout on the board and rebuild the indexes. */
+    private void place(int[] layout) {
+        misplaced = 0;
+        manhattan = 0;
+        hash = 0;
+        for (int cell = 0; cell < layout.length; cell++) {
+            int v = layout[cell];
+            spaces.set(cell, v);
+            cellOf[v] = cell;
+            if (v != (cell == layout.length - 1 ? 0 : cell + 1)) misplaced++;
+            manhattan += distance(v, cell);
+            hash ^= key(v, cell);
+            if (v == 0) { emptyR = cell / cols; emptyC = cell % cols; }
+        }
     }
 
     private void swap(int r1, int c1, int r2, int c2) {
-        NumberPiece p1 = (NumberPiece) spaces[r1][c1].getPiece();
-        NumberPiece p2 = (NumberPiece) spaces[r2][c2].getPiece();
-        spaces[r1][c1].setPiece(p2);
-        spaces[r2][c2].setPiece(p1);
+        int cell1 = r1 * cols + c1, cell2 = r2 * cols + c2;
+        int v1 = spaces.get(cell1), v2 = spaces.get(cell2);
+        misplaced += misplacedDelta(cell1, v1, v2) + misplacedDelta(cell2, v2, v1);
+        manhattan += distance(v1, cell2) - distance(v1, cell1) + distance(v2, cell1) - distance(v2, cell2);
+        hash ^= key(v1, cell1) ^ key(v1, cell2) ^ key(v2, cell2) ^ key(v2, cell1);
+        spaces.set(cell1, v2);
+        spaces.set(cell2, v1);
+        cellOf[v1] = cell2;
+        cellOf[v2] = cell1;
+    }
+
+    /** Change in the misplaced count when {@code cell} goes from holding {@code before} to {@code after}. */
+    private int misplacedDelta(int cell, int before, int after) {
+        int goal = cell == rows * cols - 1 ? 0 : cell + 1;
+        return (after != goal ? 1 : 0) - (before != goal ? 1 : 0);
+    }
+
+    /** Rows plus columns between {@code cell} and the goal cell of tile {@code value}; 0 for the empty space. */
+    private int distance(int value, int cell) {
+        if (value == 0) return 0;
+        int goal = value - 1;
+        return Math.abs(goal / cols - cell / cols) + Math.abs(goal % cols - cell % cols);
+    }
+
+    private long key(int value, int cell) {
+        return Zobrist.key(value, cell);
     }
 
     /** Move by direction (legacy support). Returns true if a swap occurred. */
@@ -88,17 +184,17 @@ public final class SlidingPuzzleBoard extends Board {
      * @return true if the move happened; false if not adjacent / out of range.
      */
     public boolean moveNumber(int value) {
+        if (!Metrics.ENABLED) return slide(value);
+        long start = System.nanoTime(), allocated = Metrics.allocatedBytes();
+        boolean moved = slide(value);
+        MOVE_NUMBER.record(start);
+        ALLOCATED_BYTES.add(Metrics.allocatedBytes() - allocated);
+        return moved;
+    }
+
+    private boolean slide(int value) {
         if (value <= 0 || value >= rows * cols) return false;
-        // Find the tile
-        int tr = -1, tc = -1;
-        outer:
-        for (int r = 0; r < rows; r++) {
-            for (int c = 0; c < cols; c++) {
-                NumberPiece piece = (NumberPiece) spaces[r][c].getPiece();
-                if (piece.getValue() == value) { tr = r; tc = c; break outer; }
-            }
-        }
-        if (tr == -1) return false;
+        int tr = cellOf[value] / cols, tc = cellOf[value] % cols;
         int manhattan = Math.abs(tr - emptyR) + Math.abs(tc - emptyC);
         if (manhattan != 1) return false; // not adjacent
         swap(tr, tc, emptyR, emptyC);
@@ -106,18 +202,51 @@ public final class SlidingPuzzleBoard extends Board {
         return true;
     }
 
+    /**
+     * Copy the current layout into {@code dst} in row-major order: tile numbers,
+     * with 0 for the empty space. {@code dst} must hold at least rows*cols entries.
+     */
+    public void copyLayout(int[] dst) {
+        for (int cell = 0; cell < rows * cols; cell++) dst[cell] = spaces.get(cell);
+    }
+
+    /** Read-only Tile view of a cell; its piece is the NumberPiece for the tile there. */
+    public Tile tileAt(int r, int c) {
+        return spaces.tile(r, c);
+    }
+
     public boolean isSolved() {
-        int k = 1;
-        for (int r = 0; r < rows; r++) {
-            for (int c = 0; c < cols; c++) {
-                int expect = (r == rows - 1 && c == cols - 1) ? 0 : k++;
-                NumberPiece piece = (NumberPiece) spaces[r][c].getPiece();
-                if (piece.getValue() != expect) return false;
-            }
-        }
-        return true;
+        return misplaced == 0;
+    }
+
+    // ---- HeuristicState: a move is the number of the tile that slides ----
+
+    @Override public int playerCount() { return 1; }
+    @Override public int sideToMove() { return 0; }
+    @Override public int maxMoves() { return 4; }
+
+    @Override
+    public int generateMoves(int[] moves) {
+        int n = 0;
+        if (emptyR > 0) moves[n++] = valueAt(emptyR - 1, emptyC);
+        if (emptyR < rows - 1) moves[n++] = valueAt(emptyR + 1, emptyC);
+        if (emptyC > 0) moves[n++] = valueAt(emptyR, emptyC - 1);
+        if (emptyC < cols - 1) moves[n++] = valueAt(emptyR, emptyC + 1);
+        return n;
     }
 
+    private int valueAt(int r, int c) {
+        return spaces.get(r, c);
+    }
+
+    @Override public void makeMove(int move) { slide(move); }
+    /** Sliding the same tile again puts it back. */
+    @Override public void unmakeMove(int move) { slide(move); }
+    @Override public long hash() { return hash; }
+    @Override public boolean isTerminal() { return misplaced == 0; }
+    @Override public int score(int seat) { return -manhattan; }
+    @Override public int lowerBound() { return manhattan; }
+
     @Override public String render() {
         StringBuilder sb = new StringBuilder();
         for (int r = 0; r <= rows; r++) {
@@ -127,7 +256,7 @@ public final class SlidingPuzzleBoard extends Board {
             if (r == rows) break;
             sb.append("|");
             for (int c = 0; c < cols; c++) {
-                sb.append(String.format("%-4s|", spaces[r][c].render()));
+                sb.append(String.format("%-4s|", spaces.render(r, c)));
             }
             sb.append("\n");
         }
@@ -0,0 +1,467 @@
+package puzzle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Optimal sliding puzzle solver: IDA* with the Manhattan distance plus linear
+ * conflict heuristic.
+ *
+ * The search state is a packed byte[] (cell -> tile, 0 = empty). The heuristic
+ * is never recomputed from scratch inside the search: a move changes the
+ * Manhattan sum by one table lookup, and only the lines the moved tile leaves
+ * and enters can gain or lose conflicts. A horizontal move keeps the tile in its
+ * row (and the order of that row's tiles), so only its old and new column are
+ * rescanned; a vertical move rescans its old and new row.
+ *
+ * With an {@link AdditivePatternDatabase} the heuristic becomes the larger of the
+ * linear conflict term and the pattern databases' extra moves, both on top of the
+ * Manhattan sum; a move only re-ranks the one pattern that holds the moved tile.
+ *
+ * {@link #solveParallel} splits every IDA* iteration into the subtrees below a
+ * shallow frontier and searches them as fork/join tasks, each on its own solver.
+ *
+ * Solutions are returned as tile numbers, ready for {@link SlidingPuzzleBoard#moveNumber}.
+ */
+public final class SlidingPuzzleSolver {
+    /** Largest board the packed byte state can hold. */
+    public static final int MAX_CELLS = 128;
+
+    private static final int FOUND = -1;
+    private static final int ABORTED = -2;
+    private static final int MAX_FRONTIER_DEPTH = 12;
+
+    /** Outcome of one {@link #solve} call. */
+    public static final class Result {
+        private final int[] moves;
+        private final long nodes;
+        private final long millis;
+        private final int initialEstimate;
+
+        Result(int[] moves, long nodes, long millis, int initialEstimate) {
+            this.moves = moves;
+            this.nodes = nodes;
+            this.millis = millis;
+            this.initialEstimate = initialEstimate;
+        }
+
+        /** Whether an optimal solution was found within the node budget. */
+        public boolean isSolved() { return moves != null; }
+        /** Tile numbers to slide, in order; null when the budget ran out. */
+        public int[] moves() { return moves == null ? null : moves.clone(); }
+        public int length() { return moves == null ? -1 : moves.length; }
+        public long nodes() { return nodes; }
+        public long millis() { return millis; }
+        /** Heuristic value of the starting layout (a lower bound on the length). */
+        public int initialEstimate() { return initialEstimate; }
+        public long nodesPerSecond() { return millis == 0 ? nodes * 1000 : nodes * 1000 / millis; }
+
+        @Override
+        public String toString() {
+            return String.format("%s | h0=%d nodes=%d (%d/s) %dms",
+                    moves == null ? "budget hit" : moves.length + " moves", initialEstimate,
+                    nodes, nodesPerSecond(), millis);
+        }
+    }
+
+    private final int rows, cols, cells;
+    private final byte[] manhattan;   // [tile * cells + cell]
+    private final int[] neighbours;   // [cell * 4 + k], -1 terminated
+    private final byte[] tiles;
+    private final int[] rowConflicts; // 2 * conflicts per row
+    private final int[] colConflicts; // 2 * conflicts per column
+    private final int[] lineGoals;    // scratch for the conflict scan
+    private final AdditivePatternDatabase patterns; // null: Manhattan + linear conflict only
+    private final int[] where;        // tile -> cell, kept for pattern lookups
+    private final int[] patternExtra; // 2 * extra moves per pattern
+    private int patternTotal;
+    private int[] path;
+    private int blank;
+    private int distance;
+    private int conflicts;
+    private long nodes;
+    private long nodeBudget;
+    private AtomicBoolean stop; // set by a sibling subtree in solveParallel, else null
+
+    public SlidingPuzzleSolver(int rows, int cols) {
+        this(rows, cols, null);
+    }
+
+    /** Solver whose heuristic also consults the given pattern databases. */
+    public SlidingPuzzleSolver(AdditivePatternDatabase patterns) {
+        this(patterns.getRows(), patterns.getCols(), patterns);
+    }
+
+    private SlidingPuzzleSolver(int rows, int cols, AdditivePatternDatabase patterns) {
+        if (rows < 2 || cols < 2) throw new IllegalArgumentException("rows and cols must be >= 2");
+        if (rows * cols > MAX_CELLS) throw new IllegalArgumentException("rows*cols must be <= " + MAX_CELLS);
+        this.rows = rows;
+        this.cols = cols;
+        this.cells = rows * cols;
+        manhattan = new byte[cells * cells];
+        for (int tile = 1; tile < cells; tile++) {
+            int goal = tile - 1;
+            for (int cell = 0; cell < cells; cell++) {
+                manhattan[tile * cells + cell] =
+                        (byte) (Math.abs(goal / cols - cell / cols) + Math.abs(goal % cols - cell % cols));
+            }
+        }
+        neighbours = new int[cells * 4];
+        for (int cell = 0; cell < cells; cell++) {
+            int r = cell / cols, c = cell % cols, k = cell * 4;
+            if (r > 0) neighbours[k++] = cell - cols;
+            if (r < rows - 1) neighbours[k++] = cell + cols;
+            if (c > 0) neighbours[k++] = cell - 1;
+            if (c < cols - 1) neighbours[k++] = cell + 1;
+            while (k < cell * 4 + 4) neighbours[k++] = -1;
+        }
+        tiles = new byte[cells];
+        rowConflicts = new int[rows];
+        colConflicts = new int[cols];
+        lineGoals = new int[Math.max(rows, cols)];
+        path = new int[64];
+        this.patterns = patterns;
+        where = new int[cells];
+        patternExtra = new int[patterns == null ? 0 : patterns.patternCount()];
+    }
+
+    public Result solve(SlidingPuzzleBoard board) {
+        return solve(board, Long.MAX_VALUE);
+    }
+
+    public Result solve(SlidingPuzzleBoard board, long nodeBudget) {
+        if (board.getRows() != rows || board.getCols() != cols) {
+            throw new IllegalArgumentException("solver is for " + rows + "x" + cols + " boards");
+        }
+        int[] layout = new int[cells];
+        board.copyLayout(layout);
+        return solve(layout, nodeBudget);
+    }
+
+    /**
+     * Solve a row-major layout (0 = empty).
+     * @throws IllegalArgumentException if the layout is not a permutation of 0..rows*cols-1
+     *         or cannot reach the goal
+     */
+    public Result solve(int[] layout, long nodeBudget) {
+        long started = System.currentTimeMillis();
+        load(layout);
+        this.nodeBudget = nodeBudget;
+        this.stop = null;
+        nodes = 0;
+        int estimate = distance + Math.max(conflicts, patternTotal);
+        int bound = estimate;
+        while (true) {
+            int t = search(0, bound, -1);
+            if (t == FOUND) {
+                int[] moves = new int[bound];
+                System.arraycopy(path, 0, moves, 0, bound);
+                return new Result(moves, nodes, System.currentTimeMillis() - started, estimate);
+            }
+            if (t == ABORTED) return new Result(null, nodes, System.currentTimeMillis() - started, estimate);
+            bound = t;
+            if (bound >= path.length) {
+                int[] grown = new int[Math.max(bound + 1, path.length * 2)];
+                System.arraycopy(path, 0, grown, 0, path.length);
+                path = grown;
+            }
+        }
+    }
+
+    /**
+     * Like {@link #solve(int[], long)}, but each IDA* iteration searches the subtrees
+     * below a frontier of about {@code 8 * parallelism} short move prefixes as tasks
+     * on {@code pool}; the first subtree to reach the goal stops its siblings. When
+     * called from a task already running in {@code pool}, the subtrees are forked
+     * into it, so they share workers with whatever else the pool is running. The
+     * node budget is checked between iterations, so one iteration may overshoot it.
+     */
+    public Result solveParallel(int[] layout, long nodeBudget, ForkJoinPool pool) {
+        long started = System.currentTimeMillis();
+        load(layout);
+        final int estimate = distance + Math.max(conflicts, patternTotal);
+        final int[] start = layout.clone();
+        List<int[]> prefixes = frontier(start, pool.getParallelism() * 8);
+        // a solution shorter than the prefixes would be missed below the frontier
+        if (estimate <= prefixes.get(0).length) return solve(layout, nodeBudget);
+
+        final List<Subtree> tasks = new ArrayList<>(prefixes.size());
+        for (int[] prefix : prefixes) tasks.add(new Subtree(new SlidingPuzzleSolver(rows, cols, patterns), start, prefix));
+        long total = 0;
+        int bound = estimate;
+        while (true) {
+            AtomicBoolean found = new AtomicBoolean();
+            for (Subtree t : tasks) {
+                t.reinitialize();
+                t.bound = bound;
+                t.budget = nodeBudget - total;
+                t.stop = found;
+            }
+            if (ForkJoinTask.inForkJoinPool()) {
+                ForkJoinTask.invokeAll(tasks);
+            } else {
+                pool.invoke(new RecursiveAction() {
+                    @Override protected void compute() { invokeAll(tasks); }
+                });
+            }
+            int next = Integer.MAX_VALUE;
+            int[] solution = null;
+            for (Subtree t : tasks) {
+                total += t.nodes;
+                if (t.result == FOUND && solution == null) solution = t.solution;
+                else if (t.result >= 0 && t.result < next) next = t.result;
+            }
+            long millis = System.currentTimeMillis() - started;
+            if (solution != null) return new Result(solution, total, millis, estimate);
+            if (total >= nodeBudget || next == Integer.MAX_VALUE) return new Result(null, total, millis, estimate);
+            bound = next;
+        }
+    }
+
+    /**
+     * All move sequences of the smallest depth whose count reaches {@code target}
+     * (skipping immediate reversals).
+     */
+    private List<int[]> frontier(int[] layout, int target) {
+        List<int[]> level = new ArrayList<>();
+        level.add(new int[0]);
+        int[] scratch = new int[cells];
+        for (int depth = 0; depth < MAX_FRONTIER_DEPTH && level.size() < target; depth++) {
+            List<int[]> deeper = new ArrayList<>(level.size() * 3);
+            for (int[] prefix : level) {
+                int previous = replay(layout, prefix, scratch);
+                int empty = indexOf(scratch, 0);
+                for (int k = empty * 4, end = k + 4; k < end && neighbours[k] >= 0; k++) {
+                    if (neighbours[k] == previous) continue;
+                    int[] longer = Arrays.copyOf(prefix, prefix.length + 1);
+                    longer[prefix.length] = scratch[neighbours[k]];
+                    deeper.add(longer);
+                }
+            }
+            level = deeper;
+        }
+        return level;
+    }
+
+    /** Apply {@code prefix} to a copy of {@code layout} in {@code dst}; returns the cell the empty space left last (-1 if none). */
+    private static int replay(int[] layout, int[] prefix, int[] dst) {
+        System.arraycopy(layout, 0, dst, 0, layout.length);
+        int empty = indexOf(dst, 0), previous = -1;
+        for (int tile : prefix) {
+            int cell = indexOf(dst, tile);
+            dst[empty] = tile;
+            dst[cell] = 0;
+            previous = empty;
+            empty = cell;
+        }
+        return previous;
+    }
+
+    private static int indexOf(int[] layout, int value) {
+        for (int i = 0; i < layout.length; i++) if (layout[i] == value) return i;
+        return -1;
+    }
+
+    /** One subtree of a parallel IDA* iteration, searched on a private solver. */
+    private static final class Subtree extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final SlidingPuzzleSolver solver;
+        final int[] start;
+        final int[] prefix;
+        final int[] layout;
+        int bound;
+        long budget;
+        AtomicBoolean stop;
+        int result;
+        long nodes;
+        int[] solution;
+
+        Subtree(SlidingPuzzleSolver solver, int[] start, int[] prefix) {
+            this.solver = solver;
+            this.start = start;
+            this.prefix = prefix;
+            this.layout = new int[start.length];
+        }
+
+        @Override
+        protected void compute() {
+            SlidingPuzzleSolver s = solver;
+            int previous = replay(start, prefix, layout);
+            s.load(layout);
+            s.nodeBudget = budget;
+            s.stop = stop;
+            s.nodes = 0;
+            if (s.path.length <= bound) s.path = new int[bound + 1];
+            System.arraycopy(prefix, 0, s.path, 0, prefix.length);
+            result = s.search(prefix.length, bound, previous);
+            nodes = s.nodes;
+            solution = null;
+            if (result == FOUND && stop.compareAndSet(false, true)) {
+                solution = Arrays.copyOf(s.path, bound);
+            } else if (result == FOUND) {
+                result = ABORTED; // a sibling got there first
+            }
+        }
+    }
+
+    private void load(int[] layout) {
+        if (layout.length != cells) throw new IllegalArgumentException("layout must have " + cells + " cells");
+        boolean[] seen = new boolean[cells];
+        for (int cell = 0; cell < cells; cell++) {
+            int v = layout[cell];
+            if (v < 0 || v >= cells || seen[v]) throw new IllegalArgumentException("layout is not a permutation of 0.." + (cells - 1));
+            seen[v] = true;
+            tiles[cell] = (byte) v;
+            where[v] = cell;
+            if (v == 0) blank = cell;
+        }
+        if (!isSolvable(layout)) throw new IllegalArgumentException("layout is not solvable");
+        distance = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            if (tiles[cell] != 0) distance += manhattan[tiles[cell] * cells + cell];
+        }
+        conflicts = 0;
+        for (int r = 0; r < rows; r++) conflicts += rowConflicts[r] = rowConflict(r);
+        for (int c = 0; c < cols; c++) conflicts += colConflicts[c] = colConflict(c);
+        patternTotal = 0;
+        for (int p = 0; p < patternExtra.length; p++) patternTotal += patternExtra[p] = 2 * patterns.extra(p, where);
+    }
+
+    /**
+     * Permutation parity from the cycle count (O(cells)); with an even width the
+     * empty space's row distance from the bottom row also counts.
+     */
+    private boolean isSolvable(int[] layout) {
+        boolean[] visited = new boolean[cells];
+        int cycles = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            if (visited[cell]) continue;
+            cycles++;
+            // tile v belongs at cell v-1; the empty space belongs at the last cell
+            for (int at = cell; !visited[at]; ) {
+                visited[at] = true;
+                int v = layout[at];
+                at = v == 0 ? cells - 1 : v - 1;
+            }
+        }
+        int parity = (cells - cycles) & 1;
+        int blankRowsUp = rows - 1 - blank / cols;
+        int blankCols = cols - 1 - blank % cols;
+        // every move of the empty space flips the permutation parity
+        return ((parity + blankRowsUp + blankCols) & 1) == 0;
+    }
+
+    private int search(int g, int bound, int previous) {
+        int f = g + distance + Math.max(conflicts, patternTotal);
+        if (f > bound) return f;
+        if (distance == 0) return FOUND;
+        if (++nodes > nodeBudget) return ABORTED;
+        if (stop != null && (nodes & 1023) == 0 && stop.get()) return ABORTED;
+
+        int min = Integer.MAX_VALUE;
+        int to = blank;
+        for (int k = to * 4, end = k + 4; k < end; k++) {
+            int from = neighbours[k];
+            if (from < 0) break;
+            if (from == previous) continue;
+
+            int tile = tiles[from];
+            tiles[to] = (byte) tile;
+            tiles[from] = 0;
+            blank = from;
+            int delta = manhattan[tile * cells + to] - manhattan[tile * cells + from];
+            distance += delta;
+            boolean horizontal = from / cols == to / cols;
+            int a, b, savedA, savedB;
+            if (horizontal) {
+                a = from % cols; b = to % cols;
+                savedA = colConflicts[a]; savedB = colConflicts[b];
+                colConflicts[a] = colConflict(a);
+                colConflicts[b] = colConflict(b);
+                conflicts += colConflicts[a] + colConflicts[b] - savedA - savedB;
+            } else {
+                a = from / cols; b = to / cols;
+                savedA = rowConflicts[a]; savedB = rowConflicts[b];
+                rowConflicts[a] = rowConflict(a);
+                rowConflicts[b] = rowConflict(b);
+                conflicts += rowConflicts[a] + rowConflicts[b] - savedA - savedB;
+            }
+            int pattern = patterns == null ? -1 : patterns.patternOf(tile);
+            int savedExtra = 0;
+            if (pattern >= 0) {
+                where[tile] = to;
+                savedExtra = patternExtra[pattern];
+                patternExtra[pattern] = 2 * patterns.extra(pattern, where);
+                patternTotal += patternExtra[pattern] - savedExtra;
+            }
+            path[g] = tile;
+
+            int t = search(g + 1, bound, to);
+
+            if (pattern >= 0) {
+                patternTotal -= patternExtra[pattern] - savedExtra;
+                patternExtra[pattern] = savedExtra;
+                where[tile] = from;
+            }
+
+            if (horizontal) {
+                conflicts -= colConflicts[a] + colConflicts[b] - savedA - savedB;
+                colConflicts[a] = savedA; colConflicts[b] = savedB;
+            } else {
+                conflicts -= rowConflicts[a] + rowConflicts[b] - savedA - savedB;
+                rowConflicts[a] = savedA; rowConflicts[b] = savedB;
+            }
+            distance -= delta;
+            blank = to;
+            tiles[from] = (byte) tile;
+            tiles[to] = 0;
+
+            if (t == FOUND || t == ABORTED) return t;
+            if (t < min) min = t;
+        }
+        return min;
+    }
+
+    /** Twice the number of tiles that must leave row r so its own tiles are in goal order. */
+    private int rowConflict(int r) {
+        int n = 0;
+        for (int c = 0, cell = r * cols; c < cols; c++, cell++) {
+            int tile = tiles[cell];
+            if (tile != 0 && (tile - 1) / cols == r) lineGoals[n++] = (tile - 1) % cols;
+        }
+        return 2 * (n - longestIncreasing(n));
+    }
+
+    private int colConflict(int c) {
+        int n = 0;
+        for (int r = 0, cell = c; r < rows; r++, cell += cols) {
+            int tile = tiles[cell];
+            if (tile != 0 && (tile - 1) % cols == c) lineGoals[n++] = (tile - 1) / cols;
+        }
+        return 2 * (n - longestIncreasing(n));
+    }
+
+    /** Length of the longest increasing run (not necessarily contiguous) in lineGoals[0..n). */
+    private int longestIncreasing(int n) {
+        if (n < 2) return n;
+        // patience sorting in place: lineGoals[0..len) becomes the tails array
+        int len = 0;
+        for (int i = 0; i < n; i++) {
+            int v = lineGoals[i];
+            int lo = 0, hi = len;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (lineGoals[mid] < v) lo = mid + 1; else hi = mid;
+            }
+            lineGoals[lo] = v;
+            if (lo == len) len++;
+        }
+        return len;
+    }
+}
@@ -0,0 +1,275 @@
+package quoridor;
+
+import game.CancellationToken;
+import game.Clock;
+import game.GameState;
+import game.Negamax;
+import game.Player;
+import game.TranspositionTable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Line-based engine mode for GUIs and tournament managers, modelled on UCI.
+ * Moves and positions use {@link QuoridorNotation}; the board is the 2-player one.
+ * <pre>
+ *   uci                                    -> id lines, then uciok
+ *   isready                                -> readyok (answered at once, even while searching)
+ *   newgame                                forget the transposition table, back to the start
+ *   position startpos|packed H V M [moves M1 M2 ...]
+ *   go [movetime MS] [depth D] [nodes N] [infinite]
+ *      [wtime MS btime MS winc MS binc MS movestogo N]
+ *                                          -> info ... lines, then bestmove MOVE [ponder MOVE]
+ *   stop                                   end the running search; its bestmove follows
+ *   perft D                                -> one line per root move with its leaf count, then totals
+ *   d                                      print the board and its packed position
+ *   quit
+ * </pre>
+ * {@code go} searches on a background thread and returns at once; every
+ * finished iteration prints {@code info depth D score cp S|mate M nodes N nps N
+ * time MS pv ...}, with scores from the side to move's view (cp is the engine's
+ * evaluation, PATH_WEIGHT per step of path lead). Clock reports ({@code w} is
+ * seat 0, {@code b} seat 1) turn into a think time with {@link Clock#allocate},
+ * and the search stops on a {@link CancellationToken} within a millisecond of
+ * it, so timed matches are not lost on time. Without limits the search
+ * runs until {@code stop} or a forced result. A command that changes the
+ * position stops a running search first. A bad {@code position} leaves the
+ * start position and reports why in an {@code info string} line.
+ *
+ * Usage: {@code java quoridor.EngineProtocol}
+ */
+public final class EngineProtocol {
+    private static final int TABLE_BITS = 20;
+    private static final int DECIDED = GameState.WIN - Negamax.MAX_PLY;
+
+    private final BufferedReader in;
+    private final PrintStream out;
+    private final Negamax engine = new Negamax(new TranspositionTable(TABLE_BITS));
+    private final QuoridorBoard board = new QuoridorBoard(new Player("0", 0), new Player("1", 1), Collections.<Player, String>emptyMap());
+    private final ExecutorService searcher = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "engine-search");
+        t.setDaemon(true);
+        return t;
+    });
+    private Future<?> search;
+    private CancellationToken token;
+
+    public EngineProtocol(BufferedReader in, PrintStream out) {
+        this.in = in;
+        this.out = out;
+        engine.setListener(this::info);
+    }
+
+    public static void main(String[] args) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        new EngineProtocol(in, System.out).run();
+    }
+
+    /** Serve commands until {@code quit} or the end of input. */
+    public void run() throws IOException {
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] words = line.trim().split("\\s+");
+                if (words[0].isEmpty()) continue;
+                if (words[0].equals("quit")) break;
+                try {
+                    handle(words);
+                } catch (IllegalArgumentException e) {
+                    send("info string " + e.getMessage());
+                }
+            }
+        } finally {
+            finishSearch();
+            searcher.shutdown();
+        }
+    }
+
+    private void handle(String[] words) {
+        switch (words[0]) {
+            case "uci":
+                send("id name Quoridor negamax");
+                send("id author CASCS 611 Quoridor");
+                send("uciok");
+                break;
+            case "isready":
+                send("readyok");
+                break;
+            case "newgame":
+                finishSearch();
+                engine.table().clear();
+                board.reset();
+                break;
+            case "position":
+                finishSearch();
+                position(words);
+                break;
+            case "go":
+                finishSearch();
+                go(words);
+                break;
+            case "stop":
+                finishSearch();
+                break;
+            case "perft":
+                finishSearch();
+                if (words.length < 2) throw new IllegalArgumentException("perft needs a depth");
+                perft((int) Math.min(number(words[1]), Negamax.MAX_PLY));
+                break;
+            case "d":
+                finishSearch();
+                send(board.render());
+                send("position " + QuoridorNotation.formatPosition(board));
+                break;
+            default:
+                throw new IllegalArgumentException("unknown command " + words[0]);
+        }
+    }
+
+    private void position(String[] words) {
+        try {
+            int i = QuoridorNotation.parsePosition(words, 1, board);
+            if (i < words.length && !words[i].equals("moves")) throw new IllegalArgumentException("expected 'moves', got " + words[i]);
+            int[] legal = new int[board.maxMoves()];
+            for (i++; i < words.length; i++) {
+                int move = QuoridorNotation.parse(words[i]);
+                if (!contains(legal, board.isTerminal() ? 0 : board.generateMoves(legal), move)) {
+                    throw new IllegalArgumentException("illegal move " + words[i]);
+                }
+                board.makeMove(move);
+            }
+        } catch (IllegalArgumentException e) {
+            board.reset();
+            throw e;
+        }
+    }
+
+    private void go(String[] words) {
+        int depth = Negamax.MAX_PLY - 1;
+        long millis = Long.MAX_VALUE, nodes = Long.MAX_VALUE;
+        long[] time = {-1, -1}, increment = {0, 0};
+        int movesToGo = 0;
+        for (int i = 1; i < words.length; i++) {
+            switch (words[i]) {
+                case "infinite": break;
+                case "depth": depth = (int) Math.max(1, Math.min(depth, value(words, ++i))); break;
+                case "movetime": millis = value(words, ++i); break;
+                case "nodes": nodes = value(words, ++i); break;
+                case "wtime": time[0] = value(words, ++i); break;
+                case "btime": time[1] = value(words, ++i); break;
+                case "winc": increment[0] = value(words, ++i); break;
+                case "binc": increment[1] = value(words, ++i); break;
+                case "movestogo": movesToGo = (int) Math.max(1, Math.min(Integer.MAX_VALUE, value(words, ++i))); break;
+                default: throw new IllegalArgumentException("unknown go option " + words[i]);
+            }
+        }
+        int seat = board.sideToMove();
+        if (time[seat] >= 0) {
+            if (movesToGo == 0) movesToGo = QuoridorEngine.movesToGo(board, seat);
+            millis = Math.min(millis, Clock.allocate(time[seat], increment[seat], movesToGo));
+        }
+        int maxDepth = depth;
+        long maxNodes = nodes;
+        CancellationToken stop = CancellationToken.afterMillis(millis);
+        token = stop;
+        search = searcher.submit(() -> {
+            Negamax.Result result = engine.search(board, seat, maxDepth, stop, maxNodes);
+            int[] pv = result.pv();
+            String best = result.bestMove() < 0 ? "(none)" : QuoridorNotation.format(result.bestMove());
+            send("bestmove " + best + (pv.length > 1 ? " ponder " + QuoridorNotation.format(pv[1]) : ""));
+        });
+    }
+
+    /** Stop a running search and wait for it to print its bestmove. */
+    private void finishSearch() {
+        if (search == null) return;
+        token.cancel();
+        try {
+            search.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            send("info string search failed: " + e.getCause());
+        }
+        search = null;
+    }
+
+    private void info(Negamax.Result r) {
+        StringBuilder sb = new StringBuilder("info depth ").append(r.depth()).append(" score ");
+        int score = r.score();
+        if (Math.abs(score) >= DECIDED) {
+            int moves = (GameState.WIN - Math.abs(score) + 1) / 2;
+            sb.append("mate ").append(score > 0 ? moves : -moves);
+        } else {
+            sb.append("cp ").append(score);
+        }
+        sb.append(" nodes ").append(r.nodes()).append(" nps ").append(r.nodesPerSecond()).append(" time ").append(r.millis()).append(" pv");
+        for (int move : r.pv()) sb.append(' ').append(QuoridorNotation.format(move));
+        send(sb.toString());
+    }
+
+    private void perft(int depth) {
+        if (depth < 1) throw new IllegalArgumentException("perft depth must be at least 1");
+        long started = System.nanoTime();
+        int[][] buffers = new int[depth][board.maxMoves()];
+        int count = board.isTerminal() ? 0 : board.generateMoves(buffers[0]);
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            int move = buffers[0][i];
+            board.makeMove(move);
+            long leaves = perft(board, depth - 1, buffers, 1);
+            board.unmakeMove(move);
+            total += leaves;
+            send(QuoridorNotation.format(move) + ": " + leaves);
+        }
+        long millis = (System.nanoTime() - started) / 1_000_000;
+        send("nodes " + total + " time " + millis + " nps " + (millis == 0 ? total * 1000 : total * 1000 / millis));
+    }
+
+    /** Leaf positions {@code depth} plies below {@code state}; decided games count as one leaf. */
+    static long perft(GameState state, int depth, int[][] buffers, int ply) {
+        if (depth == 0 || state.isTerminal()) return 1;
+        int[] moves = buffers[ply];
+        int count = state.generateMoves(moves);
+        if (depth == 1) return count;
+        long leaves = 0;
+        for (int i = 0; i < count; i++) {
+            state.makeMove(moves[i]);
+            leaves += perft(state, depth - 1, buffers, ply + 1);
+            state.unmakeMove(moves[i]);
+        }
+        return leaves;
+    }
+
+    private void send(String line) {
+        out.println(line);
+        out.flush();
+    }
+
+    private static boolean contains(int[] moves, int count, int move) {
+        for (int i = 0; i < count; i++) if (moves[i] == move) return true;
+        return false;
+    }
+
+    private static long value(String[] words, int i) {
+        if (i >= words.length) throw new IllegalArgumentException("missing value after " + words[i - 1]);
+        return number(words[i]);
+    }
+
+    private static long number(String word) {
+        try {
+            return Long.parseLong(word);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("not a number: " + word);
+        }
+    }
+}
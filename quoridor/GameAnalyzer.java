@@ -0,0 +1,163 @@
+package quoridor;
+
+import game.GameState;
+import game.Negamax;
+import game.Player;
+import game.TranspositionTable;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Post-game blunder check: replays games from a {@link GameArchive} and
+ * searches every ply, flagging moves that lost at least {@code threshold}
+ * evaluation points (PATH_WEIGHT per step of path lead) against the engine's
+ * choice.
+ *
+ * For each ply the position is searched with a time limit; if the played move
+ * was not the engine's best, the position it led to is searched one ply
+ * shallower for the mover ({@link Negamax#search(GameState, int, int, long, long)}),
+ * so both values share a horizon. Games run in parallel, one per task; each
+ * pool thread keeps its own engine and boards, and the transposition table is
+ * cleared only between games, so consecutive plies of a game reuse the work
+ * done on the line they share. Flagged moves are written as they are found:
+ * {@code game <TAB> ply <TAB> seat <TAB> played <TAB> best <TAB> best value <TAB> played value <TAB> loss <TAB> depth}.
+ * A game that cannot be read or replayed is reported on standard error and
+ * counted as failed in the summary.
+ *
+ * Usage: {@code java quoridor.GameAnalyzer ARCHIVE OUTPUT [--threads N] [--millis MS] [--threshold POINTS] [--from GAME] [--count GAMES]}
+ */
+public final class GameAnalyzer {
+    public static final int DEFAULT_THRESHOLD = 3 * QuoridorBoard.PATH_WEIGHT;
+    private static final int TABLE_BITS = 18;
+
+    private final GameArchive archive;
+    private final ExecutorService pool;
+    private final Semaphore inFlight;
+    private final long millis;
+    private final int threshold;
+    private final ThreadLocal<Worker> workers = ThreadLocal.withInitial(Worker::new);
+
+    private final AtomicLong games = new AtomicLong();
+    private final AtomicLong plies = new AtomicLong();
+    private final AtomicLong flagged = new AtomicLong();
+    private final AtomicLong nodes = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public GameAnalyzer(GameArchive archive, int threads, long millis, int threshold) {
+        this.archive = archive;
+        this.pool = Executors.newFixedThreadPool(threads);
+        this.inFlight = new Semaphore(4 * threads);
+        this.millis = millis;
+        this.threshold = threshold;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.err.println("usage: java quoridor.GameAnalyzer ARCHIVE OUTPUT [--threads N] [--millis MS] [--threshold POINTS] [--from GAME] [--count GAMES]");
+            System.exit(2);
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        long millis = 50;
+        int threshold = DEFAULT_THRESHOLD;
+        int from = 0, count = Integer.MAX_VALUE;
+        for (int i = 2; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--threads": threads = Integer.parseInt(args[i + 1]); break;
+                case "--millis": millis = Long.parseLong(args[i + 1]); break;
+                case "--threshold": threshold = Integer.parseInt(args[i + 1]); break;
+                case "--from": from = Integer.parseInt(args[i + 1]); break;
+                case "--count": count = Integer.parseInt(args[i + 1]); break;
+                default: System.err.println("unknown option " + args[i]); System.exit(2);
+            }
+        }
+        try (GameArchive archive = GameArchive.open(Paths.get(args[0]))) {
+            int to = (int) Math.min(archive.size(), (long) from + count);
+            new GameAnalyzer(archive, threads, millis, threshold).run(from, to, Paths.get(args[1]));
+        }
+    }
+
+    /** Analyze games {@code from} (inclusive) to {@code to} (exclusive), streaming flags to {@code output}; prints a summary. */
+    public void run(int from, int to, Path output) throws IOException, InterruptedException {
+        long started = System.currentTimeMillis();
+        try (BufferedWriter out = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            for (int game = from; game < to; game++) {
+                inFlight.acquire();
+                int g = game;
+                pool.execute(() -> {
+                    try {
+                        analyze(g, out);
+                    } catch (IOException | RuntimeException e) {
+                        failed.incrementAndGet();
+                        System.err.println("game " + g + " failed: " + e);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        }
+        long elapsed = Math.max(1, System.currentTimeMillis() - started);
+        System.out.printf("%d games (%d failed), %d plies, %d moves flagged in %dms: %.1f games/min, %d nodes (%d nodes/s)%n",
+                games.get(), failed.get(), plies.get(), flagged.get(), elapsed, games.get() * 60_000.0 / elapsed,
+                nodes.get(), nodes.get() * 1000 / elapsed);
+    }
+
+    private void analyze(int game, BufferedWriter out) throws IOException {
+        int[] moves = archive.moves(game);
+        int players = archive.players(game);
+        Worker w = workers.get();
+        GameState state = w.reset(players);
+        StringBuilder found = new StringBuilder();
+        for (int ply = 0; ply < moves.length && !state.isTerminal(); ply++) {
+            int seat = state.sideToMove();
+            int played = moves[ply];
+            Negamax.Result best = w.engine.search(state, Negamax.MAX_PLY - 1, millis, Long.MAX_VALUE);
+            nodes.addAndGet(best.nodes());
+            state.makeMove(played);
+            plies.incrementAndGet();
+            if (best.bestMove() == played || best.depth() == 0) continue;
+            Negamax.Result after = w.engine.search(state, seat, Math.max(1, best.depth() - 1), millis, Long.MAX_VALUE);
+            nodes.addAndGet(after.nodes());
+            if (after.depth() == 0) continue;
+            int loss = best.score() - after.score();
+            if (loss < threshold) continue;
+            flagged.incrementAndGet();
+            found.append(game).append('\t').append(ply).append('\t').append(seat).append('\t')
+                    .append(GameArchive.describeMove(played)).append('\t').append(GameArchive.describeMove(best.bestMove())).append('\t')
+                    .append(best.score()).append('\t').append(after.score()).append('\t').append(loss).append('\t')
+                    .append(best.depth()).append('\n');
+        }
+        games.incrementAndGet();
+        if (found.length() == 0) return;
+        synchronized (out) {
+            out.write(found.toString());
+        }
+    }
+
+    /** One pool thread's engine and replay boards. */
+    private static final class Worker {
+        final Negamax engine = new Negamax(new TranspositionTable(TABLE_BITS));
+        final QuoridorBoard board = new QuoridorBoard(new Player("0", 0), new Player("1", 1), Collections.<Player, String>emptyMap());
+        final QuoridorBoard4 board4 = GameArchive.newBoard4();
+
+        /** Fresh start position for a game with {@code players} players; forgets the last game. */
+        GameState reset(int players) {
+            engine.table().clear();
+            if (players == 2) { board.reset(); return board; }
+            board4.reset();
+            return board4;
+        }
+    }
+}
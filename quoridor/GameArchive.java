@@ -0,0 +1,336 @@
+package quoridor;
+
+import game.GameState;
+import game.Player;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Append-only store of finished Quoridor games (2- and 4-player) with a
+ * {@link PositionIndex} over every position they reached.
+ *
+ * A game is its player count, its moves in {@link QuoridorMoves} encoding and
+ * its result. Appending replays the moves on a private board and adds each
+ * position's canonical hash ({@link GameState#canonicalHash()}: Zobrist over
+ * pawns, walls, walls left and side to move, so independent of move order, and
+ * shared with the mirror image on the 2-player board) to the index, with the
+ * next move in the same orientation. The two boards use separate key streams,
+ * so their positions never collide.
+ * Files in the archive directory:
+ * <pre>
+ *   games.dat  "QGA1", then per game: move count (u16) | result (u8) | players (u8) | moves (u16 each)
+ *   games.off  byte offset in games.dat of each game (long), so game N is one seek away
+ *   index/     the position index
+ * </pre>
+ * Opening repairs a torn last write and re-indexes games the index lost
+ * (ones still in its memory buffer when the process ended).
+ *
+ * Usage: {@code java quoridor.GameArchive DIR [random GAMES] [query MOVE...]}
+ */
+public final class GameArchive implements Closeable {
+    static final int MAGIC = 0x51474131; // "QGA1"
+    /** Result of a game that was abandoned or cut off. */
+    public static final int UNFINISHED = PositionIndex.UNFINISHED;
+    public static final int MAX_MOVES = 0xFFFF;
+    private static final int INDEX_BUFFER = 1 << 20;
+
+    private final FileChannel data;
+    private final FileChannel offsets;
+    private final PositionIndex index;
+    private final Player[] seats = {new Player("0", 0), new Player("1", 1)};
+    private final QuoridorBoard board = new QuoridorBoard(seats[0], seats[1], Collections.<Player, String>emptyMap());
+    private final QuoridorBoard4 board4 = newBoard4();
+    private long[] keys = new long[256];
+    private int[] next = new int[256];
+    private int games;
+    private long end;
+
+    private GameArchive(FileChannel data, FileChannel offsets, PositionIndex index) {
+        this.data = data;
+        this.offsets = offsets;
+        this.index = index;
+    }
+
+    /** Open (or create) the archive in {@code dir}. */
+    public static GameArchive open(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        FileChannel data = FileChannel.open(dir.resolve("games.dat"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileChannel offsets = FileChannel.open(dir.resolve("games.off"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        GameArchive archive = new GameArchive(data, offsets, PositionIndex.open(dir.resolve("index"), INDEX_BUFFER));
+        archive.recover();
+        return archive;
+    }
+
+    private void recover() throws IOException {
+        if (data.size() == 0) {
+            ByteBuffer head = ByteBuffer.allocate(4).putInt(MAGIC);
+            head.flip();
+            data.write(head, 0);
+        } else if (readInt(data, 0) != MAGIC) {
+            throw new IOException("not a Quoridor game archive");
+        }
+        // an offset is written after its game, so a torn append leaves at most extra bytes at either end
+        games = (int) (offsets.size() / 8);
+        offsets.truncate(games * 8L);
+        end = 4;
+        if (games > 0) {
+            long last = offset(games - 1);
+            end = last + recordLength(readShort(data, last));
+        }
+        data.truncate(end);
+        for (int game = index.games(); game < games; game++) {
+            int[] moves = moves(game);
+            indexGame(game, players(game), moves, moves.length, result(game));
+        }
+    }
+
+    /** A 4-player board with placeholder players, for replaying games. */
+    static QuoridorBoard4 newBoard4() {
+        List<Player> players = new ArrayList<>();
+        for (int seat = 0; seat < QuoridorBoard4.PLAYERS; seat++) players.add(new Player(Integer.toString(seat), seat));
+        return new QuoridorBoard4(players, Collections.<Player, String>emptyMap());
+    }
+
+    /** Store a 2-player game; see {@link #append(int, int[], int, int)}. */
+    public int append(int[] moves, int n, int result) throws IOException {
+        return append(2, moves, n, result);
+    }
+
+    /**
+     * Store a game and index its positions.
+     * @param players 2 or 4
+     * @param moves   legal moves from the initial position, in QuoridorMoves encoding
+     * @param result  winning seat, or UNFINISHED
+     * @return the game's number
+     */
+    public synchronized int append(int players, int[] moves, int n, int result) throws IOException {
+        if (players != 2 && players != QuoridorBoard4.PLAYERS) throw new IllegalArgumentException("games have 2 or 4 players");
+        if (n > MAX_MOVES) throw new IllegalArgumentException("games are limited to " + MAX_MOVES + " moves");
+        if ((result < 0 || result >= players) && result != UNFINISHED) throw new IllegalArgumentException("bad result " + result);
+        ByteBuffer record = ByteBuffer.allocate(recordLength(n));
+        record.putShort((short) n).put((byte) result).put((byte) players);
+        for (int i = 0; i < n; i++) {
+            if (moves[i] < 0 || moves[i] >= QuoridorMoves.CELLS + QuoridorMoves.WALL_SLOTS) {
+                throw new IllegalArgumentException("move " + moves[i] + " is out of range");
+            }
+            record.putShort((short) moves[i]);
+        }
+        record.flip();
+        writeFully(data, record, end);
+        ByteBuffer offset = ByteBuffer.allocate(8).putLong(end);
+        offset.flip();
+        writeFully(offsets, offset, games * 8L);
+        end += recordLength(n);
+        int game = games++;
+        indexGame(game, players, moves, n, result);
+        return game;
+    }
+
+    private void indexGame(int game, int players, int[] moves, int n, int result) throws IOException {
+        if (keys.length < n + 1) {
+            keys = new long[Math.max(n + 1, keys.length * 2)];
+            next = new int[keys.length];
+        }
+        GameState state;
+        if (players == 2) { board.reset(); state = board; }
+        else { board4.reset(); state = board4; }
+        for (int i = 0; i < n; i++) {
+            keys[i] = state.canonicalHash();
+            next[i] = state.canonicalMove(moves[i]);
+            state.makeMove(moves[i]);
+        }
+        keys[n] = state.canonicalHash();
+        index.addGame(game, keys, next, n, result);
+    }
+
+    public synchronized int size() {
+        return games;
+    }
+
+    /** Moves of game number {@code game}, read from disk. */
+    public synchronized int[] moves(int game) throws IOException {
+        long at = offset(game);
+        int n = readShort(data, at);
+        ByteBuffer in = ByteBuffer.allocate(2 * n);
+        readFully(data, in, at + 4);
+        in.flip();
+        int[] moves = new int[n];
+        for (int i = 0; i < n; i++) moves[i] = in.getShort() & 0xFFFF;
+        return moves;
+    }
+
+    /** Winning seat of game number {@code game}, or UNFINISHED. */
+    public synchronized int result(int game) throws IOException {
+        ByteBuffer in = ByteBuffer.allocate(1);
+        readFully(data, in, offset(game) + 2);
+        return in.get(0) & 0xFF;
+    }
+
+    /** Player count (2 or 4) of game number {@code game}. */
+    public synchronized int players(int game) throws IOException {
+        ByteBuffer in = ByteBuffer.allocate(1);
+        readFully(data, in, offset(game) + 3);
+        return in.get(0) & 0xFF;
+    }
+
+    /**
+     * Everything the index knows about the position on {@code board} (either
+     * board type) and its mirror image, with next moves as seen from {@code board}.
+     */
+    public PositionIndex.Stats query(GameState board) {
+        return index.query(board.canonicalHash()).withMoves(board::canonicalMove);
+    }
+
+    /** Stats for a canonical key; next moves are in canonical orientation. */
+    public PositionIndex.Stats query(long key) {
+        return index.query(key);
+    }
+
+    /** Times the position with this key arose; cheaper than {@link #query} for very common positions. */
+    public long count(long key) {
+        return index.count(key);
+    }
+
+    public PositionIndex index() {
+        return index;
+    }
+
+    /** Flush the index buffer and sync both files. */
+    @Override
+    public synchronized void close() throws IOException {
+        index.close();
+        data.force(false);
+        offsets.force(false);
+        data.close();
+        offsets.close();
+    }
+
+    private long offset(int game) throws IOException {
+        if (game < 0 || game >= games) throw new IllegalArgumentException("no game " + game);
+        return readLong(offsets, game * 8L);
+    }
+
+    private static int recordLength(int moves) {
+        return 4 + 2 * moves;
+    }
+
+    private static int readShort(FileChannel ch, long at) throws IOException {
+        ByteBuffer in = ByteBuffer.allocate(2);
+        readFully(ch, in, at);
+        return in.getShort(0) & 0xFFFF;
+    }
+
+    private static int readInt(FileChannel ch, long at) throws IOException {
+        ByteBuffer in = ByteBuffer.allocate(4);
+        readFully(ch, in, at);
+        return in.getInt(0);
+    }
+
+    private static long readLong(FileChannel ch, long at) throws IOException {
+        ByteBuffer in = ByteBuffer.allocate(8);
+        readFully(ch, in, at);
+        return in.getLong(0);
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer in, long at) throws IOException {
+        while (in.hasRemaining()) {
+            int n = ch.read(in, at);
+            if (n < 0) throw new IOException("archive is truncated");
+            at += n;
+        }
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer out, long at) throws IOException {
+        while (out.hasRemaining()) at += ch.write(out, at);
+    }
+
+    // ---- command line: fill with random games, query a line of play ----
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: java quoridor.GameArchive DIR [random GAMES] [query MOVE...]");
+            System.exit(2);
+        }
+        try (GameArchive archive = open(Paths.get(args[0]))) {
+            int i = 1;
+            if (i + 1 < args.length && args[i].equals("random")) {
+                int count = Integer.parseInt(args[i + 1]);
+                long started = System.currentTimeMillis();
+                archive.appendRandom(count, new Random());
+                long millis = Math.max(1, System.currentTimeMillis() - started);
+                System.out.printf("appended %d games in %dms (%.0f games/s)%n", count, millis, count * 1000.0 / millis);
+                i += 2;
+            }
+            QuoridorBoard line = new QuoridorBoard(new Player("0", 0), new Player("1", 1), Collections.<Player, String>emptyMap());
+            if (i < args.length && args[i].equals("query")) {
+                for (int j = i + 1; j < args.length; j++) line.makeMove(Integer.parseInt(args[j]));
+            }
+            System.out.println(archive.size() + " games; index: " + archive.index().describe());
+            PositionIndex.Stats stats = archive.query(line);
+            System.out.println(stats);
+            int shown = 0;
+            for (Map.Entry<Integer, Long> e : stats.nextMoves().entrySet()) {
+                if (shown++ == 5) break;
+                System.out.println("  next " + describeMove(e.getKey()) + " x" + e.getValue());
+            }
+            System.out.println("  games " + Arrays.toString(stats.sampleGames()));
+        }
+    }
+
+    /** Human-readable form of a move: a 1-based target square or a wall placement. */
+    public static String describeMove(int move) {
+        if (QuoridorMoves.isWall(move)) return "wall " + QuoridorMoves.placement(move);
+        return "(" + (QuoridorMoves.row(move) + 1) + "," + (QuoridorMoves.col(move) + 1) + ")";
+    }
+
+    /**
+     * Append self-play games for testing and benchmarks: pawns mostly step
+     * toward their goal row, with a random legal wall now and then. Games still
+     * running after 200 moves are stored as UNFINISHED.
+     */
+    void appendRandom(int count, Random rnd) throws IOException {
+        QuoridorBoard b = new QuoridorBoard(seats[0], seats[1], Collections.<Player, String>emptyMap());
+        int[] moves = new int[200];
+        for (int g = 0; g < count; g++) {
+            b.reset();
+            int n = 0, result = UNFINISHED;
+            while (n < moves.length) {
+                int seat = b.sideToMove();
+                Player p = seats[seat];
+                if (b.getWallsRemaining(p) > 0 && rnd.nextInt(4) == 0) {
+                    WallOrientation o = rnd.nextBoolean() ? WallOrientation.HORIZONTAL : WallOrientation.VERTICAL;
+                    int r = rnd.nextInt(QuoridorBoard.WALL_RANGE), c = rnd.nextInt(QuoridorBoard.WALL_RANGE);
+                    if (b.applyWall(p, new WallPlacement(r, c, o, QuoridorBoard.WALL_RANGE))) {
+                        moves[n++] = QuoridorMoves.wall(o, r, c);
+                        continue;
+                    }
+                }
+                List<Position> options = b.legalMoves(p);
+                Position pick = options.get(rnd.nextInt(options.size()));
+                if (rnd.nextInt(10) < 7) {
+                    int goal = seat == 0 ? QuoridorBoard.SIZE - 1 : 0;
+                    for (Position o : options) if (Math.abs(goal - o.row()) < Math.abs(goal - pick.row())) pick = o;
+                }
+                b.applyMove(p, pick);
+                moves[n++] = QuoridorMoves.step(pick.row(), pick.col());
+                if (b.hasPlayerWon(p)) { result = seat; break; }
+            }
+            append(moves, n, result);
+        }
+    }
+}
@@ -0,0 +1,671 @@
+package quoridor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * On-disk index from position key to every time a game reached the position,
+ * with the move played next and the game's result. It is what lets
+ * {@link GameArchive} answer "which games reached this position" without
+ * reading the archive.
+ *
+ * New entries collect in an in-memory buffer. When the buffer fills, or on
+ * {@link #flush()}, it is sorted and written as an immutable segment file,
+ * which is then memory-mapped. A background thread merges segments of similar
+ * size, FANOUT at a time, so a query binary-searches a handful of segments
+ * instead of one per flush.
+ *
+ * Every key with at least SUMMARY_MIN entries in a segment also gets a summary
+ * record there: its occurrences, games, results, next-move counts and earliest
+ * games. Summaries are tallied from the entries at flush and added up from the
+ * inputs' summaries in a merge, so a query reads one record per segment for a
+ * common position (the start position is in every game) and scans fewer than
+ * SUMMARY_MIN entries otherwise. Segment files are:
+ * <pre>
+ *   "QPX2" | entry count (int) | summary count (int) | 4 reserved bytes
+ *   entries sorted by key, then game: key (long) | game (int) | next move (short) | result (byte) | 0
+ *   summary directory sorted by key: key (long) | record offset from the first record (long)
+ *   summary records: occurrences | games | unfinished | wins of seats 0-3 (long each) |
+ *       sample count (int) | next-move count (int) | sample games (int each) | next moves: move (int) | times (long)
+ * </pre>
+ * Segments written before summaries ("QPX1", entries only) are scanned, and
+ * gain summaries when they are merged.
+ * A MANIFEST lists the live segments and how many games they cover; it is
+ * replaced atomically, and files it does not list are deleted on open.
+ * Games still in the buffer at a crash are simply not covered, and
+ * {@link GameArchive} re-adds them on the next open.
+ */
+public final class PositionIndex implements Closeable {
+    static final int MAGIC = 0x51505832; // "QPX2"
+    static final int MAGIC_ENTRIES_ONLY = 0x51505831; // "QPX1"
+    static final int HEADER = 16;
+    static final int ENTRY = 16;
+    static final int SUMMARY_ENTRY = 16;
+    /** Keys with at least this many entries in a segment get a summary record. */
+    static final int SUMMARY_MIN = 64;
+    private static final int SUMMARY_FIXED = 64; // record bytes before the sample
+    /** Next-move value stored for a game's final position. */
+    public static final int NO_MOVE = 0xFFFF;
+    /** Result stored for games that ended without a winner. */
+    public static final int UNFINISHED = 0xFF;
+
+    private static final int FANOUT = 4;
+    // a summary is smaller than the SUMMARY_MIN or more entries it covers, so entries get half the file
+    private static final int MAX_SEGMENT_ENTRIES = (Integer.MAX_VALUE - HEADER) / (2 * ENTRY);
+    private static final String MANIFEST = "MANIFEST";
+    private static final int SAMPLE_GAMES = 20;
+
+    /** Everything the index knows about one position. */
+    public static final class Stats {
+        private final long key;
+        private final long occurrences;
+        private final long games;
+        private final long[] wins;
+        private final long unfinished;
+        private final Map<Integer, Long> nextMoves;
+        private final int[] sample;
+        private final long micros;
+
+        Stats(long key, long occurrences, long games, long[] wins, long unfinished,
+              Map<Integer, Long> nextMoves, int[] sample, long micros) {
+            this.key = key;
+            this.occurrences = occurrences;
+            this.games = games;
+            this.wins = wins;
+            this.unfinished = unfinished;
+            this.nextMoves = nextMoves;
+            this.sample = sample;
+            this.micros = micros;
+        }
+
+        public long key() { return key; }
+        /** Times the position arose, counting repeats within a game. */
+        public long occurrences() { return occurrences; }
+        /** Distinct games that reached the position. */
+        public long games() { return games; }
+        /** Games through the position won by {@code seat} (0..3). */
+        public long wins(int seat) { return wins[seat]; }
+        public long unfinished() { return unfinished; }
+        /** Move played next (QuoridorMoves encoding) to times played, most played first. */
+        public Map<Integer, Long> nextMoves() { return nextMoves; }
+        /** The earliest few game numbers that reached the position. */
+        public int[] sampleGames() { return sample.clone(); }
+        public long micros() { return micros; }
+
+        /** The same stats with every next move passed through {@code map}. */
+        Stats withMoves(IntUnaryOperator map) {
+            Map<Integer, Long> moves = new LinkedHashMap<>();
+            for (Map.Entry<Integer, Long> e : nextMoves.entrySet()) moves.put(map.applyAsInt(e.getKey()), e.getValue());
+            return new Stats(key, occurrences, games, wins, unfinished, Collections.unmodifiableMap(moves), sample, micros);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder().append(occurrences).append(" occurrences in ").append(games).append(" games (");
+            for (int seat = 0; seat < wins.length; seat++) {
+                if (wins[seat] > 0 || seat < 2) sb.append("seat ").append(seat).append(" won ").append(wins[seat]).append(", ");
+            }
+            return sb.append(unfinished).append(" unfinished) ").append(micros).append("us").toString();
+        }
+    }
+
+    /** One mapped segment file. */
+    private static final class Segment {
+        final Path file;
+        final int count;
+        final int summaries;
+        final MappedByteBuffer map;
+        private final int directory; // offset of the summary directory
+        private final int records;   // offset of the first summary record
+
+        Segment(Path file) throws IOException {
+            this.file = file;
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            }
+            int magic = map.capacity() < HEADER ? 0 : map.getInt(0);
+            if (magic != MAGIC && magic != MAGIC_ENTRIES_ONLY) throw new IOException(file + " is not an index segment");
+            count = map.getInt(4);
+            summaries = magic == MAGIC ? map.getInt(8) : 0;
+            long end = (long) HEADER + (long) count * ENTRY;
+            long first = end + (long) summaries * SUMMARY_ENTRY;
+            if (count < 0 || summaries < 0 || (magic == MAGIC ? first > map.capacity() : end != map.capacity())) {
+                throw new IOException(file + " is truncated");
+            }
+            directory = (int) end;
+            records = (int) first;
+        }
+
+        long key(int i) { return map.getLong(HEADER + i * ENTRY); }
+        long payload(int i) { return map.getLong(HEADER + i * ENTRY + 8); }
+
+        /** First entry with a key not below {@code key}. */
+        int lowerBound(long key) {
+            int lo = 0, hi = count;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (key(mid) < key) lo = mid + 1; else hi = mid;
+            }
+            return lo;
+        }
+
+        /** First entry with a key above {@code key}. */
+        int upperBound(long key) {
+            int lo = 0, hi = count;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (key(mid) <= key) lo = mid + 1; else hi = mid;
+            }
+            return lo;
+        }
+
+        /** Offset of {@code key}'s summary record, or -1 if it has none. */
+        int summary(long key) {
+            int lo = 0, hi = summaries - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                long k = map.getLong(directory + mid * SUMMARY_ENTRY);
+                if (k < key) lo = mid + 1;
+                else if (k > key) hi = mid - 1;
+                else return records + (int) map.getLong(directory + mid * SUMMARY_ENTRY + 8);
+            }
+            return -1;
+        }
+
+        /** Add {@code key}'s entries [from, to) to {@code tally}, from its summary when it has one. */
+        void tally(long key, int from, int to, Tally tally) {
+            int record = to - from >= SUMMARY_MIN ? summary(key) : -1;
+            if (record >= 0) {
+                tally.add(map, record);
+                return;
+            }
+            int last = -1;
+            for (int i = from; i < to; i++) last = tally.add(payload(i), last);
+        }
+    }
+
+    private final Path dir;
+    private final int bufferCapacity;
+    private final long[] bufferKeys;
+    private final long[] bufferPayloads;
+    private int buffered;
+    private int bufferedGames;   // games (all entries) held in the buffer
+    private int coveredGames;    // games written to segments
+    private long nextSegment;
+    private volatile List<Segment> segments;
+    private final List<Segment> merging = new ArrayList<>();
+    private final ExecutorService merger;
+
+    private PositionIndex(Path dir, int bufferCapacity) {
+        this.dir = dir;
+        this.bufferCapacity = bufferCapacity;
+        this.bufferKeys = new long[bufferCapacity];
+        this.bufferPayloads = new long[bufferCapacity];
+        this.merger = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "position-index-merge");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Open (or create) the index in {@code dir}.
+     * @param bufferEntries entries held in memory before a segment is written (16 bytes each)
+     */
+    public static PositionIndex open(Path dir, int bufferEntries) throws IOException {
+        if (bufferEntries < 1 << 16) throw new IllegalArgumentException("bufferEntries must be at least 65536");
+        Files.createDirectories(dir);
+        PositionIndex index = new PositionIndex(dir, bufferEntries);
+        Properties manifest = new Properties();
+        Path file = dir.resolve(MANIFEST);
+        if (Files.exists(file)) {
+            try (InputStream in = Files.newInputStream(file)) { manifest.load(in); }
+        }
+        index.coveredGames = Integer.parseInt(manifest.getProperty("games", "0"));
+        index.nextSegment = Long.parseLong(manifest.getProperty("next", "0"));
+        List<Segment> live = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (String name : manifest.getProperty("segments", "").split(",")) {
+            if (name.isEmpty()) continue;
+            live.add(new Segment(dir.resolve(name)));
+            names.add(name);
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "seg-*")) {
+            for (Path f : files) if (!names.contains(f.getFileName().toString())) Files.deleteIfExists(f);
+        }
+        index.segments = Collections.unmodifiableList(live);
+        index.scheduleMerge();
+        return index;
+    }
+
+    /** Games whose entries are in the index, buffered or on disk; the next game added must be this number. */
+    public synchronized int games() {
+        return coveredGames + bufferedGames;
+    }
+
+    /** Games whose entries are safely on disk. */
+    public synchronized int coveredGames() {
+        return coveredGames;
+    }
+
+    /**
+     * Add every position of game number {@code game}: {@code keys[i]} is the
+     * position before {@code moves[i]}, and {@code keys[n]} is the final one.
+     * @param result winning seat, or {@link #UNFINISHED}
+     */
+    public synchronized void addGame(int game, long[] keys, int[] moves, int n, int result) throws IOException {
+        if (game != games()) throw new IllegalArgumentException("expected game " + games() + ", got " + game);
+        if (n + 1 > bufferCapacity) throw new IllegalArgumentException("game " + game + " has too many moves to index");
+        if (buffered + n + 1 > bufferCapacity) flush();
+        for (int i = 0; i <= n; i++) {
+            bufferKeys[buffered] = keys[i];
+            bufferPayloads[buffered] = payload(game, i < n ? moves[i] : NO_MOVE, result);
+            buffered++;
+        }
+        bufferedGames++;
+    }
+
+    static long payload(int game, int move, int result) {
+        return (long) game << 32 | (long) (move & 0xFFFF) << 16 | (long) (result & 0xFF) << 8;
+    }
+
+    /** Write the buffer as a new segment (if it holds anything) and record it in the manifest. */
+    public synchronized void flush() throws IOException {
+        if (buffered == 0) return;
+        sort(bufferKeys, bufferPayloads, 0, buffered - 1);
+        Path file = dir.resolve(String.format("seg-%08d.qpx", nextSegment++));
+        try (SegmentWriter out = new SegmentWriter(file, buffered)) {
+            Tally tally = new Tally();
+            for (int i = 0, end; i < buffered; i = end) {
+                long key = bufferKeys[i];
+                for (end = i + 1; end < buffered && bufferKeys[end] == key; end++) { }
+                if (end - i >= SUMMARY_MIN) {
+                    tally.reset();
+                    int last = -1;
+                    for (int j = i; j < end; j++) last = tally.add(bufferPayloads[j], last);
+                    out.summary(key, tally);
+                }
+                for (int j = i; j < end; j++) out.entry(key, bufferPayloads[j]);
+            }
+            out.finish();
+        }
+        List<Segment> next = new ArrayList<>(segments);
+        next.add(new Segment(file));
+        segments = Collections.unmodifiableList(next);
+        coveredGames += bufferedGames;
+        buffered = 0;
+        bufferedGames = 0;
+        writeManifest();
+        scheduleMerge();
+    }
+
+    /** Times {@code key} occurs: a binary search per segment, no entry scan. */
+    public long count(long key) {
+        long n = 0;
+        for (Segment s : segments) n += s.upperBound(key) - s.lowerBound(key);
+        synchronized (this) {
+            for (int i = 0; i < buffered; i++) if (bufferKeys[i] == key) n++;
+        }
+        return n;
+    }
+
+    /** Results, next moves and a few game numbers for {@code key}: one summary or a short scan per segment. */
+    public Stats query(long key) {
+        long started = System.nanoTime();
+        Tally tally = new Tally();
+        for (Segment s : segments) {
+            int from = s.lowerBound(key);
+            s.tally(key, from, s.upperBound(key), tally);
+        }
+        synchronized (this) {
+            int last = -1;
+            for (int i = 0; i < buffered; i++) if (bufferKeys[i] == key) last = tally.add(bufferPayloads[i], last);
+        }
+        return tally.stats(key, (System.nanoTime() - started) / 1000);
+    }
+
+    /**
+     * Running totals for one key, from entries and summary records. Entries of
+     * a game are adjacent within a source, so games count on change; a game's
+     * entries are all in one segment, so totals from segments add up.
+     */
+    private static final class Tally {
+        long occurrences, games, unfinished;
+        final long[] wins = new long[4];
+        final long[] next = new long[QuoridorMoves.CELLS + QuoridorMoves.WALL_SLOTS];
+        final int[] sample = new int[SAMPLE_GAMES]; // earliest games, ascending
+        int sampled;
+
+        int add(long payload, int lastGame) {
+            int game = (int) (payload >>> 32);
+            int move = (int) (payload >>> 16) & 0xFFFF;
+            int result = (int) (payload >>> 8) & 0xFF;
+            occurrences++;
+            if (move < next.length) next[move]++;
+            if (game != lastGame) {
+                games++;
+                if (result == UNFINISHED) unfinished++; else if (result < wins.length) wins[result]++;
+                sample(game);
+            }
+            return game;
+        }
+
+        /** Add the summary record at {@code at}. */
+        void add(ByteBuffer map, int at) {
+            occurrences += map.getLong(at);
+            games += map.getLong(at + 8);
+            unfinished += map.getLong(at + 16);
+            for (int seat = 0; seat < wins.length; seat++) wins[seat] += map.getLong(at + 24 + 8 * seat);
+            int samples = map.getInt(at + 56), moves = map.getInt(at + 60);
+            at += SUMMARY_FIXED;
+            for (int i = 0; i < samples; i++, at += 4) sample(map.getInt(at));
+            for (int i = 0; i < moves; i++, at += 12) next[map.getInt(at)] += map.getLong(at + 4);
+        }
+
+        /** Write the totals as a summary record. */
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeLong(occurrences);
+            out.writeLong(games);
+            out.writeLong(unfinished);
+            for (long w : wins) out.writeLong(w);
+            int moves = 0;
+            for (long n : next) if (n > 0) moves++;
+            out.writeInt(sampled);
+            out.writeInt(moves);
+            for (int i = 0; i < sampled; i++) out.writeInt(sample[i]);
+            for (int m = 0; m < next.length; m++) {
+                if (next[m] == 0) continue;
+                out.writeInt(m);
+                out.writeLong(next[m]);
+            }
+        }
+
+        void reset() {
+            occurrences = games = unfinished = 0;
+            Arrays.fill(wins, 0);
+            Arrays.fill(next, 0);
+            sampled = 0;
+        }
+
+        /** Keep {@code game} if it is among the SAMPLE_GAMES earliest seen. */
+        private void sample(int game) {
+            if (sampled == SAMPLE_GAMES && game >= sample[SAMPLE_GAMES - 1]) return;
+            int i = sampled < SAMPLE_GAMES ? sampled++ : SAMPLE_GAMES - 1;
+            for (; i > 0 && sample[i - 1] > game; i--) sample[i] = sample[i - 1];
+            sample[i] = game;
+        }
+
+        Stats stats(long key, long micros) {
+            List<Integer> moves = new ArrayList<>();
+            for (int m = 0; m < next.length; m++) if (next[m] > 0) moves.add(m);
+            moves.sort((a, b) -> Long.compare(next[b], next[a]));
+            Map<Integer, Long> ordered = new LinkedHashMap<>();
+            for (int m : moves) ordered.put(m, next[m]);
+            int[] games = Arrays.copyOf(sample, sampled);
+            return new Stats(key, occurrences, this.games, wins, unfinished, Collections.unmodifiableMap(ordered), games, micros);
+        }
+    }
+
+    /** Segments on disk and entries in all of them. */
+    public String describe() {
+        List<Segment> live = segments;
+        long entries = 0;
+        for (Segment s : live) entries += s.count;
+        return live.size() + " segments, " + entries + " entries, " + coveredGames() + " games on disk";
+    }
+
+    /** Flush the buffer and wait for pending merges. */
+    @Override
+    public void close() throws IOException {
+        flush();
+        merger.shutdown();
+        try {
+            merger.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ---- merging ----
+
+    private void scheduleMerge() {
+        if (!merger.isShutdown()) merger.execute(this::mergeOnce);
+    }
+
+    /** Merge the first FANOUT idle segments of one size tier, then look again. */
+    private void mergeOnce() {
+        List<Segment> inputs = pickMerge();
+        if (inputs == null) return;
+        try {
+            Path file;
+            synchronized (this) { file = dir.resolve(String.format("seg-%08d.qpx", nextSegment++)); }
+            merge(inputs, file);
+            Segment merged = new Segment(file);
+            synchronized (this) {
+                List<Segment> next = new ArrayList<>();
+                boolean placed = false;
+                for (Segment s : segments) {
+                    if (!inputs.contains(s)) next.add(s);
+                    else if (!placed) { next.add(merged); placed = true; }
+                }
+                segments = Collections.unmodifiableList(next);
+                merging.removeAll(inputs);
+                writeManifest();
+            }
+            // readers still holding the old list keep their mappings; the files can go
+            for (Segment s : inputs) Files.deleteIfExists(s.file);
+        } catch (IOException e) {
+            synchronized (this) { merging.removeAll(inputs); }
+            System.err.println("position index merge failed: " + e.getMessage());
+            return;
+        }
+        scheduleMerge();
+    }
+
+    private synchronized List<Segment> pickMerge() {
+        Map<Integer, List<Segment>> tiers = new TreeMap<>();
+        for (Segment s : segments) {
+            if (merging.contains(s)) continue;
+            int tier = 0;
+            for (long size = (long) bufferCapacity * FANOUT; s.count > size / 2; size *= FANOUT) tier++;
+            tiers.computeIfAbsent(tier, t -> new ArrayList<>()).add(s);
+        }
+        for (List<Segment> tier : tiers.values()) {
+            if (tier.size() < FANOUT) continue;
+            List<Segment> inputs = new ArrayList<>(tier.subList(0, FANOUT));
+            long total = 0;
+            for (Segment s : inputs) total += s.count;
+            if (total > MAX_SEGMENT_ENTRIES) continue;
+            merging.addAll(inputs);
+            return inputs;
+        }
+        return null;
+    }
+
+    /** Merge one key at a time: its summary from the inputs' summaries (or entries), then its entries by payload. */
+    private static void merge(List<Segment> inputs, Path file) throws IOException {
+        int k = inputs.size();
+        int[] at = new int[k], end = new int[k];
+        int total = 0;
+        for (Segment s : inputs) total += s.count;
+        Tally tally = new Tally();
+        try (SegmentWriter out = new SegmentWriter(file, total)) {
+            while (true) {
+                boolean any = false;
+                long key = 0;
+                for (int j = 0; j < k; j++) {
+                    Segment s = inputs.get(j);
+                    if (at[j] == s.count) continue;
+                    long head = s.key(at[j]);
+                    if (!any || head < key) { key = head; any = true; }
+                }
+                if (!any) break;
+                int run = 0;
+                for (int j = 0; j < k; j++) {
+                    Segment s = inputs.get(j);
+                    int e = at[j];
+                    while (e < s.count && s.key(e) == key) e++;
+                    end[j] = e;
+                    run += e - at[j];
+                }
+                if (run >= SUMMARY_MIN) {
+                    tally.reset();
+                    for (int j = 0; j < k; j++) inputs.get(j).tally(key, at[j], end[j], tally);
+                    out.summary(key, tally);
+                }
+                for (; run > 0; run--) {
+                    int best = -1;
+                    long bestPayload = 0;
+                    for (int j = 0; j < k; j++) {
+                        if (at[j] == end[j]) continue;
+                        long payload = inputs.get(j).payload(at[j]);
+                        if (best < 0 || payload < bestPayload) { best = j; bestPayload = payload; }
+                    }
+                    at[best]++;
+                    out.entry(key, bestPayload);
+                }
+            }
+            out.finish();
+        }
+    }
+
+    // ---- files ----
+
+    /**
+     * Writes a segment to a temp file: entries in order, with summaries given
+     * in key order alongside; {@link #finish} appends the summaries, fills in
+     * the header and moves the file into place. Closing without finishing
+     * deletes the temp file.
+     */
+    private static final class SegmentWriter implements Closeable {
+        private final Path file;
+        private final Path tmp;
+        private final int count;
+        private final FileChannel ch;
+        private final ByteBuffer out = ByteBuffer.allocateDirect(1 << 20);
+        private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+        private final DataOutputStream records = new DataOutputStream(recordBytes);
+        private long[] summaryKeys = new long[64];
+        private int[] summaryOffsets = new int[64];
+        private int summaries;
+        private int written;
+        private boolean finished;
+
+        SegmentWriter(Path file, int count) throws IOException {
+            this.file = file;
+            this.tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            this.count = count;
+            this.ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            out.position(HEADER);
+        }
+
+        void entry(long key, long payload) throws IOException {
+            if (out.remaining() < ENTRY) drain(out, ch);
+            out.putLong(key).putLong(payload);
+            written++;
+        }
+
+        void summary(long key, Tally tally) throws IOException {
+            if (summaries == summaryKeys.length) {
+                summaryKeys = Arrays.copyOf(summaryKeys, 2 * summaries);
+                summaryOffsets = Arrays.copyOf(summaryOffsets, 2 * summaries);
+            }
+            summaryKeys[summaries] = key;
+            summaryOffsets[summaries++] = records.size();
+            tally.writeTo(records);
+        }
+
+        void finish() throws IOException {
+            if (written != count) throw new IllegalStateException("wrote " + written + " of " + count + " entries");
+            for (int i = 0; i < summaries; i++) {
+                if (out.remaining() < SUMMARY_ENTRY) drain(out, ch);
+                out.putLong(summaryKeys[i]).putLong(summaryOffsets[i]);
+            }
+            drain(out, ch);
+            ByteBuffer bytes = ByteBuffer.wrap(recordBytes.toByteArray());
+            while (bytes.hasRemaining()) ch.write(bytes);
+            ByteBuffer header = ByteBuffer.allocate(HEADER).putInt(MAGIC).putInt(count).putInt(summaries).putInt(0);
+            header.flip();
+            for (long at = 0; header.hasRemaining(); ) at += ch.write(header, at);
+            ch.close();
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            finished = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            ch.close();
+            if (!finished) Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static void drain(ByteBuffer out, FileChannel ch) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) ch.write(out);
+        out.clear();
+    }
+
+    private void writeManifest() throws IOException {
+        StringBuilder names = new StringBuilder();
+        for (Segment s : segments) names.append(names.length() == 0 ? "" : ",").append(s.file.getFileName());
+        Properties manifest = new Properties();
+        manifest.setProperty("games", Integer.toString(coveredGames));
+        manifest.setProperty("next", Long.toString(nextSegment));
+        manifest.setProperty("segments", names.toString());
+        Path tmp = dir.resolve(MANIFEST + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) { manifest.store(out, "position index"); }
+        Files.move(tmp, dir.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Sort entries by key, then payload (game first), in place. */
+    private static void sort(long[] keys, long[] payloads, int lo, int hi) {
+        while (hi - lo > 16) {
+            int mid = (lo + hi) >>> 1;
+            long pk = keys[mid], pp = payloads[mid];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (keys[i] < pk || keys[i] == pk && payloads[i] < pp) i++;
+                while (keys[j] > pk || keys[j] == pk && payloads[j] > pp) j--;
+                if (i <= j) { swap(keys, payloads, i, j); i++; j--; }
+            }
+            // recurse into the smaller side so the stack stays O(log n)
+            if (j - lo < hi - i) { sort(keys, payloads, lo, j); lo = i; }
+            else { sort(keys, payloads, i, hi); hi = j; }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            for (int j = i; j > lo && (keys[j - 1] > keys[j] || keys[j - 1] == keys[j] && payloads[j - 1] > payloads[j]); j--) {
+                swap(keys, payloads, j - 1, j);
+            }
+        }
+    }
+
+    private static void swap(long[] keys, long[] payloads, int a, int b) {
+        long k = keys[a]; keys[a] = keys[b]; keys[b] = k;
+        long p = payloads[a]; payloads[a] = payloads[b]; payloads[b] = p;
+    }
+}
@@ -0,0 +1,327 @@
+package quoridor;
+
+import game.Player;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generator of 2-player "win in N" training puzzles: positions where the side
+ * to move forces a win within N plies (N odd) with exactly one first move, and
+ * cannot win in N - 2.
+ *
+ * Candidate positions come from self-play (pawns mostly stepping along their
+ * shortest path, with a random legal move now and then) or, with
+ * {@code --archive}, from one pass over the archived 2-player games; every
+ * position of a game is a candidate. A cheap bound skips most of them. A move covers one
+ * step of path, or two when it jumps or side-steps the other pawn, and the
+ * pawns must first get adjacent for that. So with k moves left a side needs a
+ * path of at most k plus the number of its moves at which the pawns could
+ * already touch. The rest go to a depth-limited AND/OR proof search:
+ * <ul>
+ *   <li>every root move is tried, so that a second winning move is found;</li>
+ *   <li>the attacker's last move only needs its pawn moves;</li>
+ *   <li>the defender's reply before that only needs its pawn moves and the
+ *       walls next to the two pawns, since no other wall can change the
+ *       attacker's pawn moves;</li>
+ *   <li>a defender reply that escapes ends that branch.</li>
+ * </ul>
+ * Each thread samples and proves positions on its own board. Mirror images and
+ * repeats are dropped by canonical hash.
+ *
+ * Output is one puzzle per line, in {@link QuoridorNotation}:
+ * {@code packed H V M <TAB> N <TAB> solution <TAB> proof nodes}. The position
+ * part can be pasted after {@code position} in {@link EngineProtocol}. Progress
+ * and a final summary (puzzles/hour, proof nodes) go to standard output.
+ *
+ * Usage: {@code java quoridor.PuzzleGenerator OUTPUT [--plies N] [--count PUZZLES] [--threads T] [--seconds S] [--archive DIR] [--walls]}
+ */
+public final class PuzzleGenerator {
+    private static final int MAX_PLIES = 7;
+    private static final int MAX_GAME_PLIES = 200;
+    private static final long REPORT_MILLIS = 10_000;
+
+    private final int plies;
+    private final boolean wallsOnly;
+    private final GameArchive archive; // null: sample from self-play
+    private final long count;
+    private final long deadline;
+    private final Set<Long> seen = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger nextGame = new AtomicInteger(); // archive cursor, shared by the workers
+
+    private final AtomicLong positions = new AtomicLong();
+    private final AtomicLong proved = new AtomicLong();
+    private final AtomicLong puzzles = new AtomicLong();
+    private final AtomicLong nodes = new AtomicLong();
+    private final AtomicLong puzzleNodes = new AtomicLong();
+
+    public PuzzleGenerator(int plies, boolean wallsOnly, GameArchive archive, long count, long seconds) {
+        if (plies < 3 || plies > MAX_PLIES || plies % 2 == 0) throw new IllegalArgumentException("plies must be odd, 3.." + MAX_PLIES);
+        this.plies = plies;
+        this.wallsOnly = wallsOnly;
+        this.archive = archive;
+        this.count = count;
+        this.deadline = seconds == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + seconds * 1000;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.err.println("usage: java quoridor.PuzzleGenerator OUTPUT [--plies N] [--count PUZZLES] [--threads T] [--seconds S] [--archive DIR] [--walls]");
+            System.exit(2);
+        }
+        int plies = 3, threads = Runtime.getRuntime().availableProcessors();
+        long count = 100, seconds = Long.MAX_VALUE;
+        String archiveDir = null;
+        boolean walls = false;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--walls")) { walls = true; continue; }
+            if (i + 1 == args.length) { System.err.println("missing value after " + args[i]); System.exit(2); }
+            switch (args[i]) {
+                case "--plies": plies = Integer.parseInt(args[++i]); break;
+                case "--count": count = Long.parseLong(args[++i]); break;
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--seconds": seconds = Long.parseLong(args[++i]); break;
+                case "--archive": archiveDir = args[++i]; break;
+                default: System.err.println("unknown option " + args[i]); System.exit(2);
+            }
+        }
+        GameArchive archive = archiveDir == null ? null : GameArchive.open(Paths.get(archiveDir));
+        try {
+            new PuzzleGenerator(plies, walls, archive, count, seconds).run(threads, Paths.get(args[0]));
+        } finally {
+            if (archive != null) archive.close();
+        }
+    }
+
+    /**
+     * Generate on {@code threads} threads until the puzzle count or time limit
+     * is reached, or every archived game has been replayed; prints progress and
+     * a summary.
+     * @throws IllegalStateException if the archive has no 2-player games
+     */
+    public void run(int threads, Path output) throws IOException, InterruptedException {
+        int games = archive == null ? 0 : archive.size();
+        if (archive != null && !hasTwoPlayerGame(games)) throw new IllegalStateException("the archive has no 2-player games");
+        long started = System.currentTimeMillis();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try (BufferedWriter out = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            for (int t = 0; t < threads; t++) {
+                long seed = System.nanoTime() + 0x9E3779B97F4A7C15L * t;
+                pool.execute(() -> work(new SplittableRandom(seed), games, out));
+            }
+            pool.shutdown();
+            while (!pool.awaitTermination(REPORT_MILLIS, TimeUnit.MILLISECONDS)) report(started);
+        }
+        report(started);
+    }
+
+    private boolean hasTwoPlayerGame(int games) throws IOException {
+        for (int game = 0; game < games; game++) if (archive.players(game) == 2) return true;
+        return false;
+    }
+
+    private boolean done() {
+        return puzzles.get() >= count || System.currentTimeMillis() >= deadline;
+    }
+
+    private void report(long started) {
+        long elapsed = Math.max(1, System.currentTimeMillis() - started);
+        long found = puzzles.get();
+        System.out.printf("%d puzzles (win in %d) from %d positions, %d proofs in %ds: %.0f puzzles/hour; "
+                        + "%d proof nodes (%d/s), %d per puzzle%n",
+                found, plies, positions.get(), proved.get(), elapsed / 1000, found * 3_600_000.0 / elapsed,
+                nodes.get(), nodes.get() * 1000 / elapsed, found == 0 ? 0 : puzzleNodes.get() / found);
+    }
+
+    /** Self-play until done, or take the next unreplayed archive game until done or none are left. */
+    private void work(SplittableRandom rnd, int games, BufferedWriter out) {
+        Solver solver = new Solver(plies);
+        try {
+            if (archive == null) {
+                while (!done()) selfPlay(solver, rnd, out);
+            } else {
+                int game;
+                while (!done() && (game = nextGame.getAndIncrement()) < games) replay(solver, game, out);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            System.err.println("puzzle worker failed: " + e);
+            throw e;
+        }
+    }
+
+    /** Play one self-play game, trying each position on the way. */
+    private void selfPlay(Solver solver, SplittableRandom rnd, BufferedWriter out) throws IOException {
+        QuoridorBoard board = solver.board;
+        board.reset();
+        int[] moves = new int[board.maxMoves()];
+        for (int ply = 0; ply < MAX_GAME_PLIES && !board.isTerminal() && !done(); ply++) {
+            consider(solver, out);
+            int seat = board.sideToMove();
+            int n;
+            if (rnd.nextInt(4) == 0 && (n = board.generateMoves(moves)) > 0) {
+                board.makeMove(moves[rnd.nextInt(n)]);
+                continue;
+            }
+            n = board.pawnMoves(seat, moves);
+            int best = moves[0], bestDistance = Integer.MAX_VALUE;
+            for (int i = 0; i < n; i++) {
+                board.makeMove(moves[i]);
+                int d = board.isTerminal() ? -1 : board.distance(seat);
+                board.unmakeMove(moves[i]);
+                if (d < bestDistance || d == bestDistance && rnd.nextBoolean()) { best = moves[i]; bestDistance = d; }
+            }
+            board.makeMove(best);
+        }
+    }
+
+    /** Replay archived game number {@code game}, if it is a 2-player one, trying each position on the way. */
+    private void replay(Solver solver, int game, BufferedWriter out) throws IOException {
+        if (archive.players(game) != 2) return;
+        QuoridorBoard board = solver.board;
+        board.reset();
+        for (int move : archive.moves(game)) {
+            if (board.isTerminal() || done()) return;
+            consider(solver, out);
+            board.makeMove(move);
+        }
+    }
+
+    private void consider(Solver solver, BufferedWriter out) throws IOException {
+        positions.incrementAndGet();
+        QuoridorBoard board = solver.board;
+        if (board.isTerminal() || !solver.inReach(plies)) return;
+        proved.incrementAndGet();
+        long before = solver.nodes;
+        int solution = solver.uniqueWin();
+        long used = solver.nodes - before;
+        nodes.addAndGet(used);
+        if (solution < 0 || wallsOnly && !QuoridorMoves.isWall(solution)) return;
+        if (!seen.add(board.canonicalHash())) return;
+        String line = QuoridorNotation.formatPosition(board) + '\t' + plies + '\t' + QuoridorNotation.format(solution) + '\t' + used + '\n';
+        synchronized (out) {
+            if (puzzles.get() >= count) return;
+            out.write(line);
+            out.flush();
+            puzzles.incrementAndGet();
+            puzzleNodes.addAndGet(used);
+        }
+    }
+
+    /** Depth-limited AND/OR proof search on one thread's board. */
+    private static final class Solver {
+        final QuoridorBoard board = new QuoridorBoard(new Player("0", 0), new Player("1", 1), Collections.<Player, String>emptyMap());
+        private final int[][] moves;
+        long nodes;
+
+        Solver(int plies) {
+            moves = new int[plies + 1][board.maxMoves()];
+        }
+
+        /** False when the side to move is too far from its goal to win within {@code plies} (odd). */
+        boolean inReach(int plies) {
+            int d = board.distance(board.sideToMove());
+            if (d < 0) return false;
+            int gap = manhattan(board.pawnCell(0), board.pawnCell(1));
+            int moves = (plies + 1) / 2, bound = moves;
+            // before its i-th move (from 0) both pawns made i moves, each closing the gap by at most 2
+            for (int i = 0; i < moves && gap - 4 * i <= 1; i++) bound++;
+            return d <= bound;
+        }
+
+        private static int manhattan(int a, int b) {
+            int size = QuoridorBoard.SIZE;
+            return Math.abs(a / size - b / size) + Math.abs(a % size - b % size);
+        }
+
+        /**
+         * Defender replies that could stop an immediate pawn win: its own pawn
+         * moves and the walls anchored next to the attacker's pawn, or next to
+         * both pawns when they touch (the only walls a jump or side-step crosses).
+         */
+        private int lastReplies(int[] list) {
+            int defender = board.sideToMove(), attacker = 1 - defender;
+            int n = board.pawnMoves(defender, list);
+            int size = QuoridorBoard.SIZE;
+            int a = board.pawnCell(attacker), d = board.pawnCell(defender);
+            int top = a / size, bottom = top, left = a % size, right = left;
+            if (manhattan(a, d) == 1) {
+                top = Math.min(top, d / size);
+                bottom = Math.max(bottom, d / size);
+                left = Math.min(left, d % size);
+                right = Math.max(right, d % size);
+            }
+            return board.wallMoves(top - 1, bottom, left - 1, right, list, n);
+        }
+
+        /**
+         * The only move that wins within N plies, or -1 when there is none, more
+         * than one, or a win in N - 2 already.
+         */
+        int uniqueWin() {
+            int plies = moves.length - 1;
+            if (wins(plies - 2, 0)) return -1;
+            int[] list = moves[0];
+            int count = board.generateMoves(list);
+            int winner = -1;
+            for (int i = 0; i < count; i++) {
+                int move = list[i];
+                board.makeMove(move);
+                boolean won = board.isTerminal() || defenderLoses(plies - 1, 1);
+                board.unmakeMove(move);
+                if (!won) continue;
+                if (winner >= 0) return -1;
+                winner = move;
+            }
+            return winner;
+        }
+
+        /** Can the side to move win within {@code plies} (odd) plies? */
+        private boolean wins(int plies, int ply) {
+            nodes++;
+            if (!inReach(plies)) return false;
+            int seat = board.sideToMove();
+            int[] list = moves[ply];
+            int count = plies == 1 ? board.pawnMoves(seat, list) : board.generateMoves(list);
+            for (int i = 0; i < count; i++) {
+                int move = list[i];
+                board.makeMove(move);
+                boolean won = board.isTerminal() || plies > 1 && defenderLoses(plies - 1, ply + 1);
+                board.unmakeMove(move);
+                if (won) return true;
+            }
+            return false;
+        }
+
+        /** Does every reply of the side to move leave the opponent a win within {@code plies - 1}? */
+        private boolean defenderLoses(int plies, int ply) {
+            nodes++;
+            int[] list = moves[ply];
+            int count = plies == 2 ? lastReplies(list) : board.generateMoves(list);
+            if (count == 0) return false;
+            for (int i = 0; i < count; i++) {
+                int move = list[i];
+                board.makeMove(move);
+                boolean lost = !board.isTerminal() && wins(plies - 1, ply + 1);
+                board.unmakeMove(move);
+                if (!lost) return false;
+            }
+            return true;
+        }
+    }
+}
@@ -1,104 +1,178 @@
 package quoridor;
 
 import game.Board;
+import game.CellGrid;
+import game.Counter;
+import game.GameState;
+import game.LatencyStats;
+import game.Metrics;
 import game.Player;
 import game.Tile;
+import game.Zobrist;
 
 import java.util.*;
 
 /**
  * Board model for the console Quoridor implementation.
  * Keeps track of pawn positions, wall placements, and provides legality checks.
+ *
+ * Per-player state lives in arrays indexed by seat (the player's place in the
+ * constructor's order, normally its {@link Player#getSeat()}), so the Player
+ * API needs no hashing or boxing. The same arrays back the {@link GameState}
+ * view used by the search engines: moves are encoded by {@link QuoridorMoves},
+ * make/unmake update a Zobrist hash incrementally, and path checks run an
+ * int-array BFS.
+ *
+ * The board is symmetric about its centre column (start cells and goal rows
+ * do not depend on the column), so a second hash is kept for the left-right
+ * mirror image, updated by the same setters. The smaller of the two is the
+ * {@link #canonicalHash()}: a position and its mirror share it, so tables keyed
+ * by it store each pair once, with moves converted by {@link #canonicalMove}.
+ *
+ * {@link #encode}/{@link #decode} pack the exact position into ENCODED_LONGS
+ * longs for tables, books and transfer: the two wall grids are occupancy
+ * bitmaps kept current by setWall, so encoding is a few shifts.
  */
-public final class QuoridorBoard extends Board {
+public final class QuoridorBoard extends Board implements GameState {
     public static final int SIZE = 9;
     public static final int WALL_RANGE = SIZE - 1;
     public static final int WALLS_PER_PLAYER = 10;
+    /** Evaluation weight of one step of shortest-path lead; a spare wall counts 1. */
+    public static final int PATH_WEIGHT = 10;
+    /** Longs written by {@link #encode}. */
+    public static final int ENCODED_LONGS = 3;
+
+    private final byte[][] horizontalWalls = new byte[WALL_RANGE][WALL_RANGE]; // owner seat + 1, 0 = none
+    private final byte[][] verticalWalls = new byte[WALL_RANGE][WALL_RANGE];
+    private final byte[] open = new byte[SIZE * SIZE]; // per cell, bit 1 << dir set while side dir (N, S, E, W) is open
 
-    private final Tile[][] nodes = new Tile[SIZE][SIZE];
-    private final Player[][] horizontalWalls = new Player[WALL_RANGE][WALL_RANGE];
-    private final Player[][] verticalWalls = new Player[WALL_RANGE][WALL_RANGE];
-    private final boolean[][] northBlocked = new boolean[SIZE][SIZE];
-    private final boolean[][] southBlocked = new boolean[SIZE][SIZE];
-    private final boolean[][] eastBlocked = new boolean[SIZE][SIZE];
-    private final boolean[][] westBlocked = new boolean[SIZE][SIZE];
-
-    private final Map<Player, Position> pawnPositions = new LinkedHashMap<>();
-    private final Map<Player, Position> startingPositions = new LinkedHashMap<>();
-    private final Map<Player, Integer> goalRows = new LinkedHashMap<>();
-    private final Map<Player, Integer> wallsRemaining = new LinkedHashMap<>();
-    private final Map<Player, PawnPiece> pawnPieces = new HashMap<>();
     private final List<Player> order;
-    private final Map<Player, String> colorTokens;
+
+    // per-seat state, indexed like order
+    private final String[] colors = new String[2];
+    private final PawnPiece[] pawnPieces = new PawnPiece[2];
+    private final CellGrid pawns = new CellGrid(SIZE, SIZE, 2, code -> pawnPieces[code - 1]); // seat + 1, 0 = empty
+    private final int[] pawnCell = new int[2];
+    private final int[] goalRow = {SIZE - 1, 0};
+    private final int[] wallsLeft = new int[2];
+    private int toMove;
+    private long hash;
+    private long mirrorHash; // hash of the left-right mirror image
+    private long horizontalBits; // bit row * 8 + col set while that horizontal wall stands
+    private long verticalBits;
+    private int[] undoCells = new int[64]; // cells left by unmade-able pawn moves
+    private int undoTop;
+    private final int[] queue = new int[SIZE * SIZE];
+    private final int[] seen = new int[SIZE * SIZE];
+    private int stamp;
+    private final int[] moveScratch = new int[8];
+
+    private static final int[] START_CELL = {SIZE / 2, (SIZE - 1) * SIZE + SIZE / 2};
+    private static final int NO_WALL = -1;
+
+    private static final long[] PAWN_KEYS = Zobrist.table(0x5102_0001L, 2 * QuoridorMoves.CELLS);
+    private static final long[] WALL_KEYS = Zobrist.table(0x5102_0002L, QuoridorMoves.WALL_SLOTS);
+    private static final long[] STOCK_KEYS = Zobrist.table(0x5102_0003L, 2 * (WALLS_PER_PLAYER + 1));
+    private static final long[] SIDE_KEYS = Zobrist.table(0x5102_0004L, 2);
 
     private static final String RESET = "\u001B[0m";
     private static final String PREVIEW = "\u001B[33m";
 
+    private static final LatencyStats APPLY_WALL = Metrics.timer("quoridor.applyWall");
+    private static final LatencyStats HAS_PATH = Metrics.timer("quoridor.hasPath");
+    private static final LatencyStats LEGAL_MOVES = Metrics.timer("quoridor.legalMoves");
+    private static final LatencyStats RENDER = Metrics.timer("quoridor.render");
+    private static final Counter WALL_CHECK_SEARCHES = Metrics.counter("quoridor.wallCheckSearches", APPLY_WALL);
+    private static final Counter BFS_CELLS = Metrics.counter("quoridor.bfsCellsVisited");
+    // measured around the public entry points; the path checks run inside applyWall
+    private static final Counter ALLOCATED_BYTES = Metrics.counter("quoridor.allocatedBytes");
+
     public QuoridorBoard(Player first, Player second, Map<Player, String> colorTokens) {
         super(SIZE, SIZE);
         this.order = Collections.unmodifiableList(Arrays.asList(first, second));
-        this.colorTokens = new HashMap<>(colorTokens);
-        for (int r = 0; r < SIZE; r++) {
-            for (int c = 0; c < SIZE; c++) {
-                nodes[r][c] = new Tile();
-            }
+        for (int seat = 0; seat < 2; seat++) {
+            colors[seat] = colorTokens.getOrDefault(order.get(seat), "");
+            pawnPieces[seat] = new PawnPiece(order.get(seat), colors[seat] + "●" + RESET);
         }
-        pawnPieces.put(first, new PawnPiece(first, colorTokens.get(first) + "●" + RESET));
-        pawnPieces.put(second, new PawnPiece(second, colorTokens.get(second) + "●" + RESET));
-        startingPositions.put(first, new Position(0, SIZE / 2));
-        startingPositions.put(second, new Position(SIZE - 1, SIZE / 2));
-        goalRows.put(first, SIZE - 1);
-        goalRows.put(second, 0);
         reset();
     }
 
     @Override
     public void reset() {
-        for (int r = 0; r < SIZE; r++) {
-            for (int c = 0; c < SIZE; c++) {
-                nodes[r][c].clear();
-                northBlocked[r][c] = southBlocked[r][c] = eastBlocked[r][c] = westBlocked[r][c] = false;
-            }
-        }
+        System.arraycopy(QuoridorMoves.BORDER_OPEN, 0, open, 0, open.length);
         for (int r = 0; r < WALL_RANGE; r++) {
-            Arrays.fill(horizontalWalls[r], null);
-            Arrays.fill(verticalWalls[r], null);
+            Arrays.fill(horizontalWalls[r], (byte) 0);
+            Arrays.fill(verticalWalls[r], (byte) 0);
         }
-        pawnPositions.clear();
-        for (Player p : order) {
-            wallsRemaining.put(p, WALLS_PER_PLAYER);
-            placePawn(p, startingPositions.get(p));
-        }
-        // Block outer borders
-        for (int c = 0; c < SIZE; c++) {
-            northBlocked[0][c] = true;
-            southBlocked[SIZE - 1][c] = true;
-        }
-        for (int r = 0; r < SIZE; r++) {
-            westBlocked[r][0] = true;
-            eastBlocked[r][SIZE - 1] = true;
+        pawns.clear();
+        hash = mirrorHash = SIDE_KEYS[0];
+        horizontalBits = verticalBits = 0;
+        toMove = 0;
+        undoTop = 0;
+        for (int seat = 0; seat < 2; seat++) {
+            pawnCell[seat] = START_CELL[seat];
+            pawns.set(pawnCell[seat], seat + 1);
+            wallsLeft[seat] = WALLS_PER_PLAYER;
+            long stock = STOCK_KEYS[seat * (WALLS_PER_PLAYER + 1) + WALLS_PER_PLAYER];
+            hash ^= PAWN_KEYS[seat * QuoridorMoves.CELLS + pawnCell[seat]] ^ stock;
+            mirrorHash ^= PAWN_KEYS[seat * QuoridorMoves.CELLS + QuoridorMoves.mirror(pawnCell[seat])] ^ stock;
         }
     }
 
-    private void placePawn(Player player, Position pos) {
-        pawnPositions.put(player, pos);
-        nodes[pos.row()][pos.col()].setPiece(pawnPieces.get(player));
+    /** The player's seat on this board: its own seat index when it matches, else its place in the order. */
+    private int seat(Player player) {
+        int seat = player == null ? Player.NO_SEAT : player.getSeat();
+        if (seat >= 0 && seat < order.size() && order.get(seat) == player) return seat;
+        return order.indexOf(player);
+    }
+
+    private void movePawn(int seat, int cell) {
+        int from = pawnCell[seat];
+        pawns.set(from, 0);
+        pawns.set(cell, seat + 1);
+        hash ^= PAWN_KEYS[seat * QuoridorMoves.CELLS + from] ^ PAWN_KEYS[seat * QuoridorMoves.CELLS + cell];
+        mirrorHash ^= PAWN_KEYS[seat * QuoridorMoves.CELLS + QuoridorMoves.mirror(from)]
+                ^ PAWN_KEYS[seat * QuoridorMoves.CELLS + QuoridorMoves.mirror(cell)];
+        pawnCell[seat] = cell;
+    }
+
+    private void setWallsLeft(int seat, int count) {
+        int base = seat * (WALLS_PER_PLAYER + 1);
+        long change = STOCK_KEYS[base + wallsLeft[seat]] ^ STOCK_KEYS[base + count];
+        hash ^= change;
+        mirrorHash ^= change;
+        wallsLeft[seat] = count;
+    }
+
+    private void setSide(int seat) {
+        long change = SIDE_KEYS[toMove] ^ SIDE_KEYS[seat];
+        hash ^= change;
+        mirrorHash ^= change;
+        toMove = seat;
     }
 
     public Position getPawnPosition(Player player) {
-        return pawnPositions.get(player);
+        int seat = seat(player);
+        return seat < 0 ? null : new Position(pawnCell[seat] / SIZE, pawnCell[seat] % SIZE);
+    }
+
+    /** Read-only Tile view of a cell; its piece is the pawn standing there, if any. */
+    public Tile tileAt(Position position) {
+        return pawns.tile(position.row(), position.col());
     }
 
     public int getWallsRemaining(Player player) {
-        return wallsRemaining.getOrDefault(player, 0);
+        int seat = seat(player);
+        return seat < 0 ? 0 : wallsLeft[seat];
     }
 
     public Player opponent(Player player) {
-        return order.get(order.get(0).equals(player) ? 1 : 0);
+        return order.get(1 - Math.max(0, seat(player)));
     }
 
     public boolean hasPlayerWon(Player player) {
-        return pawnPositions.get(player).row() == goalRows.get(player);
+        int seat = seat(player);
+        return pawnCell[seat] / SIZE == goalRow[seat];
     }
 
     public Player checkWinner() {
@@ -109,140 +183,394 @@ public final class QuoridorBoard extends Board {
     }
 
     public List<Position> legalMoves(Player player) {
-        Position current = pawnPositions.get(player);
-        Position opponentPos = pawnPositions.get(opponent(player));
-        List<Position> moves = new ArrayList<>();
-        for (Direction dir : Direction.values()) {
-            Position adj = current.translate(dir.dr, dir.dc);
-            if (!inBounds(adj) || isBlocked(current, dir)) continue;
-            if (adj.equals(opponentPos)) {
-                Position jump = adj.translate(dir.dr, dir.dc);
-                if (inBounds(jump) && !isBlocked(adj, dir) && !isOccupied(jump)) {
-                    moves.add(jump);
-                } else {
-                    for (Direction side : dir.perpendiculars()) {
-                        Position diag = adj.translate(side.dr, side.dc);
-                        if (inBounds(diag) && !isBlocked(adj, side) && !isOccupied(diag)) {
-                            moves.add(diag);
-                        }
-                    }
-                }
-            } else if (!isOccupied(adj)) {
-                moves.add(adj);
-            }
-        }
-        moves.sort(Comparator.comparingInt(Position::row).thenComparingInt(Position::col));
+        if (!Metrics.ENABLED) return computeLegalMoves(player);
+        long start = System.nanoTime(), allocated = Metrics.allocatedBytes();
+        List<Position> moves = computeLegalMoves(player);
+        LEGAL_MOVES.record(start);
+        ALLOCATED_BYTES.add(Metrics.allocatedBytes() - allocated);
         return moves;
     }
 
-    private boolean inBounds(Position pos) {
-        return pos.row() >= 0 && pos.row() < SIZE && pos.col() >= 0 && pos.col() < SIZE;
+    private List<Position> computeLegalMoves(Player player) {
+        int count = pawnMoves(seat(player), moveScratch);
+        Arrays.sort(moveScratch, 0, count); // cell order is row, then column
+        List<Position> moves = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) moves.add(QuoridorMoves.target(moveScratch[i]));
+        return moves;
     }
 
-    private boolean isOccupied(Position pos) {
-        for (Position value : pawnPositions.values()) {
-            if (value.equals(pos)) return true;
-        }
-        return false;
+    private boolean isOccupied(int cell) {
+        return pawns.get(cell) != 0;
     }
 
-    private boolean isBlocked(Position pos, Direction dir) {
-        switch (dir) {
-            case NORTH: return northBlocked[pos.row()][pos.col()];
-            case SOUTH: return southBlocked[pos.row()][pos.col()];
-            case EAST:  return eastBlocked[pos.row()][pos.col()];
-            case WEST:  return westBlocked[pos.row()][pos.col()];
-            default: return false;
-        }
+    /** Whether side {@code dir} (0..3 = N, S, E, W) of a cell is free of walls and the border. */
+    private boolean isOpen(int cell, int dir) {
+        return (open[cell] & 1 << dir) != 0;
     }
 
     public boolean applyMove(Player player, Position target) {
         if (!legalMoves(player).contains(target)) return false;
-        Position current = pawnPositions.get(player);
-        nodes[current.row()][current.col()].clear();
-        pawnPositions.put(player, target);
-        nodes[target.row()][target.col()].setPiece(pawnPieces.get(player));
+        int seat = seat(player);
+        movePawn(seat, QuoridorMoves.step(target.row(), target.col()));
+        setSide(1 - seat);
         return true;
     }
 
     public boolean canPlaceWall(Player player, WallPlacement placement) {
         if (placement == null) return false;
         if (getWallsRemaining(player) <= 0) return false;
-        return !conflicts(placement);
+        return !conflicts(placement.orientation() == WallOrientation.HORIZONTAL, placement.row(), placement.col());
     }
 
-    private boolean conflicts(WallPlacement placement) {
-        int row = placement.row();
-        int col = placement.col();
-        if (placement.orientation() == WallOrientation.HORIZONTAL) {
-            // Same-orientation overlap: any of the two horizontal segments already blocked
-            if (southBlocked[row][col] || southBlocked[row][col + 1]
-                    || northBlocked[row + 1][col] || northBlocked[row + 1][col + 1]) {
-                return true;
-            }
+    private boolean conflicts(boolean horizontal, int row, int col) {
+        if (horizontal) {
+            // Same-orientation overlap: either horizontal segment already closed
+            int cell = row * SIZE + col;
+            if ((open[cell] & open[cell + 1] & QuoridorMoves.SOUTH) == 0) return true;
             // Crossing at center with an existing vertical wall
-            if (verticalWalls[row][col] != null) return true;
+            if (verticalWalls[row][col] != 0) return true;
         } else { // VERTICAL
-            // Same-orientation overlap: any of the two vertical segments already blocked
-            if (eastBlocked[row][col] || eastBlocked[row + 1][col]
-                    || westBlocked[row][col + 1] || westBlocked[row + 1][col + 1]) {
-                return true;
-            }
+            // Same-orientation overlap: either vertical segment already closed
+            int cell = row * SIZE + col;
+            if ((open[cell] & open[cell + SIZE] & QuoridorMoves.EAST) == 0) return true;
             // Crossing at center with an existing horizontal wall
-            if (horizontalWalls[row][col] != null) return true;
+            if (horizontalWalls[row][col] != 0) return true;
         }
         return false;
     }
 
     public boolean applyWall(Player player, WallPlacement placement) {
+        if (!Metrics.ENABLED) return placeWall(player, placement);
+        long start = System.nanoTime(), allocated = Metrics.allocatedBytes();
+        try {
+            return placeWall(player, placement);
+        } finally {
+            APPLY_WALL.record(start);
+            ALLOCATED_BYTES.add(Metrics.allocatedBytes() - allocated);
+        }
+    }
+
+    private boolean placeWall(Player player, WallPlacement placement) {
         if (!canPlaceWall(player, placement)) return false;
-        setWall(placement, player);
-        boolean valid = hasPath(order.get(0)) && hasPath(order.get(1));
+        boolean horizontal = placement.orientation() == WallOrientation.HORIZONTAL;
+        setWall(horizontal, placement.row(), placement.col(), seat(player));
+        boolean valid = hasPath(0) && hasPath(1);
         if (!valid) {
-            setWall(placement, null);
+            setWall(horizontal, placement.row(), placement.col(), NO_WALL);
             return false;
         }
-        wallsRemaining.put(player, getWallsRemaining(player) - 1);
+        int seat = seat(player);
+        setWallsLeft(seat, wallsLeft[seat] - 1);
+        setSide(1 - seat);
         return true;
     }
 
-    private void setWall(WallPlacement placement, Player owner) {
-        int row = placement.row();
-        int col = placement.col();
-        boolean present = owner != null;
-        if (placement.orientation() == WallOrientation.HORIZONTAL) {
-            horizontalWalls[row][col] = owner;
-            southBlocked[row][col] = present;
-            northBlocked[row + 1][col] = present;
-            southBlocked[row][col + 1] = present;
-            northBlocked[row + 1][col + 1] = present;
+    /** Place (for seat {@code owner}) or remove (NO_WALL) a wall; each call toggles the wall's hash keys. */
+    private void setWall(boolean horizontal, int row, int col, int owner) {
+        boolean present = owner != NO_WALL;
+        int cell = row * SIZE + col;
+        if (horizontal) {
+            horizontalWalls[row][col] = (byte) (owner + 1);
+            setClosed(cell, QuoridorMoves.SOUTH, present);
+            setClosed(cell + 1, QuoridorMoves.SOUTH, present);
+            setClosed(cell + SIZE, QuoridorMoves.NORTH, present);
+            setClosed(cell + SIZE + 1, QuoridorMoves.NORTH, present);
         } else {
-            verticalWalls[row][col] = owner;
-            eastBlocked[row][col] = present;
-            westBlocked[row][col + 1] = present;
-            eastBlocked[row + 1][col] = present;
-            westBlocked[row + 1][col + 1] = present;
-        }
-    }
-
-    private boolean hasPath(Player player) {
-        Position start = pawnPositions.get(player);
-        int targetRow = goalRows.get(player);
-        boolean[][] visited = new boolean[SIZE][SIZE];
-        Deque<Position> queue = new ArrayDeque<>();
-        queue.add(start);
-        visited[start.row()][start.col()] = true;
-        while (!queue.isEmpty()) {
-            Position pos = queue.removeFirst();
-            if (pos.row() == targetRow) return true;
-            for (Direction dir : Direction.values()) {
-                Position next = pos.translate(dir.dr, dir.dc);
-                if (!inBounds(next) || visited[next.row()][next.col()] || isBlocked(pos, dir)) continue;
-                visited[next.row()][next.col()] = true;
-                queue.add(next);
+            verticalWalls[row][col] = (byte) (owner + 1);
+            setClosed(cell, QuoridorMoves.EAST, present);
+            setClosed(cell + SIZE, QuoridorMoves.EAST, present);
+            setClosed(cell + 1, QuoridorMoves.WEST, present);
+            setClosed(cell + SIZE + 1, QuoridorMoves.WEST, present);
+        }
+        if (horizontal) horizontalBits ^= 1L << row * WALL_RANGE + col;
+        else verticalBits ^= 1L << row * WALL_RANGE + col;
+        int base = (horizontal ? 0 : WALL_RANGE * WALL_RANGE) + row * WALL_RANGE;
+        hash ^= WALL_KEYS[base + col];
+        mirrorHash ^= WALL_KEYS[base + WALL_RANGE - 1 - col];
+    }
+
+    private void setClosed(int cell, int side, boolean closed) {
+        open[cell] = (byte) (closed ? open[cell] & ~side : open[cell] | side);
+    }
+
+    private boolean hasPath(int seat) {
+        if (!Metrics.ENABLED) return distance(seat) >= 0;
+        long start = System.nanoTime();
+        try {
+            return distance(seat) >= 0;
+        } finally {
+            HAS_PATH.record(start);
+            WALL_CHECK_SEARCHES.increment();
+        }
+    }
+
+    /**
+     * Shortest path length (ignoring pawns) from a seat's pawn to its goal row,
+     * or -1 when walls cut it off. Breadth-first over int cells with a reused
+     * queue and a generation-stamped visited array, so nothing is allocated.
+     */
+    int distance(int seat) {
+        if (++stamp == 0) {
+            Arrays.fill(seen, 0);
+            stamp = 1;
+        }
+        int head = 0, tail = 0, steps = 0;
+        queue[tail++] = pawnCell[seat];
+        seen[pawnCell[seat]] = stamp;
+        while (head < tail) {
+            for (int levelEnd = tail; head < levelEnd; ) {
+                int cell = queue[head++];
+                if (cell / SIZE == goalRow[seat]) {
+                    recordBfs(head);
+                    return steps;
+                }
+                for (int sides = open[cell]; sides != 0; sides &= sides - 1) {
+                    int next = QuoridorMoves.NEIGHBOR[cell * 4 + Integer.numberOfTrailingZeros(sides)];
+                    if (seen[next] == stamp) continue;
+                    seen[next] = stamp;
+                    queue[tail++] = next;
+                }
             }
+            steps++;
         }
-        return false;
+        recordBfs(head);
+        return -1;
+    }
+
+    private static void recordBfs(int cells) {
+        if (Metrics.ENABLED) BFS_CELLS.add(cells);
+    }
+
+    // ---- GameState: moves as encoded by QuoridorMoves ----
+
+    @Override public int playerCount() { return 2; }
+    @Override public int sideToMove() { return toMove; }
+    @Override public int maxMoves() { return QuoridorMoves.MAX_MOVES; }
+
+    /** Pawn steps, jumps and diagonals first, then every wall that leaves both players a path. */
+    @Override
+    public int generateMoves(int[] moves) {
+        if (winner() >= 0) return 0;
+        int n = pawnMoves(toMove, moves);
+        return wallMoves(0, WALL_RANGE - 1, 0, WALL_RANGE - 1, moves, n);
+    }
+
+    /**
+     * Append the side to move's legal walls anchored in rows rowFrom..rowTo and
+     * columns colFrom..colTo (clamped to the board) to {@code moves[n..]}, in
+     * the order {@link #generateMoves} uses; returns the new count. Lets a
+     * search look only at walls that can matter locally.
+     */
+    int wallMoves(int rowFrom, int rowTo, int colFrom, int colTo, int[] moves, int n) {
+        int seat = toMove;
+        if (wallsLeft[seat] == 0) return n;
+        rowFrom = Math.max(0, rowFrom);
+        colFrom = Math.max(0, colFrom);
+        rowTo = Math.min(WALL_RANGE - 1, rowTo);
+        colTo = Math.min(WALL_RANGE - 1, colTo);
+        for (int grid = 0; grid < 2; grid++) {
+            boolean horizontal = grid == 0;
+            for (int row = rowFrom; row <= rowTo; row++) {
+                for (int col = colFrom; col <= colTo; col++) {
+                    if (conflicts(horizontal, row, col)) continue;
+                    setWall(horizontal, row, col, seat);
+                    boolean open = distance(0) >= 0 && distance(1) >= 0;
+                    setWall(horizontal, row, col, NO_WALL);
+                    if (open) moves[n++] = QuoridorMoves.CELLS + grid * WALL_RANGE * WALL_RANGE + row * WALL_RANGE + col;
+                }
+            }
+        }
+        return n;
+    }
+
+    /** Cell (row * SIZE + col) of a seat's pawn. */
+    int pawnCell(int seat) {
+        return pawnCell[seat];
+    }
+
+    int pawnMoves(int seat, int[] moves) {
+        int n = 0;
+        int cell = pawnCell[seat];
+        for (int dir = 0; dir < 4; dir++) {
+            if (!isOpen(cell, dir)) continue;
+            int adjacent = QuoridorMoves.NEIGHBOR[cell * 4 + dir];
+            int beyond = QuoridorMoves.NEIGHBOR[adjacent * 4 + dir];
+            if (!isOccupied(adjacent)) {
+                moves[n++] = adjacent;
+            } else if (isOpen(adjacent, dir) && !isOccupied(beyond)) {
+                moves[n++] = beyond;
+            } else {
+                // blocked jump: step diagonally around the pawn instead
+                for (int side = dir < 2 ? 2 : 0, k = 0; k < 2; k++, side++) {
+                    int diagonal = QuoridorMoves.NEIGHBOR[adjacent * 4 + side];
+                    if (isOpen(adjacent, side) && !isOccupied(diagonal)) moves[n++] = diagonal;
+                }
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public void makeMove(int move) {
+        int seat = toMove;
+        if (QuoridorMoves.isWall(move)) {
+            setWall(QuoridorMoves.isHorizontal(move), QuoridorMoves.row(move), QuoridorMoves.col(move), seat);
+            setWallsLeft(seat, wallsLeft[seat] - 1);
+        } else {
+            if (undoTop == undoCells.length) undoCells = Arrays.copyOf(undoCells, undoTop * 2);
+            undoCells[undoTop++] = pawnCell[seat];
+            movePawn(seat, move);
+        }
+        setSide(1 - seat);
+    }
+
+    @Override
+    public void unmakeMove(int move) {
+        int seat = 1 - toMove;
+        setSide(seat);
+        if (QuoridorMoves.isWall(move)) {
+            setWall(QuoridorMoves.isHorizontal(move), QuoridorMoves.row(move), QuoridorMoves.col(move), NO_WALL);
+            setWallsLeft(seat, wallsLeft[seat] + 1);
+        } else {
+            movePawn(seat, undoCells[--undoTop]);
+        }
+    }
+
+    @Override public long hash() { return hash; }
+
+    /** Hash of this position seen in a mirror (columns reversed). */
+    public long mirrorHash() { return mirrorHash; }
+
+    /** True when the canonical orientation is the mirror image of this board. */
+    public boolean isMirrored() { return mirrorHash < hash; }
+
+    @Override public long canonicalHash() { return Math.min(hash, mirrorHash); }
+
+    @Override public int canonicalMove(int move) { return isMirrored() ? QuoridorMoves.mirror(move) : move; }
+
+    /**
+     * Reflect the whole position left to right: pawns, both wall grids (owners
+     * kept) and the undo history, swapping the two hashes. Moves made before
+     * this must be taken back in mirrored form ({@link QuoridorMoves#mirror}).
+     */
+    public void mirror() {
+        byte[][] h = new byte[WALL_RANGE][], v = new byte[WALL_RANGE][];
+        for (int r = 0; r < WALL_RANGE; r++) {
+            h[r] = horizontalWalls[r].clone();
+            v[r] = verticalWalls[r].clone();
+            for (int c = 0; c < WALL_RANGE; c++) {
+                if (h[r][c] != 0) setWall(true, r, c, NO_WALL);
+                if (v[r][c] != 0) setWall(false, r, c, NO_WALL);
+            }
+        }
+        for (int r = 0; r < WALL_RANGE; r++) {
+            for (int c = 0; c < WALL_RANGE; c++) {
+                if (h[r][c] != 0) setWall(true, r, WALL_RANGE - 1 - c, h[r][c] - 1);
+                if (v[r][c] != 0) setWall(false, r, WALL_RANGE - 1 - c, v[r][c] - 1);
+            }
+        }
+        int first = QuoridorMoves.mirror(pawnCell[0]), second = QuoridorMoves.mirror(pawnCell[1]);
+        movePawn(0, first);
+        movePawn(1, second);
+        pawns.set(first, 1); // pawns on mirrored squares swap cells, so stamp both again
+        pawns.set(second, 2);
+        for (int i = 0; i < undoTop; i++) undoCells[i] = QuoridorMoves.mirror(undoCells[i]);
+    }
+
+    /**
+     * Write the position into {@code dst[at..at+2]}:
+     * <pre>
+     *   dst[at]      horizontal walls, bit row * 8 + col
+     *   dst[at + 1]  vertical walls, same layout
+     *   dst[at + 2]  bits 0-6 seat 0's cell, 7-13 seat 1's cell, 14-17 and 18-21 walls
+     *                left per seat, 22 side to move, 23.. one bit per standing wall in
+     *                slot order (horizontal first), set when seat 1 placed it
+     * </pre>
+     * At most 20 walls stand, so the owner bits end by bit 42. Move history is not included.
+     */
+    public void encode(long[] dst, int at) {
+        long meta = pawnCell[0] | pawnCell[1] << 7 | wallsLeft[0] << 14 | wallsLeft[1] << 18 | (long) toMove << 22;
+        int bit = 23;
+        for (long walls = horizontalBits; walls != 0; walls &= walls - 1, bit++) {
+            int slot = Long.numberOfTrailingZeros(walls);
+            if (horizontalWalls[slot / WALL_RANGE][slot % WALL_RANGE] == 2) meta |= 1L << bit;
+        }
+        for (long walls = verticalBits; walls != 0; walls &= walls - 1, bit++) {
+            int slot = Long.numberOfTrailingZeros(walls);
+            if (verticalWalls[slot / WALL_RANGE][slot % WALL_RANGE] == 2) meta |= 1L << bit;
+        }
+        dst[at] = horizontalBits;
+        dst[at + 1] = verticalBits;
+        dst[at + 2] = meta;
+    }
+
+    /**
+     * Replace the board with a position written by {@link #encode}; the hashes
+     * are rebuilt and the move history is cleared.
+     * @throws IllegalArgumentException if the longs do not describe a legal position
+     */
+    public void decode(long[] src, int at) {
+        long h = src[at], v = src[at + 1], meta = src[at + 2];
+        int[] cells = {(int) (meta & 127), (int) (meta >>> 7 & 127)};
+        int[] left = {(int) (meta >>> 14 & 15), (int) (meta >>> 18 & 15)};
+        int side = (int) (meta >>> 22 & 1);
+        int walls = Long.bitCount(h) + Long.bitCount(v);
+        if (cells[0] >= QuoridorMoves.CELLS || cells[1] >= QuoridorMoves.CELLS || cells[0] == cells[1]) {
+            throw new IllegalArgumentException("bad pawn cells " + cells[0] + ", " + cells[1]);
+        }
+        if (left[0] > WALLS_PER_PLAYER || left[1] > WALLS_PER_PLAYER || walls != 2 * WALLS_PER_PLAYER - left[0] - left[1]
+                || meta >>> 23 + walls != 0) {
+            throw new IllegalArgumentException("wall counts do not add up");
+        }
+        if (Long.bitCount(meta >>> 23) != WALLS_PER_PLAYER - left[1]) throw new IllegalArgumentException("wall owners do not add up");
+        reset();
+        int bit = 23;
+        for (int grid = 0; grid < 2; grid++) {
+            for (long bits = grid == 0 ? h : v; bits != 0; bits &= bits - 1, bit++) {
+                int slot = Long.numberOfTrailingZeros(bits);
+                boolean horizontal = grid == 0;
+                if (conflicts(horizontal, slot / WALL_RANGE, slot % WALL_RANGE)) {
+                    reset();
+                    throw new IllegalArgumentException("overlapping walls at slot " + slot);
+                }
+                setWall(horizontal, slot / WALL_RANGE, slot % WALL_RANGE, (int) (meta >>> bit & 1));
+            }
+        }
+        movePawn(0, cells[0]);
+        movePawn(1, cells[1]);
+        pawns.set(cells[0], 1); // the pawns may have traded start squares
+        pawns.set(cells[1], 2);
+        for (int seat = 0; seat < 2; seat++) setWallsLeft(seat, left[seat]);
+        setSide(side);
+        if (distance(0) < 0 || distance(1) < 0) {
+            reset();
+            throw new IllegalArgumentException("walls cut a pawn off from its goal");
+        }
+    }
+
+    /** Mirror the board if that is its canonical orientation; true when it did. */
+    public boolean canonicalize() {
+        if (!isMirrored()) return false;
+        mirror();
+        return true;
+    }
+    @Override public boolean isTerminal() { return winner() >= 0; }
+
+    /**
+     * WIN or -WIN once someone has reached their goal; otherwise PATH_WEIGHT per
+     * step of shortest-path lead over the opponent plus the difference in walls.
+     */
+    @Override
+    public int score(int seat) {
+        int winner = winner();
+        if (winner >= 0) return winner == seat ? WIN : -WIN;
+        int other = 1 - seat;
+        return PATH_WEIGHT * (distance(other) - distance(seat)) + wallsLeft[seat] - wallsLeft[other];
+    }
+
+    private int winner() {
+        for (int seat = 0; seat < 2; seat++) if (pawnCell[seat] / SIZE == goalRow[seat]) return seat;
+        return -1;
     }
 
     @Override
@@ -251,6 +579,17 @@ public final class QuoridorBoard extends Board {
     }
 
     public String render(WallPlacement previewWall, Position previewMove) {
+        if (!Metrics.ENABLED) return draw(previewWall, previewMove);
+        long start = System.nanoTime(), allocated = Metrics.allocatedBytes();
+        try {
+            return draw(previewWall, previewMove);
+        } finally {
+            RENDER.record(start);
+            ALLOCATED_BYTES.add(Metrics.allocatedBytes() - allocated);
+        }
+    }
+
+    private String draw(WallPlacement previewWall, Position previewMove) {
         StringBuilder sb = new StringBuilder();
         sb.append(columnHeader());
         for (int r = 0; r < SIZE; r++) {
@@ -275,15 +614,15 @@ public final class QuoridorBoard extends Board {
         if (rowLine == 0 || rowLine == SIZE) {
             return "---";
         }
-        boolean blocked = southBlocked[rowLine - 1][col];
+        boolean blocked = (open[(rowLine - 1) * SIZE + col] & QuoridorMoves.SOUTH) == 0;
         if (!blocked && previewWall != null && previewWall.orientation() == WallOrientation.HORIZONTAL) {
             if (previewWall.row() == rowLine - 1 && (col == previewWall.col() || col == previewWall.col() + 1)) {
                 return PREVIEW + "===" + RESET;
             }
         }
         if (!blocked) return "---";
-        Player owner = horizontalOwner(rowLine - 1, col);
-        String color = owner == null ? "" : colorTokens.getOrDefault(owner, "");
+        int owner = horizontalOwner(rowLine - 1, col);
+        String color = owner < 0 ? "" : colors[owner];
         return color + "===" + RESET;
     }
 
@@ -314,66 +653,41 @@ public final class QuoridorBoard extends Board {
         if (colLine == 0 || colLine == SIZE) {
             return "|";
         }
-        boolean blocked = eastBlocked[row][colLine - 1];
+        boolean blocked = (open[row * SIZE + colLine - 1] & QuoridorMoves.EAST) == 0;
         if (!blocked && previewWall != null && previewWall.orientation() == WallOrientation.VERTICAL) {
             boolean covers = (previewWall.row() == row || previewWall.row() + 1 == row) && previewWall.col() == colLine - 1;
             if (covers) return PREVIEW + "║" + RESET;
         }
         if (!blocked) return "|";
-        Player owner = verticalOwner(row, colLine - 1);
-        String color = owner == null ? "" : colorTokens.getOrDefault(owner, "");
+        int owner = verticalOwner(row, colLine - 1);
+        String color = owner < 0 ? "" : colors[owner];
         return color + "║" + RESET;
     }
 
-    private Player horizontalOwner(int row, int col) {
-        if (row < 0 || row >= WALL_RANGE) return null;
-        if (col < WALL_RANGE && horizontalWalls[row][col] != null) return horizontalWalls[row][col];
-        if (col - 1 >= 0 && horizontalWalls[row][col - 1] != null) return horizontalWalls[row][col - 1];
-        return null;
+    /** Seat owning the wall drawn on this segment, or -1. */
+    private int horizontalOwner(int row, int col) {
+        if (row < 0 || row >= WALL_RANGE) return -1;
+        if (col < WALL_RANGE && horizontalWalls[row][col] != 0) return horizontalWalls[row][col] - 1;
+        if (col - 1 >= 0 && horizontalWalls[row][col - 1] != 0) return horizontalWalls[row][col - 1] - 1;
+        return -1;
     }
 
-    private Player verticalOwner(int row, int col) {
-        if (col < 0 || col >= WALL_RANGE) return null;
-        if (row < WALL_RANGE && verticalWalls[row][col] != null) return verticalWalls[row][col];
-        if (row - 1 >= 0 && verticalWalls[row - 1][col] != null) return verticalWalls[row - 1][col];
-        return null;
+    /** Seat owning the wall drawn on this segment, or -1. */
+    private int verticalOwner(int row, int col) {
+        if (col < 0 || col >= WALL_RANGE) return -1;
+        if (row < WALL_RANGE && verticalWalls[row][col] != 0) return verticalWalls[row][col] - 1;
+        if (row - 1 >= 0 && verticalWalls[row - 1][col] != 0) return verticalWalls[row - 1][col] - 1;
+        return -1;
     }
 
     private String cellContent(int row, int col, Position previewMove) {
         if (previewMove != null && previewMove.row() == row && previewMove.col() == col) {
             return " " + PREVIEW + "*" + RESET + " ";
         }
-        String raw = nodes[row][col].render();
+        String raw = pawns.render(row, col);
         if (raw.trim().isEmpty()) return "   ";
         if (raw.length() == 1) return " " + raw + " ";
         return " " + raw + " ";
     }
 
-    private enum Direction {
-        NORTH(-1, 0),
-        SOUTH(1, 0),
-        EAST(0, 1),
-        WEST(0, -1);
-
-        final int dr;
-        final int dc;
-
-        Direction(int dr, int dc) {
-            this.dr = dr;
-            this.dc = dc;
-        }
-
-        Direction[] perpendiculars() {
-            switch (this) {
-                case NORTH:
-                case SOUTH:
-                    return new Direction[]{WEST, EAST};
-                case EAST:
-                case WEST:
-                    return new Direction[]{NORTH, SOUTH};
-                default:
-                    throw new IllegalStateException("Unexpected direction: " + this);
-            }
-        }
-    }
 }
@@ -1,124 +1,173 @@
 package quoridor;
 
 import game.Board;
+import game.CellGrid;
+import game.Counter;
+import game.GameState;
+import game.LatencyStats;
+import game.Metrics;
 import game.Player;
 import game.Tile;
+import game.Zobrist;
 
 import java.util.*;
 
 /**
  * 4-player Quoridor board (Java 8 compatible).
  * Players start at top/bottom/left/right midpoints; goals are opposite edges.
+ *
+ * Per-seat int arrays back the {@link GameState} view exactly as in
+ * {@link QuoridorBoard}; seats take turns in order 0..3 and a wall is legal
+ * only while all four pawns can still reach their goal edge.
  */
-public final class QuoridorBoard4 extends Board {
+public final class QuoridorBoard4 extends Board implements GameState {
     public static final int SIZE = 9;
     public static final int WALL_RANGE = SIZE - 1;
     public static final int WALLS_PER_PLAYER = 5;
+    public static final int PLAYERS = 4;
+
+    private final byte[][] horizontalWalls = new byte[WALL_RANGE][WALL_RANGE]; // owner seat + 1, 0 = none
+    private final byte[][] verticalWalls = new byte[WALL_RANGE][WALL_RANGE];
+    private final byte[] open = new byte[SIZE * SIZE]; // per cell, bit 1 << dir set while side dir (N, S, E, W) is open
 
-    private final Tile[][] nodes = new Tile[SIZE][SIZE];
-    private final Player[][] horizontalWalls = new Player[WALL_RANGE][WALL_RANGE];
-    private final Player[][] verticalWalls = new Player[WALL_RANGE][WALL_RANGE];
-    private final boolean[][] northBlocked = new boolean[SIZE][SIZE];
-    private final boolean[][] southBlocked = new boolean[SIZE][SIZE];
-    private final boolean[][] eastBlocked = new boolean[SIZE][SIZE];
-    private final boolean[][] westBlocked = new boolean[SIZE][SIZE];
-
-    private final Map<Player, Position> pawnPositions = new LinkedHashMap<Player, Position>();
-    private final Map<Player, Position> startingPositions = new LinkedHashMap<Player, Position>();
-    private final Map<Player, Integer> goalRows = new LinkedHashMap<Player, Integer>();
-    private final Map<Player, Integer> goalCols = new LinkedHashMap<Player, Integer>();
-    private final Map<Player, Integer> wallsRemaining = new LinkedHashMap<Player, Integer>();
-    private final Map<Player, PawnPiece> pawnPieces = new HashMap<Player, PawnPiece>();
     private final List<Player> order;
-    private final Map<Player, String> colorTokens;
+
+    // per-seat state, indexed like order (top, bottom, left, right); -1 = no goal on that axis
+    private final String[] colors = new String[PLAYERS];
+    private final PawnPiece[] pawnPieces = new PawnPiece[PLAYERS];
+    private final CellGrid pawns = new CellGrid(SIZE, SIZE, PLAYERS, code -> pawnPieces[code - 1]); // seat + 1, 0 = empty
+    private final int[] pawnCell = new int[PLAYERS];
+    private final int[] goalRow = {SIZE - 1, 0, -1, -1};
+    private final int[] goalCol = {-1, -1, SIZE - 1, 0};
+    private final int[] componentEdges = new int[PLAYERS]; // scratch for everyoneHasPath
+    private final int[] wallsLeft = new int[PLAYERS];
+    private int toMove;
+    private long hash;
+    private int[] undoCells = new int[64];
+    private int undoTop;
+    private final int[] queue = new int[SIZE * SIZE];
+    private final int[] seen = new int[SIZE * SIZE];
+    private int stamp;
+    private final int[] moveScratch = new int[8];
+
+    private static final int[] START_CELL = {
+            SIZE / 2, (SIZE - 1) * SIZE + SIZE / 2, (SIZE / 2) * SIZE, (SIZE / 2) * SIZE + SIZE - 1};
+    private static final int NO_WALL = -1;
+
+    // board edges as bits, for reachability by component; GOAL_EDGE follows goalRow/goalCol
+    private static final int TOP = 1, BOTTOM = 2, LEFT = 4, RIGHT = 8;
+    private static final int[] GOAL_EDGE = {BOTTOM, TOP, RIGHT, LEFT};
+    private static final byte[] EDGES = new byte[SIZE * SIZE];
+
+    static {
+        for (int cell = 0; cell < EDGES.length; cell++) {
+            int r = cell / SIZE, c = cell % SIZE;
+            EDGES[cell] = (byte) ((r == 0 ? TOP : 0) | (r == SIZE - 1 ? BOTTOM : 0) | (c == 0 ? LEFT : 0) | (c == SIZE - 1 ? RIGHT : 0));
+        }
+    }
+
+    private static final long[] PAWN_KEYS = Zobrist.table(0x5104_0001L, PLAYERS * QuoridorMoves.CELLS);
+    private static final long[] WALL_KEYS = Zobrist.table(0x5104_0002L, QuoridorMoves.WALL_SLOTS);
+    private static final long[] STOCK_KEYS = Zobrist.table(0x5104_0003L, PLAYERS * (WALLS_PER_PLAYER + 1));
+    private static final long[] SIDE_KEYS = Zobrist.table(0x5104_0004L, PLAYERS);
 
     private static final String RESET = "\u001B[0m";
     private static final String PREVIEW = "\u001B[33m";
 
+    private static final LatencyStats APPLY_WALL = Metrics.timer("quoridor4.applyWall");
+    private static final LatencyStats HAS_PATH = Metrics.timer("quoridor4.hasPath");
+    private static final LatencyStats LEGAL_MOVES = Metrics.timer("quoridor4.legalMoves");
+    private static final LatencyStats RENDER = Metrics.timer("quoridor4.render");
+    private static final Counter WALL_CHECK_SEARCHES = Metrics.counter("quoridor4.wallCheckSearches", APPLY_WALL);
+    private static final Counter BFS_CELLS = Metrics.counter("quoridor4.bfsCellsVisited");
+    // measured around the public entry points; the path checks run inside applyWall
+    private static final Counter ALLOCATED_BYTES = Metrics.counter("quoridor4.allocatedBytes");
+
     public QuoridorBoard4(List<Player> players, Map<Player, String> colorTokens) {
         super(SIZE, SIZE);
-        if (players == null || players.size() != 4) {
+        if (players == null || players.size() != PLAYERS) {
             throw new IllegalArgumentException("QuoridorBoard4 requires exactly 4 players");
         }
         this.order = Collections.unmodifiableList(new ArrayList<Player>(players));
-        this.colorTokens = new HashMap<Player, String>(colorTokens);
-        for (int r = 0; r < SIZE; r++) {
-            for (int c = 0; c < SIZE; c++) {
-                nodes[r][c] = new Tile();
-            }
-        }
 
-        // Assign pawn pieces with colors
-        for (Player p : order) {
-            String color = this.colorTokens.get(p);
-            pawnPieces.put(p, new PawnPiece(p, (color == null ? "" : color) + "●" + RESET));
+        // Assign pawn pieces with colors; start cells and goals follow the seat (top, bottom, left, right)
+        for (int seat = 0; seat < PLAYERS; seat++) {
+            Player p = order.get(seat);
+            String color = colorTokens.get(p);
+            colors[seat] = color == null ? "" : color;
+            pawnPieces[seat] = new PawnPiece(p, colors[seat] + "●" + RESET);
         }
 
-        // Start positions and goals (order: top, bottom, left, right)
-        Player top = order.get(0);
-        Player bottom = order.get(1);
-        Player left = order.get(2);
-        Player right = order.get(3);
-
-        startingPositions.put(top, new Position(0, SIZE / 2));
-        startingPositions.put(bottom, new Position(SIZE - 1, SIZE / 2));
-        startingPositions.put(left, new Position(SIZE / 2, 0));
-        startingPositions.put(right, new Position(SIZE / 2, SIZE - 1));
-
-        goalRows.put(top, SIZE - 1);
-        goalRows.put(bottom, 0);
-        goalCols.put(left, SIZE - 1);
-        goalCols.put(right, 0);
-
         reset();
     }
 
     @Override
     public void reset() {
-        for (int r = 0; r < SIZE; r++) {
-            for (int c = 0; c < SIZE; c++) {
-                nodes[r][c].clear();
-                northBlocked[r][c] = false;
-                southBlocked[r][c] = false;
-                eastBlocked[r][c] = false;
-                westBlocked[r][c] = false;
-            }
-        }
+        System.arraycopy(QuoridorMoves.BORDER_OPEN, 0, open, 0, open.length);
         for (int r = 0; r < WALL_RANGE; r++) {
-            Arrays.fill(horizontalWalls[r], null);
-            Arrays.fill(verticalWalls[r], null);
+            Arrays.fill(horizontalWalls[r], (byte) 0);
+            Arrays.fill(verticalWalls[r], (byte) 0);
         }
-        pawnPositions.clear();
-        for (Player p : order) {
-            wallsRemaining.put(p, WALLS_PER_PLAYER);
-            placePawn(p, startingPositions.get(p));
-        }
-        // Block outer borders
-        for (int c = 0; c < SIZE; c++) {
-            northBlocked[0][c] = true;
-            southBlocked[SIZE - 1][c] = true;
-        }
-        for (int r = 0; r < SIZE; r++) {
-            westBlocked[r][0] = true;
-            eastBlocked[r][SIZE - 1] = true;
+        pawns.clear();
+        hash = SIDE_KEYS[0];
+        toMove = 0;
+        undoTop = 0;
+        for (int seat = 0; seat < PLAYERS; seat++) {
+            pawnCell[seat] = START_CELL[seat];
+            pawns.set(pawnCell[seat], seat + 1);
+            wallsLeft[seat] = WALLS_PER_PLAYER;
+            hash ^= PAWN_KEYS[seat * QuoridorMoves.CELLS + pawnCell[seat]] ^ STOCK_KEYS[seat * (WALLS_PER_PLAYER + 1) + WALLS_PER_PLAYER];
         }
     }
 
-    private void placePawn(Player player, Position pos) {
-        pawnPositions.put(player, pos);
-        nodes[pos.row()][pos.col()].setPiece(pawnPieces.get(player));
+    /** The player's seat on this board: its own seat index when it matches, else its place in the order. */
+    private int seat(Player player) {
+        int seat = player == null ? Player.NO_SEAT : player.getSeat();
+        if (seat >= 0 && seat < order.size() && order.get(seat) == player) return seat;
+        return order.indexOf(player);
+    }
+
+    private void movePawn(int seat, int cell) {
+        int from = pawnCell[seat];
+        pawns.set(from, 0);
+        pawns.set(cell, seat + 1);
+        hash ^= PAWN_KEYS[seat * QuoridorMoves.CELLS + from] ^ PAWN_KEYS[seat * QuoridorMoves.CELLS + cell];
+        pawnCell[seat] = cell;
+    }
+
+    private void setWallsLeft(int seat, int count) {
+        int base = seat * (WALLS_PER_PLAYER + 1);
+        hash ^= STOCK_KEYS[base + wallsLeft[seat]] ^ STOCK_KEYS[base + count];
+        wallsLeft[seat] = count;
+    }
+
+    private void setSide(int seat) {
+        hash ^= SIDE_KEYS[toMove] ^ SIDE_KEYS[seat];
+        toMove = seat;
+    }
+
+    public Position getPawnPosition(Player player) {
+        int seat = seat(player);
+        return seat < 0 ? null : new Position(pawnCell[seat] / SIZE, pawnCell[seat] % SIZE);
     }
 
-    public Position getPawnPosition(Player player) { return pawnPositions.get(player); }
+    /** Read-only Tile view of a cell; its piece is the pawn standing there, if any. */
+    public Tile tileAt(Position position) {
+        return pawns.tile(position.row(), position.col());
+    }
 
-    public int getWallsRemaining(Player player) { return wallsRemaining.getOrDefault(player, 0); }
+    public int getWallsRemaining(Player player) {
+        int seat = seat(player);
+        return seat < 0 ? 0 : wallsLeft[seat];
+    }
 
     public boolean hasPlayerWon(Player player) {
-        Position p = pawnPositions.get(player);
-        Integer gr = goalRows.get(player);
-        if (gr != null) return p.row() == gr.intValue();
-        Integer gc = goalCols.get(player);
-        return gc != null && p.col() == gc.intValue();
+        int seat = seat(player);
+        return seat >= 0 && atGoal(seat, pawnCell[seat]);
+    }
+
+    private boolean atGoal(int seat, int cell) {
+        return goalRow[seat] >= 0 ? cell / SIZE == goalRow[seat] : cell % SIZE == goalCol[seat];
     }
 
     public Player checkWinner() {
@@ -127,160 +176,324 @@ public final class QuoridorBoard4 extends Board {
     }
 
     public List<Position> legalMoves(Player player) {
-        Position current = pawnPositions.get(player);
-        List<Position> moves = new ArrayList<Position>();
-        for (Direction dir : Direction.values()) {
-            Position adj = current.translate(dir.dr, dir.dc);
-            if (!inBounds(adj) || isBlocked(current, dir)) continue;
-            if (isOccupied(adj)) {
-                Position jump = adj.translate(dir.dr, dir.dc);
-                if (inBounds(jump) && !isBlocked(adj, dir) && !isOccupied(jump)) {
-                    moves.add(jump);
-                } else {
-                    Direction[] sides = dir.perpendiculars();
-                    for (int i = 0; i < sides.length; i++) {
-                        Direction side = sides[i];
-                        Position diag = adj.translate(side.dr, side.dc);
-                        if (inBounds(diag) && !isBlocked(adj, side) && !isOccupied(diag)) {
-                            moves.add(diag);
-                        }
-                    }
-                }
-            } else {
-                moves.add(adj);
-            }
-        }
-        Collections.sort(moves, new Comparator<Position>() {
-            public int compare(Position a, Position b) {
-                int cr = Integer.compare(a.row(), b.row());
-                return cr != 0 ? cr : Integer.compare(a.col(), b.col());
-            }
-        });
+        if (!Metrics.ENABLED) return computeLegalMoves(player);
+        long start = System.nanoTime(), allocated = Metrics.allocatedBytes();
+        List<Position> moves = computeLegalMoves(player);
+        LEGAL_MOVES.record(start);
+        ALLOCATED_BYTES.add(Metrics.allocatedBytes() - allocated);
         return moves;
     }
 
-    private boolean inBounds(Position pos) {
-        return pos.row() >= 0 && pos.row() < SIZE && pos.col() >= 0 && pos.col() < SIZE;
+    private List<Position> computeLegalMoves(Player player) {
+        int count = pawnMoves(seat(player), moveScratch);
+        Arrays.sort(moveScratch, 0, count); // cell order is row, then column
+        List<Position> moves = new ArrayList<Position>(count);
+        for (int i = 0; i < count; i++) moves.add(QuoridorMoves.target(moveScratch[i]));
+        return moves;
     }
 
-    private boolean isOccupied(Position pos) {
-        for (Position value : pawnPositions.values()) {
-            if (value.equals(pos)) return true;
-        }
-        return false;
+    private boolean isOccupied(int cell) {
+        return pawns.get(cell) != 0;
     }
 
-    private boolean isBlocked(Position pos, Direction dir) {
-        switch (dir) {
-            case NORTH: return northBlocked[pos.row()][pos.col()];
-            case SOUTH: return southBlocked[pos.row()][pos.col()];
-            case EAST:  return eastBlocked[pos.row()][pos.col()];
-            case WEST:  return westBlocked[pos.row()][pos.col()];
-            default: return false;
-        }
+    /** Whether side {@code dir} (0..3 = N, S, E, W) of a cell is free of walls and the border. */
+    private boolean isOpen(int cell, int dir) {
+        return (open[cell] & 1 << dir) != 0;
     }
 
     public boolean applyMove(Player player, Position target) {
         if (!legalMoves(player).contains(target)) return false;
-        Position current = pawnPositions.get(player);
-        nodes[current.row()][current.col()].clear();
-        pawnPositions.put(player, target);
-        nodes[target.row()][target.col()].setPiece(pawnPieces.get(player));
+        int seat = seat(player);
+        movePawn(seat, QuoridorMoves.step(target.row(), target.col()));
+        setSide((seat + 1) % PLAYERS);
         return true;
     }
 
     public boolean canPlaceWall(Player player, WallPlacement placement) {
         if (placement == null) return false;
         if (getWallsRemaining(player) <= 0) return false;
-        return !conflicts(placement);
+        return !conflicts(placement.orientation() == WallOrientation.HORIZONTAL, placement.row(), placement.col());
     }
 
-    private boolean conflicts(WallPlacement placement) {
-        int row = placement.row();
-        int col = placement.col();
-        if (placement.orientation() == WallOrientation.HORIZONTAL) {
-            // Same-orientation overlap: any of the two horizontal segments already blocked
-            if (southBlocked[row][col] || southBlocked[row][col + 1]
-                    || northBlocked[row + 1][col] || northBlocked[row + 1][col + 1]) {
-                return true;
-            }
+    private boolean conflicts(boolean horizontal, int row, int col) {
+        if (horizontal) {
+            // Same-orientation overlap: either horizontal segment already closed
+            int cell = row * SIZE + col;
+            if ((open[cell] & open[cell + 1] & QuoridorMoves.SOUTH) == 0) return true;
             // Crossing at center with an existing vertical wall
-            if (verticalWalls[row][col] != null) return true;
+            if (verticalWalls[row][col] != 0) return true;
         } else { // VERTICAL
-            // Same-orientation overlap: any of the two vertical segments already blocked
-            if (eastBlocked[row][col] || eastBlocked[row + 1][col]
-                    || westBlocked[row][col + 1] || westBlocked[row + 1][col + 1]) {
-                return true;
-            }
+            // Same-orientation overlap: either vertical segment already closed
+            int cell = row * SIZE + col;
+            if ((open[cell] & open[cell + SIZE] & QuoridorMoves.EAST) == 0) return true;
             // Crossing at center with an existing horizontal wall
-            if (horizontalWalls[row][col] != null) return true;
+            if (horizontalWalls[row][col] != 0) return true;
         }
         return false;
     }
 
     public boolean applyWall(Player player, WallPlacement placement) {
-        if (!canPlaceWall(player, placement)) return false;
-        setWall(placement, player);
-        // Verify all players still have a path
-        boolean valid = true;
-        for (Player p : order) {
-            if (!hasPath(p)) { valid = false; break; }
+        if (!Metrics.ENABLED) return placeWall(player, placement);
+        long start = System.nanoTime(), allocated = Metrics.allocatedBytes();
+        try {
+            return placeWall(player, placement);
+        } finally {
+            APPLY_WALL.record(start);
+            ALLOCATED_BYTES.add(Metrics.allocatedBytes() - allocated);
         }
-        if (!valid) {
-            setWall(placement, null);
+    }
+
+    private boolean placeWall(Player player, WallPlacement placement) {
+        if (!canPlaceWall(player, placement)) return false;
+        boolean horizontal = placement.orientation() == WallOrientation.HORIZONTAL;
+        setWall(horizontal, placement.row(), placement.col(), seat(player));
+        if (!everyoneHasPath()) {
+            setWall(horizontal, placement.row(), placement.col(), NO_WALL);
             return false;
         }
-        wallsRemaining.put(player, getWallsRemaining(player) - 1);
+        int mover = seat(player);
+        setWallsLeft(mover, wallsLeft[mover] - 1);
+        setSide((mover + 1) % PLAYERS);
         return true;
     }
 
-    private void setWall(WallPlacement placement, Player owner) {
-        int row = placement.row();
-        int col = placement.col();
-        boolean present = owner != null;
-        if (placement.orientation() == WallOrientation.HORIZONTAL) {
-            horizontalWalls[row][col] = owner;
-            southBlocked[row][col] = present;
-            northBlocked[row + 1][col] = present;
-            southBlocked[row][col + 1] = present;
-            northBlocked[row + 1][col + 1] = present;
+    /** Place (for seat {@code owner}) or remove (NO_WALL) a wall; each call toggles the wall's hash key. */
+    private void setWall(boolean horizontal, int row, int col, int owner) {
+        boolean present = owner != NO_WALL;
+        int cell = row * SIZE + col;
+        if (horizontal) {
+            horizontalWalls[row][col] = (byte) (owner + 1);
+            setClosed(cell, QuoridorMoves.SOUTH, present);
+            setClosed(cell + 1, QuoridorMoves.SOUTH, present);
+            setClosed(cell + SIZE, QuoridorMoves.NORTH, present);
+            setClosed(cell + SIZE + 1, QuoridorMoves.NORTH, present);
         } else {
-            verticalWalls[row][col] = owner;
-            eastBlocked[row][col] = present;
-            westBlocked[row][col + 1] = present;
-            eastBlocked[row + 1][col] = present;
-            westBlocked[row + 1][col + 1] = present;
+            verticalWalls[row][col] = (byte) (owner + 1);
+            setClosed(cell, QuoridorMoves.EAST, present);
+            setClosed(cell + SIZE, QuoridorMoves.EAST, present);
+            setClosed(cell + 1, QuoridorMoves.WEST, present);
+            setClosed(cell + SIZE + 1, QuoridorMoves.WEST, present);
+        }
+        hash ^= WALL_KEYS[(horizontal ? 0 : WALL_RANGE * WALL_RANGE) + row * WALL_RANGE + col];
+    }
+
+    private void setClosed(int cell, int side, boolean closed) {
+        open[cell] = (byte) (closed ? open[cell] & ~side : open[cell] | side);
+    }
+
+    private boolean everyoneHasPath() {
+        if (!Metrics.ENABLED) return allGoalsReachable();
+        long start = System.nanoTime();
+        try {
+            return allGoalsReachable();
+        } finally {
+            HAS_PATH.record(start);
+        }
+    }
+
+    /**
+     * True when every pawn can still reach its goal edge (pawns ignored as
+     * obstacles). Rather than one search per seat, this labels the connected
+     * component around each pawn with a single flood fill and notes which board
+     * edges it touches; pawns in a labelled component reuse it, so the usual
+     * case of one open board costs one flood in all. Components get consecutive
+     * stamps in {@code seen}, above any left by earlier searches.
+     */
+    private boolean allGoalsReachable() {
+        int base = nextStamp(PLAYERS);
+        for (int seat = 0; seat < PLAYERS; seat++) {
+            int cell = pawnCell[seat];
+            if (seen[cell] < base) {
+                componentEdges[++stamp - base] = flood(cell);
+                if (Metrics.ENABLED) WALL_CHECK_SEARCHES.increment();
+            }
+            if ((componentEdges[seen[cell] - base] & GOAL_EDGE[seat]) == 0) return false;
         }
+        return true;
     }
 
-    private boolean hasPath(Player player) {
-        Position start = pawnPositions.get(player);
-        Integer targetRow = goalRows.get(player);
-        Integer targetCol = goalCols.get(player);
-        boolean[][] visited = new boolean[SIZE][SIZE];
-        Deque<Position> queue = new ArrayDeque<Position>();
-        queue.add(start);
-        visited[start.row()][start.col()] = true;
-        while (!queue.isEmpty()) {
-            Position pos = queue.removeFirst();
-            if ((targetRow != null && pos.row() == targetRow.intValue()) ||
-                (targetCol != null && pos.col() == targetCol.intValue())) {
-                return true;
+    /** Stamp every cell connected to {@code from} with the current stamp; returns the board edges they touch. */
+    private int flood(int from) {
+        int head = 0, tail = 0, edges = 0;
+        queue[tail++] = from;
+        seen[from] = stamp;
+        while (head < tail) {
+            int cell = queue[head++];
+            edges |= EDGES[cell];
+            for (int sides = open[cell]; sides != 0; sides &= sides - 1) {
+                int next = QuoridorMoves.NEIGHBOR[cell * 4 + Integer.numberOfTrailingZeros(sides)];
+                if (seen[next] == stamp) continue;
+                seen[next] = stamp;
+                queue[tail++] = next;
             }
-            for (Direction dir : Direction.values()) {
-                Position next = pos.translate(dir.dr, dir.dc);
-                if (!inBounds(next) || visited[next.row()][next.col()] || isBlocked(pos, dir)) continue;
-                visited[next.row()][next.col()] = true;
-                queue.add(next);
+        }
+        recordBfs(head);
+        return edges;
+    }
+
+    /**
+     * Shortest path length (ignoring pawns) from a seat's pawn to its goal edge,
+     * or -1 when walls cut it off; allocation-free like {@link QuoridorBoard}'s.
+     */
+    int distance(int seat) {
+        stamp = nextStamp(1);
+        int head = 0, tail = 0, steps = 0;
+        queue[tail++] = pawnCell[seat];
+        seen[pawnCell[seat]] = stamp;
+        while (head < tail) {
+            for (int levelEnd = tail; head < levelEnd; ) {
+                int cell = queue[head++];
+                if (atGoal(seat, cell)) {
+                    recordBfs(head);
+                    return steps;
+                }
+                for (int sides = open[cell]; sides != 0; sides &= sides - 1) {
+                    int next = QuoridorMoves.NEIGHBOR[cell * 4 + Integer.numberOfTrailingZeros(sides)];
+                    if (seen[next] == stamp) continue;
+                    seen[next] = stamp;
+                    queue[tail++] = next;
+                }
             }
+            steps++;
         }
-        return false;
+        recordBfs(head);
+        return -1;
+    }
+
+    /**
+     * First of {@code needed} consecutive stamps above every stamp in
+     * {@code seen}; the caller advances {@code stamp} as it uses them. Stamps
+     * only grow and stay positive: {@code seen} is cleared before they could
+     * overflow.
+     */
+    private int nextStamp(int needed) {
+        if (stamp > Integer.MAX_VALUE - needed) {
+            Arrays.fill(seen, 0);
+            stamp = 0;
+        }
+        return stamp + 1;
+    }
+
+    private static void recordBfs(int cells) {
+        if (Metrics.ENABLED) BFS_CELLS.add(cells);
+    }
+
+    // ---- GameState: moves as encoded by QuoridorMoves ----
+
+    @Override public int playerCount() { return PLAYERS; }
+    @Override public int sideToMove() { return toMove; }
+    @Override public int maxMoves() { return QuoridorMoves.MAX_MOVES; }
+
+    /** Pawn steps, jumps and diagonals first, then every wall that leaves all four players a path. */
+    @Override
+    public int generateMoves(int[] moves) {
+        if (winner() >= 0) return 0;
+        int seat = toMove;
+        int n = pawnMoves(seat, moves);
+        if (wallsLeft[seat] == 0) return n;
+        for (int slot = 0; slot < QuoridorMoves.WALL_SLOTS; slot++) {
+            boolean horizontal = slot < WALL_RANGE * WALL_RANGE;
+            int row = slot % (WALL_RANGE * WALL_RANGE) / WALL_RANGE, col = slot % WALL_RANGE;
+            if (conflicts(horizontal, row, col)) continue;
+            setWall(horizontal, row, col, seat);
+            boolean open = allGoalsReachable();
+            setWall(horizontal, row, col, NO_WALL);
+            if (open) moves[n++] = QuoridorMoves.CELLS + slot;
+        }
+        return n;
+    }
+
+    private int pawnMoves(int seat, int[] moves) {
+        int n = 0;
+        int cell = pawnCell[seat];
+        for (int dir = 0; dir < 4; dir++) {
+            if (!isOpen(cell, dir)) continue;
+            int adjacent = QuoridorMoves.NEIGHBOR[cell * 4 + dir];
+            int beyond = QuoridorMoves.NEIGHBOR[adjacent * 4 + dir];
+            if (!isOccupied(adjacent)) {
+                moves[n++] = adjacent;
+            } else if (isOpen(adjacent, dir) && !isOccupied(beyond)) {
+                moves[n++] = beyond;
+            } else {
+                // blocked jump: step diagonally around the pawn; two pawns can offer the same square
+                for (int side = dir < 2 ? 2 : 0, k = 0; k < 2; k++, side++) {
+                    int target = QuoridorMoves.NEIGHBOR[adjacent * 4 + side];
+                    if (!isOpen(adjacent, side) || isOccupied(target)) continue;
+                    boolean listed = false;
+                    for (int i = 0; i < n && !listed; i++) listed = moves[i] == target;
+                    if (!listed) moves[n++] = target;
+                }
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public void makeMove(int move) {
+        int seat = toMove;
+        if (QuoridorMoves.isWall(move)) {
+            setWall(QuoridorMoves.isHorizontal(move), QuoridorMoves.row(move), QuoridorMoves.col(move), seat);
+            setWallsLeft(seat, wallsLeft[seat] - 1);
+        } else {
+            if (undoTop == undoCells.length) undoCells = Arrays.copyOf(undoCells, undoTop * 2);
+            undoCells[undoTop++] = pawnCell[seat];
+            movePawn(seat, move);
+        }
+        setSide((seat + 1) % PLAYERS);
+    }
+
+    @Override
+    public void unmakeMove(int move) {
+        int seat = (toMove + PLAYERS - 1) % PLAYERS;
+        setSide(seat);
+        if (QuoridorMoves.isWall(move)) {
+            setWall(QuoridorMoves.isHorizontal(move), QuoridorMoves.row(move), QuoridorMoves.col(move), NO_WALL);
+            setWallsLeft(seat, wallsLeft[seat] + 1);
+        } else {
+            movePawn(seat, undoCells[--undoTop]);
+        }
+    }
+
+    @Override public long hash() { return hash; }
+    @Override public boolean isTerminal() { return winner() >= 0; }
+
+    /**
+     * WIN or -WIN once someone has reached their goal; otherwise PATH_WEIGHT per
+     * step of lead over the closest rival, plus walls in hand compared with theirs.
+     */
+    @Override
+    public int score(int seat) {
+        int winner = winner();
+        if (winner >= 0) return winner == seat ? WIN : -WIN;
+        int rival = -1, rivalDistance = Integer.MAX_VALUE;
+        for (int p = 0; p < PLAYERS; p++) {
+            if (p == seat) continue;
+            int d = distance(p);
+            if (d < rivalDistance) { rivalDistance = d; rival = p; }
+        }
+        return QuoridorBoard.PATH_WEIGHT * (rivalDistance - distance(seat)) + wallsLeft[seat] - wallsLeft[rival];
+    }
+
+    private int winner() {
+        for (int seat = 0; seat < PLAYERS; seat++) if (atGoal(seat, pawnCell[seat])) return seat;
+        return -1;
     }
 
     @Override
     public String render() { return render(null, null); }
 
     public String render(WallPlacement previewWall, Position previewMove) {
+        if (!Metrics.ENABLED) return draw(previewWall, previewMove);
+        long start = System.nanoTime(), allocated = Metrics.allocatedBytes();
+        try {
+            return draw(previewWall, previewMove);
+        } finally {
+            RENDER.record(start);
+            ALLOCATED_BYTES.add(Metrics.allocatedBytes() - allocated);
+        }
+    }
+
+    private String draw(WallPlacement previewWall, Position previewMove) {
         StringBuilder sb = new StringBuilder();
         sb.append(columnHeader());
         for (int r = 0; r < SIZE; r++) {
@@ -303,16 +516,16 @@ public final class QuoridorBoard4 extends Board {
 
     private String horizontalDash(int rowLine, int col, WallPlacement previewWall) {
         if (rowLine == 0 || rowLine == SIZE) return "---";
-        boolean blocked = southBlocked[rowLine - 1][col];
+        boolean blocked = (open[(rowLine - 1) * SIZE + col] & QuoridorMoves.SOUTH) == 0;
         if (!blocked && previewWall != null && previewWall.orientation() == WallOrientation.HORIZONTAL) {
             if (previewWall.row() == rowLine - 1 && (col == previewWall.col() || col == previewWall.col() + 1)) {
                 return PREVIEW + "===" + RESET;
             }
         }
         if (!blocked) return "---";
-        Player owner = horizontalOwner(rowLine - 1, col);
-        String color = owner == null ? "" : colorTokens.get(owner);
-        return (color == null ? "" : color) + "===" + RESET;
+        int owner = horizontalOwner(rowLine - 1, col);
+        String color = owner < 0 ? "" : colors[owner];
+        return color + "===" + RESET;
     }
 
     private String verticalRowContent(int row, WallPlacement previewWall, Position previewMove) {
@@ -336,57 +549,42 @@ public final class QuoridorBoard4 extends Board {
 
     private String verticalBar(int row, int colLine, WallPlacement previewWall) {
         if (colLine == 0 || colLine == SIZE) return "|";
-        boolean blocked = eastBlocked[row][colLine - 1];
+        boolean blocked = (open[row * SIZE + colLine - 1] & QuoridorMoves.EAST) == 0;
         if (!blocked && previewWall != null && previewWall.orientation() == WallOrientation.VERTICAL) {
             boolean covers = (previewWall.row() == row || previewWall.row() + 1 == row) && previewWall.col() == colLine - 1;
             if (covers) return PREVIEW + "║" + RESET;
         }
         if (!blocked) return "|";
-        Player owner = verticalOwner(row, colLine - 1);
-        String color = owner == null ? "" : colorTokens.get(owner);
-        return (color == null ? "" : color) + "║" + RESET;
+        int owner = verticalOwner(row, colLine - 1);
+        String color = owner < 0 ? "" : colors[owner];
+        return color + "║" + RESET;
     }
 
-    private Player horizontalOwner(int row, int col) {
-        if (row < 0 || row >= WALL_RANGE) return null;
-        if (col < WALL_RANGE && horizontalWalls[row][col] != null) return horizontalWalls[row][col];
-        if (col - 1 >= 0 && horizontalWalls[row][col - 1] != null) return horizontalWalls[row][col - 1];
-        return null;
+    /** Seat owning the wall drawn on this segment, or -1. */
+    private int horizontalOwner(int row, int col) {
+        if (row < 0 || row >= WALL_RANGE) return -1;
+        if (col < WALL_RANGE && horizontalWalls[row][col] != 0) return horizontalWalls[row][col] - 1;
+        if (col - 1 >= 0 && horizontalWalls[row][col - 1] != 0) return horizontalWalls[row][col - 1] - 1;
+        return -1;
     }
 
-    private Player verticalOwner(int row, int col) {
-        if (col < 0 || col >= WALL_RANGE) return null;
-        if (row < WALL_RANGE && verticalWalls[row][col] != null) return verticalWalls[row][col];
-        if (row - 1 >= 0 && verticalWalls[row - 1][col] != null) return verticalWalls[row - 1][col];
-        return null;
+    /** Seat owning the wall drawn on this segment, or -1. */
+    private int verticalOwner(int row, int col) {
+        if (col < 0 || col >= WALL_RANGE) return -1;
+        if (row < WALL_RANGE && verticalWalls[row][col] != 0) return verticalWalls[row][col] - 1;
+        if (row - 1 >= 0 && verticalWalls[row - 1][col] != 0) return verticalWalls[row - 1][col] - 1;
+        return -1;
     }
 
     private String cellContent(int row, int col, Position previewMove) {
         if (previewMove != null && previewMove.row() == row && previewMove.col() == col) {
             return " " + PREVIEW + "*" + RESET + " ";
         }
-        String raw = nodes[row][col].render();
+        String raw = pawns.render(row, col);
         if (raw.trim().isEmpty()) return "   ";
         if (raw.length() == 1) return " " + raw + " ";
         return " " + raw + " ";
     }
 
-    private enum Direction {
-        NORTH(-1, 0), SOUTH(1, 0), EAST(0, 1), WEST(0, -1);
-        final int dr; final int dc;
-        Direction(int dr, int dc) { this.dr = dr; this.dc = dc; }
-        Direction[] perpendiculars() {
-            switch (this) {
-                case NORTH:
-                case SOUTH:
-                    return new Direction[]{WEST, EAST};
-                case EAST:
-                case WEST:
-                    return new Direction[]{NORTH, SOUTH};
-                default:
-                    throw new IllegalStateException("Unexpected direction: " + this);
-            }
-        }
-    }
 }
 
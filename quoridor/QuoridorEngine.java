@@ -0,0 +1,161 @@
+package quoridor;
+
+import game.CancellationToken;
+import game.Clock;
+import game.Negamax;
+import game.Player;
+import game.TranspositionTable;
+
+import java.util.Collections;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Computer opponent for the 2-player game: {@link Negamax} with a fixed time
+ * per move, following the game on a private board so its searches never touch
+ * the one being rendered and edited.
+ *
+ * After its own move the engine ponders: it plays the reply its principal
+ * variation predicts and searches that position on a background thread while
+ * the human thinks. When the human's move arrives the ponder search is stopped.
+ * On a hit the board is already in place and the result is kept, with the time
+ * spent pondering counted against the next move's budget, so a long enough
+ * think answers at once; the table entries it filled speed up the rest. On a
+ * miss the predicted move is taken back and the result dropped; its table
+ * entries stay, since they are keyed by position and never wrong, only unused.
+ *
+ * Under a {@link Clock} the think time comes from {@link Clock#allocate} with
+ * an estimate of the moves left, and every search runs on a
+ * {@link CancellationToken} whose deadline stops it within a millisecond.
+ */
+public final class QuoridorEngine {
+    private static final int TABLE_BITS = 20;
+    private static final int MIN_MOVES_TO_GO = 8;
+
+    private final Negamax engine = new Negamax(new TranspositionTable(TABLE_BITS));
+    private final QuoridorBoard board = new QuoridorBoard(new Player("0", 0), new Player("1", 1), Collections.<Player, String>emptyMap());
+    private final ExecutorService ponderer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "quoridor-ponder");
+        t.setDaemon(true);
+        return t;
+    });
+    private final long millisPerMove;
+
+    private Negamax.Result last;     // the engine's last think, for its predicted reply
+    private Future<Negamax.Result> pondering;
+    private CancellationToken ponderToken;
+    private int predicted = -1;
+    private Negamax.Result banked;   // ponder result after a hit, until the next think
+    private int hits, misses;
+
+    public QuoridorEngine(long millisPerMove) {
+        if (millisPerMove < 1) throw new IllegalArgumentException("millisPerMove must be >= 1");
+        this.millisPerMove = millisPerMove;
+    }
+
+    /** Best move for the side to move of the game so far, in the fixed time per move. */
+    public Negamax.Result think() {
+        return think(millisPerMove);
+    }
+
+    /** Best move for the side to move within a share of its time on {@code clock}, which must be running for it. */
+    public Negamax.Result think(Clock clock) {
+        int seat = board.sideToMove();
+        return think(clock.allocate(seat, movesToGo(board, seat)));
+    }
+
+    /**
+     * Rough count of the moves {@code seat} still has to make: twice its path
+     * length, to leave room for detours and walls, but never fewer than
+     * MIN_MOVES_TO_GO so early moves do not spend the clock.
+     */
+    static int movesToGo(QuoridorBoard board, int seat) {
+        return Math.max(MIN_MOVES_TO_GO, 2 * board.distance(seat));
+    }
+
+    private Negamax.Result think(long budget) {
+        Negamax.Result result = banked;
+        long left = budget - (banked == null ? 0 : banked.millis());
+        if (result == null || result.depth() == 0 || left > 0) {
+            CancellationToken deadline = CancellationToken.afterMillis(Math.max(1, left));
+            Negamax.Result fresh = engine.search(board, board.sideToMove(), Negamax.MAX_PLY - 1, deadline, Long.MAX_VALUE);
+            if (result == null || fresh.depth() >= result.depth()) result = fresh;
+        }
+        banked = null;
+        last = result;
+        return result;
+    }
+
+    /** Follow a move made in the game by either side; settles a running ponder search. */
+    public void played(int move) {
+        if (pondering == null) {
+            board.makeMove(move);
+            return;
+        }
+        Negamax.Result result = finishPonder();
+        if (move == predicted) {
+            hits++;
+            banked = result;
+        } else {
+            misses++;
+            board.unmakeMove(predicted);
+            board.makeMove(move);
+        }
+        predicted = -1;
+    }
+
+    /** Start searching the predicted reply to the engine's last move, if its principal variation has one. */
+    public void ponder() {
+        if (pondering != null || last == null || board.isTerminal()) return;
+        int[] pv = last.pv();
+        if (pv.length < 2 || !isLegal(pv[1])) return;
+        predicted = pv[1];
+        board.makeMove(predicted);
+        if (board.isTerminal()) {
+            board.unmakeMove(predicted);
+            predicted = -1;
+            return;
+        }
+        CancellationToken token = CancellationToken.manual();
+        ponderToken = token;
+        int seat = board.sideToMove();
+        pondering = ponderer.submit(() -> engine.search(board, seat, Negamax.MAX_PLY - 1, token, Long.MAX_VALUE));
+    }
+
+    public int ponderHits() { return hits; }
+    public int ponderMisses() { return misses; }
+
+    /** Stop pondering and release the background thread. */
+    public void close() {
+        if (pondering != null) {
+            finishPonder();
+            board.unmakeMove(predicted);
+            predicted = -1;
+        }
+        ponderer.shutdown();
+    }
+
+    /** Stop the ponder search and wait for its result. */
+    private Negamax.Result finishPonder() {
+        Future<Negamax.Result> running = pondering;
+        pondering = null;
+        ponderToken.cancel();
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while stopping the ponder search", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("ponder search failed", e.getCause());
+        }
+    }
+
+    private boolean isLegal(int move) {
+        int[] moves = new int[board.maxMoves()];
+        int count = board.generateMoves(moves);
+        for (int i = 0; i < count; i++) if (moves[i] == move) return true;
+        return false;
+    }
+}
@@ -1,12 +1,20 @@
 package quoridor;
 
+import game.Clock;
 import game.Game;
+import game.Negamax;
 import game.Player;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.*;
 
 /**
  * Console Quoridor implementation with move/place previews and ANSI-colored players.
+ * With -Dquoridor.archive=DIR every game is appended to a {@link GameArchive}
+ * there, and the 'stats' command shows how the current position went in past games.
+ * Blue can be a {@link QuoridorEngine}, which ponders on the human's time.
+ * An optional Fischer {@link Clock} ends the game when a player's flag falls.
  */
 public final class QuoridorGame extends Game {
     private static final String RED = "\u001B[31m";
@@ -17,6 +25,12 @@ public final class QuoridorGame extends Game {
 
     private enum ActionMode { NONE, MOVE, PLACE }
 
+    private GameArchive archive;
+    private QuoridorEngine engine; // plays Blue when set
+    private Clock clock;           // null for untimed games
+    private int[] played = new int[64]; // moves this game, QuoridorMoves encoding
+    private int plies;
+
     private static final class PendingMove {
         private Position target;
         public void set(Position target) { this.target = target; }
@@ -42,14 +56,21 @@ public final class QuoridorGame extends Game {
 
         String redName = io.readNonEmpty("Red player name: ");
         String blueName;
-        while (true) {
-            blueName = io.readNonEmpty("Blue player name: ");
-            if (!blueName.equalsIgnoreCase(redName)) break;
-            println(WARN + "Names must be different. Please retry." + RESET);
+        engine = null;
+        if (io.readIntInRange("Play against the computer? (0 = no, 1 = yes): ", 0, 1) == 1) {
+            int thinkMillis = io.readIntInRange("Computer think time per move in ms (100..60000): ", 100, 60000);
+            engine = new QuoridorEngine(thinkMillis);
+            blueName = redName.equalsIgnoreCase("Computer") ? "Engine" : "Computer";
+        } else {
+            while (true) {
+                blueName = io.readNonEmpty("Blue player name: ");
+                if (!blueName.equalsIgnoreCase(redName)) break;
+                println(WARN + "Names must be different. Please retry." + RESET);
+            }
         }
 
-        Player red = new Player(redName);
-        Player blue = new Player(blueName);
+        Player red = new Player(redName, 0);
+        Player blue = new Player(blueName, 1);
         registerPlayers(Arrays.asList(red, blue));
 
         Map<Player, String> pawnColors = new HashMap<>();
@@ -58,25 +79,128 @@ public final class QuoridorGame extends Game {
         QuoridorBoard board = new QuoridorBoard(red, blue, pawnColors);
         registerBoard(board);
 
+        clock = readClock();
+        openArchive();
+        plies = 0;
+        int winner = play(board, pawnColors);
+        closeArchive(winner);
+        if (engine != null) {
+            engine.close();
+            engine = null;
+        }
+    }
+
+    /** Alternate turns until someone wins (their seat) or a player quits (-1). */
+    private int play(QuoridorBoard board, Map<Player, String> pawnColors) {
         List<Player> turnOrder = getPlayers();
         int currentIdx = 0;
         while (true) {
             Player current = turnOrder.get(currentIdx);
             Player opponent = board.opponent(current);
-            if (board.hasPlayerWon(opponent)) { announceWinner(board, opponent, pawnColors); return; }
-            boolean finishedTurn = handleTurn(board, current, pawnColors);
-            if (!finishedTurn) {
-                println("Returning to game menu.");
-                return;
+            if (board.hasPlayerWon(opponent)) { announceWinner(board, opponent, pawnColors); return opponent.getSeat(); }
+            if (clock != null) clock.start(current.getSeat());
+            if (engine != null && current.getSeat() == 1) {
+                computerTurn(board, current);
+            } else {
+                boolean finishedTurn = handleTurn(board, current, pawnColors);
+                if (!finishedTurn) {
+                    println("Returning to game menu.");
+                    return -1;
+                }
+            }
+            if (clock != null && !clock.stop()) {
+                println(WARN + current.getName() + " ran out of time." + RESET);
+                announceWinner(board, opponent, pawnColors);
+                return opponent.getSeat();
             }
+            if (engine != null && current.getSeat() == 0) engine.played(played[plies - 1]);
             if (board.hasPlayerWon(current)) {
                 announceWinner(board, current, pawnColors);
-                return;
+                return current.getSeat();
             }
             currentIdx = 1 - currentIdx;
         }
     }
 
+    /** Let the engine move for {@code current}, then ponder on the predicted reply. */
+    private void computerTurn(QuoridorBoard board, Player current) {
+        println(board.render(null, null));
+        long started = System.currentTimeMillis();
+        Negamax.Result result = clock == null ? engine.think() : engine.think(clock);
+        long answered = System.currentTimeMillis() - started;
+        int move = result.bestMove();
+        if (QuoridorMoves.isWall(move)) {
+            WallPlacement wall = QuoridorMoves.placement(move);
+            board.applyWall(current, wall);
+            println(current.getName() + " placed a wall: " + wall);
+        } else {
+            board.applyMove(current, QuoridorMoves.target(move));
+            println(current.getName() + " moved to " + humanReadable(QuoridorMoves.target(move)));
+        }
+        println(INFO + "Answered in " + answered + "ms (depth " + result.depth() + ", " + result.nodes()
+                + " nodes); ponder hits " + engine.ponderHits() + ", misses " + engine.ponderMisses() + RESET);
+        recordMove(move);
+        engine.played(move);
+        engine.ponder();
+    }
+
+    /** Ask for a time control; null when the players want none. */
+    private Clock readClock() {
+        int minutes = io.readIntInRange("Minutes per player (0 = no clock, 1..180): ", 0, 180);
+        if (minutes == 0) return null;
+        int increment = io.readIntInRange("Increment per move in seconds (0..60): ", 0, 60);
+        return new Clock(2, minutes * 60_000L, increment * 1000L);
+    }
+
+    private void openArchive() {
+        String dir = System.getProperty("quoridor.archive");
+        if (dir == null || dir.isEmpty()) return;
+        try {
+            archive = GameArchive.open(Paths.get(dir));
+            println(INFO + "Recording to game archive " + dir + " (" + archive.size() + " games). Type 'stats' on your turn for history." + RESET);
+        } catch (IOException | RuntimeException e) {
+            println(WARN + "Game archive unavailable: " + e.getMessage() + RESET);
+        }
+    }
+
+    /** Store the game (abandoned games as unfinished) and release the archive. */
+    private void closeArchive(int winner) {
+        if (archive == null) return;
+        try {
+            if (plies > 0) archive.append(played, plies, winner < 0 ? GameArchive.UNFINISHED : winner);
+            archive.close();
+        } catch (IOException e) {
+            println(WARN + "Could not save the game to the archive: " + e.getMessage() + RESET);
+        }
+        archive = null;
+    }
+
+    private void recordMove(int move) {
+        if (plies == played.length) played = Arrays.copyOf(played, plies * 2);
+        played[plies++] = move;
+    }
+
+    private void showArchiveStats(QuoridorBoard board, Player current) {
+        if (archive == null) {
+            println(WARN + "No game archive: start with -Dquoridor.archive=DIR to record games." + RESET);
+            return;
+        }
+        PositionIndex.Stats stats = archive.query(board);
+        if (stats.occurrences() == 0) {
+            println(INFO + "This position is new to the archive (" + archive.size() + " games)." + RESET);
+            return;
+        }
+        Player opponent = board.opponent(current);
+        println(INFO + "Reached in " + stats.games() + " archived games: " + current.getName() + "'s side won "
+                + stats.wins(current.getSeat()) + ", " + opponent.getName() + "'s side won " + stats.wins(opponent.getSeat())
+                + ", " + stats.unfinished() + " unfinished." + RESET);
+        int shown = 0;
+        for (Map.Entry<Integer, Long> e : stats.nextMoves().entrySet()) {
+            if (shown++ == 3) break;
+            println(INFO + "  played next: " + GameArchive.describeMove(e.getKey()) + " x" + e.getValue() + RESET);
+        }
+    }
+
     private boolean handleTurn(QuoridorBoard board, Player current, Map<Player, String> pawnColors) {
         ActionMode mode = ActionMode.NONE;
         PendingMove pendingMove = new PendingMove();
@@ -103,12 +227,18 @@ public final class QuoridorGame extends Game {
             }
 
             String raw = io.readNonEmpty("Command: ").trim();
+            if (clock != null && clock.flagged(current.getSeat())) return true; // the game loop calls the flag
             String cmd = raw.toLowerCase(Locale.ROOT);
 
             if (cmd.equals("quit") || cmd.equals("q")) {
                 return false;
             }
 
+            if (cmd.equals("stats")) {
+                showArchiveStats(board, current);
+                continue;
+            }
+
             if (cmd.equals("change")) {
                 mode = ActionMode.NONE;
                 pendingMove.clear();
@@ -118,10 +248,19 @@ public final class QuoridorGame extends Game {
 
             if (cmd.equals("enter")) {
                 if (mode == ActionMode.MOVE && pendingMove.ready()) {
-                    if (board.applyMove(current, pendingMove.target())) { println("Moved to " + humanReadable(pendingMove.target())); return true; }
+                    if (board.applyMove(current, pendingMove.target())) {
+                        recordMove(QuoridorMoves.step(pendingMove.target().row(), pendingMove.target().col()));
+                        println("Moved to " + humanReadable(pendingMove.target()));
+                        return true;
+                    }
                     println(WARN + "Move failed: illegal destination." + RESET);
                 } else if (mode == ActionMode.PLACE && pendingWall.ready()) {
-                    if (board.applyWall(current, pendingWall.placement())) { println("Wall placed: " + pendingWall.placement()); return true; }
+                    WallPlacement wall = pendingWall.placement();
+                    if (board.applyWall(current, wall)) {
+                        recordMove(QuoridorMoves.wall(wall.orientation(), wall.row(), wall.col()));
+                        println("Wall placed: " + wall);
+                        return true;
+                    }
                     else { println(WARN + "Cannot place wall: conflict or blocked paths." + RESET); }
                 } else {
                     println(WARN + "Nothing to confirm yet." + RESET);
@@ -202,7 +341,9 @@ public final class QuoridorGame extends Game {
         Player opponent = board.opponent(current);
         return colorToken + current.getName() + RESET +
                 " turn | walls left " + board.getWallsRemaining(current) +
-                " | opponent walls " + board.getWallsRemaining(opponent);
+                " | opponent walls " + board.getWallsRemaining(opponent) +
+                (clock == null ? "" : " | clock " + Clock.format(clock.remaining(current.getSeat()))
+                        + " vs " + Clock.format(clock.remaining(opponent.getSeat())));
     }
 
     private void announceWinner(QuoridorBoard board, Player winner, Map<Player, String> colors) {
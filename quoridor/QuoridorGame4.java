@@ -1,12 +1,17 @@
 package quoridor;
 
+import game.Clock;
 import game.Game;
 import game.Player;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.*;
 
 /**
  * Console Quoridor (4-player variant). Java 8 compatible.
+ * With -Dquoridor.archive=DIR games are recorded like the 2-player ones.
+ * With a clock, a fallen flag ends the game in favour of the pawn nearest its goal.
  */
 public final class QuoridorGame4 extends Game {
     private static final String RED = "\u001B[31m";
@@ -19,6 +24,11 @@ public final class QuoridorGame4 extends Game {
 
     private enum ActionMode { NONE, MOVE, PLACE }
 
+    private GameArchive archive;
+    private Clock clock; // null for untimed games
+    private int[] played = new int[64]; // moves this game, QuoridorMoves encoding
+    private int plies;
+
     private static final class PendingMove {
         private Position target;
         public void set(Position target) { this.target = target; }
@@ -52,10 +62,10 @@ public final class QuoridorGame4 extends Game {
             }
         }
 
-        Player p1 = new Player(names.get(0));
-        Player p2 = new Player(names.get(1));
-        Player p3 = new Player(names.get(2));
-        Player p4 = new Player(names.get(3));
+        Player p1 = new Player(names.get(0), 0);
+        Player p2 = new Player(names.get(1), 1);
+        Player p3 = new Player(names.get(2), 2);
+        Player p4 = new Player(names.get(3), 3);
         List<Player> players = Arrays.asList(p1, p2, p3, p4);
         registerPlayers(players);
 
@@ -68,23 +78,108 @@ public final class QuoridorGame4 extends Game {
         QuoridorBoard4 board = new QuoridorBoard4(players, pawnColors);
         registerBoard(board);
 
+        clock = readClock();
+        openArchive();
+        plies = 0;
+        int winner = play(board, pawnColors);
+        closeArchive(winner);
+    }
+
+    /** Cycle turns until someone wins (their seat) or a player quits (-1). */
+    private int play(QuoridorBoard4 board, Map<Player, String> pawnColors) {
         List<Player> turnOrder = getPlayers();
         int currentIdx = 0;
         while (true) {
             Player winner = board.checkWinner();
-            if (winner != null) { announceWinner(board, winner, pawnColors); return; }
+            if (winner != null) { announceWinner(board, winner, pawnColors); return winner.getSeat(); }
 
             Player current = turnOrder.get(currentIdx);
+            if (clock != null) clock.start(current.getSeat());
             boolean finishedTurn = handleTurn(board, current, pawnColors);
-            if (!finishedTurn) { println("Returning to game menu."); return; }
+            if (!finishedTurn) { println("Returning to game menu."); return -1; }
+            if (clock != null && !clock.stop()) {
+                winner = winnerOnTime(board, current);
+                println(WARN + current.getName() + " ran out of time; the game goes to the pawn nearest its goal." + RESET);
+                announceWinner(board, winner, pawnColors);
+                return winner.getSeat();
+            }
 
             winner = board.checkWinner();
-            if (winner != null) { announceWinner(board, winner, pawnColors); return; }
+            if (winner != null) { announceWinner(board, winner, pawnColors); return winner.getSeat(); }
 
             currentIdx = (currentIdx + 1) % turnOrder.size();
         }
     }
 
+    /** The player other than {@code flagged} with the shortest path to goal; earlier seats win ties. */
+    private Player winnerOnTime(QuoridorBoard4 board, Player flagged) {
+        Player best = null;
+        int bestDistance = Integer.MAX_VALUE;
+        for (Player p : getPlayers()) {
+            int d = board.distance(p.getSeat());
+            if (p == flagged || d < 0 || d >= bestDistance) continue;
+            best = p;
+            bestDistance = d;
+        }
+        return best;
+    }
+
+    /** Ask for a time control; null when the players want none. */
+    private Clock readClock() {
+        int minutes = io.readIntInRange("Minutes per player (0 = no clock, 1..180): ", 0, 180);
+        if (minutes == 0) return null;
+        int increment = io.readIntInRange("Increment per move in seconds (0..60): ", 0, 60);
+        return new Clock(QuoridorBoard4.PLAYERS, minutes * 60_000L, increment * 1000L);
+    }
+
+    private void openArchive() {
+        String dir = System.getProperty("quoridor.archive");
+        if (dir == null || dir.isEmpty()) return;
+        try {
+            archive = GameArchive.open(Paths.get(dir));
+            println(INFO + "Recording to game archive " + dir + " (" + archive.size() + " games). Type 'stats' on your turn for history." + RESET);
+        } catch (IOException | RuntimeException e) {
+            println(WARN + "Game archive unavailable: " + e.getMessage() + RESET);
+        }
+    }
+
+    /** Store the game (abandoned games as unfinished) and release the archive. */
+    private void closeArchive(int winner) {
+        if (archive == null) return;
+        try {
+            if (plies > 0) archive.append(QuoridorBoard4.PLAYERS, played, plies, winner < 0 ? GameArchive.UNFINISHED : winner);
+            archive.close();
+        } catch (IOException e) {
+            println(WARN + "Could not save the game to the archive: " + e.getMessage() + RESET);
+        }
+        archive = null;
+    }
+
+    private void recordMove(int move) {
+        if (plies == played.length) played = Arrays.copyOf(played, plies * 2);
+        played[plies++] = move;
+    }
+
+    private void showArchiveStats(QuoridorBoard4 board) {
+        if (archive == null) {
+            println(WARN + "No game archive: start with -Dquoridor.archive=DIR to record games." + RESET);
+            return;
+        }
+        PositionIndex.Stats stats = archive.query(board);
+        if (stats.occurrences() == 0) {
+            println(INFO + "This position is new to the archive (" + archive.size() + " games)." + RESET);
+            return;
+        }
+        StringBuilder sb = new StringBuilder("Reached in " + stats.games() + " archived games:");
+        for (Player p : getPlayers()) sb.append(" ").append(p.getName()).append("'s side won ").append(stats.wins(p.getSeat())).append(",");
+        println(INFO + sb + " " + stats.unfinished() + " unfinished." + RESET);
+        int shown = 0;
+        for (Map.Entry<Integer, Long> e : stats.nextMoves().entrySet()) {
+            if (shown++ == 3) break;
+            println(INFO + "  played next: " + GameArchive.describeMove(e.getKey()) + " x" + e.getValue() + RESET);
+        }
+    }
+
     private boolean handleTurn(QuoridorBoard4 board, Player current, Map<Player, String> pawnColors) {
         ActionMode mode = ActionMode.NONE;
         PendingMove pendingMove = new PendingMove();
@@ -111,18 +206,30 @@ public final class QuoridorGame4 extends Game {
             }
 
             String raw = io.readNonEmpty("Command: ").trim();
+            if (clock != null && clock.flagged(current.getSeat())) return true; // the game loop calls the flag
             String cmd = raw.toLowerCase(Locale.ROOT);
 
             if (cmd.equals("quit") || cmd.equals("q")) return false;
 
+            if (cmd.equals("stats")) { showArchiveStats(board); continue; }
+
             if (cmd.equals("change")) { mode = ActionMode.NONE; pendingMove.clear(); pendingWall.clear(); continue; }
 
             if (cmd.equals("enter")) {
                 if (mode == ActionMode.MOVE && pendingMove.ready()) {
-                    if (board.applyMove(current, pendingMove.target())) { println("Moved to " + humanReadable(pendingMove.target())); return true; }
+                    if (board.applyMove(current, pendingMove.target())) {
+                        recordMove(QuoridorMoves.step(pendingMove.target().row(), pendingMove.target().col()));
+                        println("Moved to " + humanReadable(pendingMove.target()));
+                        return true;
+                    }
                     println(WARN + "Move failed: illegal destination." + RESET);
                 } else if (mode == ActionMode.PLACE && pendingWall.ready()) {
-                    if (board.applyWall(current, pendingWall.placement())) { println("Wall placed: " + pendingWall.placement()); return true; }
+                    WallPlacement wall = pendingWall.placement();
+                    if (board.applyWall(current, wall)) {
+                        recordMove(QuoridorMoves.wall(wall.orientation(), wall.row(), wall.col()));
+                        println("Wall placed: " + wall);
+                        return true;
+                    }
                     else { println(WARN + "Cannot place wall: conflict or blocked paths." + RESET); }
                 } else {
                     println(WARN + "Nothing to confirm yet." + RESET);
@@ -179,7 +286,8 @@ public final class QuoridorGame4 extends Game {
 
     private String statusLine(QuoridorBoard4 board, Player current, String colorToken) {
         return colorToken + current.getName() + RESET +
-                " turn | walls left " + board.getWallsRemaining(current);
+                " turn | walls left " + board.getWallsRemaining(current) +
+                (clock == null ? "" : " | clock " + Clock.format(clock.remaining(current.getSeat())));
     }
 
     private void announceWinner(QuoridorBoard4 board, Player winner, Map<Player, String> colors) {
@@ -0,0 +1,80 @@
+package quoridor;
+
+/**
+ * Int encoding of Quoridor moves for the {@code GameState} boards (9x9 grid).
+ * A pawn move is its target cell, row * 9 + col (0..80). A wall is 81 plus its
+ * slot: 0..63 for horizontal walls and 64..127 for vertical ones, each as
+ * row * 8 + col of the wall's top-left anchor.
+ */
+public final class QuoridorMoves {
+    public static final int CELLS = QuoridorBoard.SIZE * QuoridorBoard.SIZE;
+    public static final int WALL_SLOTS = 2 * QuoridorBoard.WALL_RANGE * QuoridorBoard.WALL_RANGE;
+    /** Pawn moves (at most 8 with jumps and diagonals) plus every wall slot. */
+    public static final int MAX_MOVES = 8 + WALL_SLOTS;
+
+    /** Side bits of a cell in the boards' open-side masks; bit {@code 1 << dir} for dir 0..3 = N, S, E, W. */
+    static final int NORTH = 1, SOUTH = 2, EAST = 4, WEST = 8;
+    /** {@code NEIGHBOR[cell * 4 + dir]}: the cell across side {@code dir}, or -1 off the board. */
+    static final int[] NEIGHBOR = new int[CELLS * 4];
+    /** Open-side mask of each cell on an empty board: every side except the border. */
+    static final byte[] BORDER_OPEN = new byte[CELLS];
+
+    private static final int RANGE = QuoridorBoard.WALL_RANGE;
+
+    static {
+        int size = QuoridorBoard.SIZE;
+        int[] dr = {-1, 1, 0, 0}, dc = {0, 0, 1, -1};
+        for (int cell = 0; cell < CELLS; cell++) {
+            for (int dir = 0; dir < 4; dir++) {
+                int r = cell / size + dr[dir], c = cell % size + dc[dir];
+                boolean inside = r >= 0 && r < size && c >= 0 && c < size;
+                NEIGHBOR[cell * 4 + dir] = inside ? r * size + c : -1;
+                if (inside) BORDER_OPEN[cell] |= 1 << dir;
+            }
+        }
+    }
+
+    private QuoridorMoves() { }
+
+    public static int step(int row, int col) {
+        return row * QuoridorBoard.SIZE + col;
+    }
+
+    public static int wall(WallOrientation orientation, int row, int col) {
+        return CELLS + (orientation == WallOrientation.HORIZONTAL ? 0 : RANGE * RANGE) + row * RANGE + col;
+    }
+
+    public static boolean isWall(int move) {
+        return move >= CELLS;
+    }
+
+    /** Target row of a pawn move, or anchor row of a wall. */
+    public static int row(int move) {
+        return isWall(move) ? (move - CELLS) % (RANGE * RANGE) / RANGE : move / QuoridorBoard.SIZE;
+    }
+
+    /** Target column of a pawn move, or anchor column of a wall. */
+    public static int col(int move) {
+        return isWall(move) ? (move - CELLS) % RANGE : move % QuoridorBoard.SIZE;
+    }
+
+    /** True for horizontal walls; only meaningful when {@link #isWall}. */
+    public static boolean isHorizontal(int move) {
+        return move - CELLS < RANGE * RANGE;
+    }
+
+    /** The same move reflected left to right (column c becomes SIZE - 1 - c); its own inverse. */
+    public static int mirror(int move) {
+        if (!isWall(move)) return row(move) * QuoridorBoard.SIZE + QuoridorBoard.SIZE - 1 - col(move);
+        return move - col(move) + RANGE - 1 - col(move);
+    }
+
+    public static Position target(int move) {
+        return new Position(row(move), col(move));
+    }
+
+    public static WallPlacement placement(int move) {
+        WallOrientation o = isHorizontal(move) ? WallOrientation.HORIZONTAL : WallOrientation.VERTICAL;
+        return new WallPlacement(row(move), col(move), o, RANGE);
+    }
+}
@@ -0,0 +1,82 @@
+package quoridor;
+
+import java.util.Locale;
+
+/**
+ * Text form of {@link QuoridorMoves} moves and 2-player positions, used by the
+ * engine protocol.
+ *
+ * Squares are a column letter a-i and a row number 1-9, with row 1 on seat 0's
+ * starting side (the top of the rendered board), so {@code e2} is seat 0's
+ * first step forward. A wall is the top-left square of the 2x2 block it borders
+ * followed by {@code h} or {@code v}: {@code e3h} lies under e3 and f3,
+ * {@code e3v} to the right of e3 and e4.
+ *
+ * A position is {@code startpos} or {@code packed} and the three longs of
+ * {@link QuoridorBoard#encode} in hex.
+ */
+public final class QuoridorNotation {
+    private static final int SIZE = QuoridorBoard.SIZE;
+    private static final int RANGE = QuoridorBoard.WALL_RANGE;
+
+    private QuoridorNotation() { }
+
+    public static String format(int move) {
+        String square = "" + (char) ('a' + QuoridorMoves.col(move)) + (QuoridorMoves.row(move) + 1);
+        if (!QuoridorMoves.isWall(move)) return square;
+        return square + (QuoridorMoves.isHorizontal(move) ? 'h' : 'v');
+    }
+
+    /**
+     * The move written as {@code text}; legality is left to the board.
+     * @throws IllegalArgumentException if the text is not a square or a wall
+     */
+    public static int parse(String text) {
+        String t = text.trim().toLowerCase(Locale.ROOT);
+        boolean wall = t.length() == 3;
+        if (t.length() != 2 && !(wall && (t.charAt(2) == 'h' || t.charAt(2) == 'v'))) {
+            throw new IllegalArgumentException("not a move: " + text);
+        }
+        int col = t.charAt(0) - 'a', row = t.charAt(1) - '1';
+        int limit = wall ? RANGE : SIZE;
+        if (col < 0 || col >= limit || row < 0 || row >= limit) throw new IllegalArgumentException("off the board: " + text);
+        if (!wall) return QuoridorMoves.step(row, col);
+        return QuoridorMoves.wall(t.charAt(2) == 'h' ? WallOrientation.HORIZONTAL : WallOrientation.VERTICAL, row, col);
+    }
+
+    /** The board's position as {@code packed H V M}. */
+    public static String formatPosition(QuoridorBoard board) {
+        long[] code = new long[QuoridorBoard.ENCODED_LONGS];
+        board.encode(code, 0);
+        StringBuilder sb = new StringBuilder("packed");
+        for (long word : code) sb.append(' ').append(Long.toHexString(word));
+        return sb.toString();
+    }
+
+    /**
+     * Set the board from {@code words[from..]}: {@code startpos}, or
+     * {@code packed} and three hex longs.
+     * @return index of the first word after the position
+     * @throws IllegalArgumentException if the words are not a legal position
+     */
+    public static int parsePosition(String[] words, int from, QuoridorBoard board) {
+        if (from < words.length && words[from].equals("startpos")) {
+            board.reset();
+            return from + 1;
+        }
+        int longs = QuoridorBoard.ENCODED_LONGS;
+        if (from + longs >= words.length || !words[from].equals("packed")) {
+            throw new IllegalArgumentException("expected 'startpos' or 'packed' and " + longs + " hex numbers");
+        }
+        long[] code = new long[longs];
+        for (int i = 0; i < longs; i++) {
+            try {
+                code[i] = Long.parseUnsignedLong(words[from + 1 + i], 16);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("not a hex number: " + words[from + 1 + i]);
+            }
+        }
+        board.decode(code, 0);
+        return from + 1 + longs;
+    }
+}